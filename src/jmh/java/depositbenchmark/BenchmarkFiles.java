@@ -0,0 +1,43 @@
+package depositbenchmark;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Generated deposits files shared by benchmarks. Files are kept in the
+ * {@code target/benchmark-data} directory and reused between runs.
+ */
+final class BenchmarkFiles {
+
+    /** The directory of generated files. */
+    private static final File DIR = new File("target/benchmark-data");
+
+    private BenchmarkFiles() {}
+
+    /**
+     * Gets a deposits file with the given number of deposits, generating it
+     * if needed.
+     * @param count the number of deposits
+     * @return the file
+     * @throws IOException if the file could not be generated
+     */
+    static synchronized File deposits(int count) throws IOException {
+        File file = new File(DIR, "deposits-" + count + ".xml");
+
+        if (!file.exists()) {
+            if (!DIR.isDirectory() && !DIR.mkdirs()) {
+                throw new IOException("Could not create " + DIR);
+            }
+
+            File tmp = new File(DIR, file.getName() + ".tmp");
+
+            DepositsGenerator.generate(count, tmp, 42);
+
+            if (!tmp.renameTo(file)) {
+                throw new IOException("Could not create " + file);
+            }
+        }
+
+        return file;
+    }
+}
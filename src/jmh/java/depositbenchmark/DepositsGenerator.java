@@ -0,0 +1,115 @@
+package depositbenchmark;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * A generator of synthetic deposits XML files, which are valid against the
+ * deposits schema. The same count and seed always give the same file.
+ */
+public class DepositsGenerator {
+
+    private static final String[] TYPES = {
+        "call", "time", "checking", "accumulative", "savings", "metals"
+    };
+
+    private static final String[] BANKS = {
+        "Privat", "Barclays", "Reiffeisen", "Deutschebank", "Lehman Brothers",
+        "Citibank", "Credit Agricole", "Santander"
+    };
+
+    private static final String[] COUNTRIES = {
+        "UA", "GB", "DE", "US", "FR", "ES", "PL", "IT"
+    };
+
+    private static final String[] FIRST_NAMES = {
+        "Bogdan", "Vincent", "Peter", "Manuel", "Natalie", "Olga", "Anna",
+        "Taras", "Maria", "John", "Emma", "Lukas"
+    };
+
+    private static final String[] LAST_NAMES = {
+        "Repeta", "Jones", "Piatochkin", "Neuer", "Dormer", "Shevchenko",
+        "Smith", "Kovalenko", "Muller", "Brown", "Garcia", "Rossi"
+    };
+
+    private DepositsGenerator() {}
+
+    /**
+     * Generates a deposits file.
+     * @param args the number of deposits and the output file path
+     * @throws IOException if the file could not be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.out.println(
+                    "Usage: DepositsGenerator <number of deposits> <file>");
+            return;
+        }
+
+        generate(Integer.parseInt(args[0]), new File(args[1]), 42);
+    }
+
+    /**
+     * Writes a deposits XML file.
+     * @param count the number of deposits
+     * @param file the output file
+     * @param seed the random seed
+     * @throws IOException if the file could not be written
+     */
+    public static void generate(int count, File file, long seed)
+            throws IOException {
+        Random random = new Random(seed);
+
+        try (Writer w = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(file), StandardCharsets.UTF_8),
+                1 << 16)) {
+            w.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            w.write("<deposits xmlns:bank=\"www.example.org/xmlns/bank\"\n");
+            w.write("\t\t  xmlns:fin=\"www.example.org/xmlns/financial\">\n");
+
+            for (int i = 0; i < count; i++) {
+                w.write("\t<deposit id=\"id");
+                w.write(Integer.toString(i));
+                w.write("\" type=\"");
+                w.write(pick(random, TYPES));
+                w.write("\" bank:name=\"");
+                w.write(pick(random, BANKS));
+                w.write("\" country=\"");
+                w.write(pick(random, COUNTRIES));
+                w.write("\">\n\t\t<depositor>");
+                w.write(pick(random, FIRST_NAMES));
+                w.write(' ');
+                w.write(pick(random, LAST_NAMES));
+                w.write("</depositor>\n\t\t<account-id>");
+                w.write(Integer.toString(10000 + random.nextInt(90000)));
+                w.write("</account-id>\n\t\t<fin:amount-on-deposit>");
+                w.write(Integer.toString(random.nextInt(50000)));
+                w.write('.');
+                w.write(Integer.toString(10 + random.nextInt(90)));
+                w.write("</fin:amount-on-deposit>\n\t\t<fin:interest>");
+                w.write(Integer.toString(random.nextInt(101)));
+                w.write("</fin:interest>\n\t\t<time-constraint>");
+                w.write(Integer.toString(random.nextInt(121)));
+                w.write("</time-constraint>\n\t</deposit>\n");
+            }
+
+            w.write("</deposits>\n");
+        }
+    }
+
+    /**
+     * Picks a random element of the array.
+     * @param random the random generator
+     * @param values the values
+     * @return the picked value
+     */
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
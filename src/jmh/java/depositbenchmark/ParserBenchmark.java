@@ -0,0 +1,122 @@
+package depositbenchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import deposit.DepositsDB;
+import depositparser.DepositDOMParser;
+import depositparser.DepositParallelParser;
+import depositparser.DepositSAXParser;
+import depositparser.DepositScannerParser;
+import depositparser.DepositStAXCursorParser;
+import depositparser.DepositStAXParser;
+
+/**
+ * Deposits parsing throughput of the SAX, DOM, StAX, StAX cursor, parallel
+ * StAX, byte-level scanner parsers and JAXB unmarshalling. Every parser
+ * builds a complete {@code DepositsDB}; the streaming benchmarks pass
+ * deposits to a blackhole instead.
+ * <p>
+ * Larger files can be measured with {@code -p deposits=10000000}, and the
+ * per-document setup cost with {@code -p deposits=10}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ParserBenchmark {
+
+    /** The number of deposits in the parsed file. */
+    @Param({"1000", "100000", "1000000"})
+    public int deposits;
+
+    /** The parsed file. */
+    private File xmlFile;
+
+    /** The JAXB context (it is expensive to create and thread safe). */
+    private JAXBContext jaxbContext;
+
+    /**
+     * Generates the file and creates the JAXB context.
+     * @throws IOException if the file could not be generated
+     * @throws JAXBException if the context could not be created
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, JAXBException {
+        xmlFile = BenchmarkFiles.deposits(deposits);
+        jaxbContext = JAXBContext.newInstance(DepositsDB.class);
+    }
+
+    @Benchmark
+    public DepositsDB sax() {
+        return new DepositSAXParser(xmlFile).parse();
+    }
+
+    @Benchmark
+    public DepositsDB dom() {
+        return new DepositDOMParser(xmlFile).parse();
+    }
+
+    @Benchmark
+    public DepositsDB stax() {
+        return new DepositStAXParser(xmlFile).parse();
+    }
+
+    @Benchmark
+    public DepositsDB staxCursor() {
+        return new DepositStAXCursorParser(xmlFile).parse();
+    }
+
+    @Benchmark
+    public DepositsDB scanner() {
+        return new DepositScannerParser(xmlFile).parse();
+    }
+
+    @Benchmark
+    public DepositsDB parallel() {
+        return new DepositParallelParser(xmlFile).parse();
+    }
+
+    @Benchmark
+    public DepositsDB jaxb() throws JAXBException {
+        Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
+
+        return (DepositsDB) unmarshaller.unmarshal(xmlFile);
+    }
+
+    @Benchmark
+    public void saxStreaming(Blackhole bh) {
+        new DepositSAXParser(xmlFile).parse(bh::consume);
+    }
+
+    @Benchmark
+    public void staxStreaming(Blackhole bh) {
+        new DepositStAXParser(xmlFile).parse(bh::consume);
+    }
+
+    @Benchmark
+    public void scannerStreaming(Blackhole bh) {
+        new DepositScannerParser(xmlFile).parse(bh::consume);
+    }
+}
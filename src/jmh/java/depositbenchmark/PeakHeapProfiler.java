@@ -0,0 +1,70 @@
+package depositbenchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Collection;
+import java.util.Collections;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+
+/**
+ * A profiler that reports the peak heap usage of each iteration, i.e. the
+ * sum of peak usages of all heap memory pools. Use it with
+ * {@code -prof depositbenchmark.PeakHeapProfiler}.
+ */
+public class PeakHeapProfiler implements InternalProfiler {
+
+    /* (non-Javadoc)
+     * @see org.openjdk.jmh.profile.Profiler#getDescription()
+     */
+    @Override
+    public String getDescription() {
+        return "Peak heap usage per iteration";
+    }
+
+    /* (non-Javadoc)
+     * @see org.openjdk.jmh.profile.InternalProfiler#beforeIteration(
+     * org.openjdk.jmh.infra.BenchmarkParams,
+     * org.openjdk.jmh.infra.IterationParams)
+     */
+    @Override
+    public void beforeIteration(BenchmarkParams benchmarkParams,
+                                IterationParams iterationParams) {
+        System.gc();
+
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.openjdk.jmh.profile.InternalProfiler#afterIteration(
+     * org.openjdk.jmh.infra.BenchmarkParams,
+     * org.openjdk.jmh.infra.IterationParams,
+     * org.openjdk.jmh.results.IterationResult)
+     */
+    @Override
+    public Collection<? extends Result> afterIteration(
+            BenchmarkParams benchmarkParams, IterationParams iterationParams,
+            IterationResult result) {
+        long peak = 0;
+
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+
+        return Collections.singletonList(new ScalarResult("peak.heap",
+                peak / (1024.0 * 1024.0), "MB", AggregationPolicy.MAX));
+    }
+}
@@ -0,0 +1,115 @@
+package depositbenchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import depositparser.DepositStAXCursorParser;
+import depositprocessor.DepositProcessor;
+import depositprocessor.DepositReportWriter;
+
+/**
+ * Validation, sorting and HTML generation stages of
+ * {@code DepositProcessor}. Sorting benchmarks read the deposits before
+ * every invocation, so that an unsorted list is always sorted. HTML is
+ * generated both by the XSL transformation and by streaming parsed deposits
+ * to a report writer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ProcessorBenchmark {
+
+    /** The number of deposits in the processed file. */
+    @Param({"1000", "100000"})
+    public int deposits;
+
+    /** The processor of the generated file. */
+    private DepositProcessor processor;
+
+    /** The processed file. */
+    private File xmlFile;
+
+    /** The output HTML file. */
+    private File htmlFile;
+
+    /**
+     * Generates the file and sets up the processor.
+     * @throws IOException if the file could not be generated
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        processor = new DepositProcessor();
+        processor.setSchema("xml/xsd/deposits.xsd");
+        processor.setStylesheet("xml/xsl/deposits.xsl");
+        xmlFile = BenchmarkFiles.deposits(deposits);
+        processor.open(xmlFile.getPath());
+        htmlFile = File.createTempFile("deposits", ".html");
+        htmlFile.deleteOnExit();
+    }
+
+    @Benchmark
+    public boolean validate() {
+        return processor.validate();
+    }
+
+    @Benchmark
+    public void sortByDepositor(Unsorted unsorted) {
+        processor.sortDeposits(DepositProcessor.DEPOSITOR);
+    }
+
+    @Benchmark
+    public void sortByAmount(Unsorted unsorted) {
+        processor.sortDeposits(DepositProcessor.AMOUNT);
+    }
+
+    @Benchmark
+    public void sortByTime(Unsorted unsorted) {
+        processor.sortDeposits(DepositProcessor.TIME);
+    }
+
+    @Benchmark
+    public void generateHTML() {
+        processor.generateHTML(htmlFile.getPath());
+    }
+
+    @Benchmark
+    public void streamHTML() throws IOException {
+        try (DepositReportWriter writer = new DepositReportWriter(
+                htmlFile.toPath(), DepositReportWriter.Format.HTML)) {
+            new DepositStAXCursorParser(xmlFile).parse(writer);
+        }
+    }
+
+    /**
+     * A state that reads unsorted deposits before every sorting invocation.
+     */
+    @State(Scope.Benchmark)
+    public static class Unsorted {
+
+        /**
+         * Reads unsorted deposits.
+         * @param benchmark the benchmark state
+         */
+        @Setup(Level.Invocation)
+        public void readDeposits(ProcessorBenchmark benchmark) {
+            benchmark.processor.readDeposits(DepositProcessor.STAX);
+        }
+    }
+}
@@ -0,0 +1,6 @@
+/**
+ * This package contains JMH benchmarks of deposits parsing and processing
+ * and a generator of synthetic deposits XML files for them. The benchmarks
+ * are built with the {@code jmh} Maven profile.
+ */
+package depositbenchmark;
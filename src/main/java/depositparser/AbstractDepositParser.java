@@ -1,17 +1,44 @@
 package depositparser;
 
+import deposit.Deposit;
 import deposit.DepositsDB;
 
 import java.io.File;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
 /**
  * An abstract class for parsing XML files with deposits data.
  */
 public abstract class AbstractDepositParser {
 
+    /** The logger. */
+    private static final Logger LOGGER = LogManager.getLogger();
+
     /** An XML file to be parsed. */
     protected File xmlFile;
 
+    /** A source of the XML document or null to parse the XML file. */
+    private DepositSource source;
+
+    /** The policy for unknown deposit types and country codes. */
+    private UnknownValuePolicy unknownValuePolicy = UnknownValuePolicy.FAIL;
+
+    /** The pool of bank names or null. */
+    private StringPool namePool = new StringPool();
+
+    /** The pool of depositors or null. */
+    private StringPool depositorPool;
+
+    /** The filter of deposits. */
+    private DepositFilter filter = DepositFilter.ALL;
+
+    /** The mask of the fields to read. */
+    private int projection = DepositField.ALL;
+
     /**
      * Instantiates a new deposit parser.
      * @param xmlFile an XML file that contains deposits
@@ -20,6 +47,16 @@ public abstract class AbstractDepositParser {
 	this.xmlFile = xmlFile;
     }
 
+    /**
+     * Instantiates a new deposit parser of a document that is not
+     * necessarily a file, e.g. a stream or an in-memory buffer.
+     * @param source a source of an XML document that contains deposits
+     */
+    public AbstractDepositParser(DepositSource source) {
+        this.xmlFile = source.getFile();
+        this.source = source;
+    }
+
     /**
      * Gets the XML file.
      * @return the XML file
@@ -34,11 +71,149 @@ public abstract class AbstractDepositParser {
      */
     public void setXmlFile(File xmlFile) {
 	this.xmlFile = xmlFile;
+	this.source = null;
+    }
+
+    /**
+     * Gets the source of the XML document.
+     * @return the source given to the constructor or a source of the XML
+     * file
+     */
+    public DepositSource getSource() {
+        return (source != null) ? source : DepositSource.of(xmlFile);
+    }
+
+    /**
+     * Gets the policy for unknown deposit types and country codes.
+     * @return the policy ({@link UnknownValuePolicy#FAIL} by default)
+     */
+    public UnknownValuePolicy getUnknownValuePolicy() {
+        return unknownValuePolicy;
+    }
+
+    /**
+     * Sets the policy for unknown deposit types and country codes.
+     * @param unknownValuePolicy a new policy
+     */
+    public void setUnknownValuePolicy(UnknownValuePolicy unknownValuePolicy) {
+        this.unknownValuePolicy = unknownValuePolicy;
+    }
+
+    /**
+     * Gets the pool of bank names. The pool is kept between parses, so its
+     * metrics add up.
+     * @return the pool or null if bank names are not pooled
+     */
+    public StringPool getNamePool() {
+        return namePool;
+    }
+
+    /**
+     * Sets the pool of bank names. Bank names are pooled by default, as
+     * there are only a few banks.
+     * @param namePool a pool or null not to pool bank names
+     */
+    public void setNamePool(StringPool namePool) {
+        this.namePool = namePool;
+    }
+
+    /**
+     * Gets the pool of depositors.
+     * @return the pool or null if depositors are not pooled
+     */
+    public StringPool getDepositorPool() {
+        return depositorPool;
+    }
+
+    /**
+     * Sets the pool of depositors. Depositors are not pooled by default,
+     * because they repeat much less than bank names; a separate pool keeps
+     * them from evicting bank names.
+     * @param depositorPool a pool or null not to pool depositors
+     */
+    public void setDepositorPool(StringPool depositorPool) {
+        this.depositorPool = depositorPool;
+    }
+
+    /**
+     * Gets the filter of deposits.
+     * @return the filter ({@link DepositFilter#ALL} by default)
+     */
+    public DepositFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * Sets the filter of deposits. Only the deposits that match the filter
+     * are passed to the consumer; the fields of a deposit whose attributes
+     * do not match are not read.
+     * @param filter a new filter or null to accept all deposits
+     */
+    public void setFilter(DepositFilter filter) {
+        this.filter = (filter == null) ? DepositFilter.ALL : filter;
+    }
+
+    /**
+     * Gets the fields that are read.
+     * @return the fields (all by default)
+     */
+    public Set<DepositField> getProjection() {
+        return DepositField.fields(projection);
+    }
+
+    /**
+     * Sets the fields that are read. The other fields are neither decoded
+     * nor checked, and are left unset (null or zero) in the parsed
+     * deposits, unless the filter reads them. A type or a country that is
+     * not read is not subject to the unknown value policy.
+     * @param projection the fields or null to read all fields
+     */
+    public void setProjection(Set<DepositField> projection) {
+        this.projection = (projection == null) ? DepositField.ALL
+                : DepositField.mask(projection);
+    }
+
+    /**
+     * Gets the options passed to the deposit readers.
+     * @return the options
+     */
+    ParseOptions getOptions() {
+        return new ParseOptions(unknownValuePolicy, namePool, depositorPool,
+                filter, projection);
     }
 
     /**
      * Parses the XML file.
-     * @return the {@code DepositsDB} object
+     * @return the {@code DepositsDB} object or {@code null} if the file
+     * could not be parsed
+     */
+    public DepositsDB parse() {
+        DepositsDB depositsDB = new DepositsDB();
+
+        try {
+            parse(depositsDB.getDeposits()::add);
+        } catch (DepositParserException e) {
+            LOGGER.error(e);
+            return null;
+        }
+
+        if (namePool != null) {
+            LOGGER.debug("Bank names: " + namePool);
+        }
+
+        if (depositorPool != null) {
+            LOGGER.debug("Depositors: " + depositorPool);
+        }
+
+        return depositsDB;
+    }
+
+    /**
+     * Parses the XML file and passes each deposit to the consumer as soon
+     * as its {@code deposit} element is closed. The parser does not keep
+     * references to the deposits it has already emitted.
+     * @param consumer a consumer of parsed deposits
+     * @throws DepositParserException if the file could not be parsed
      */
-    public abstract DepositsDB parse();
+    public abstract void parse(Consumer<? super Deposit> consumer);
 }
@@ -0,0 +1,91 @@
+package depositparser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An input stream that reads the remaining bytes of a byte buffer (e.g. a
+ * memory-mapped region of a file) without copying them to another buffer.
+ * Reading a mapped region of a file that has been truncated meanwhile fails
+ * with an {@code IOException}.
+ */
+class ByteBufferInputStream extends InputStream {
+
+    /** The source buffer. */
+    private final ByteBuffer buffer;
+
+    /**
+     * Instantiates a new byte buffer input stream. The buffer is duplicated,
+     * so its position is not affected by reading.
+     * @param buffer the source buffer
+     */
+    ByteBufferInputStream(ByteBuffer buffer) {
+        this.buffer = buffer.duplicate();
+    }
+
+    /* (non-Javadoc)
+     * @see java.io.InputStream#read()
+     */
+    @Override
+    public int read() throws IOException {
+        try {
+            return buffer.hasRemaining() ? (buffer.get() & 0xFF) : -1;
+        } catch (InternalError e) {
+            throw truncated(e);
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see java.io.InputStream#read(byte[], int, int)
+     */
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+
+        if (!buffer.hasRemaining()) {
+            return -1;
+        }
+
+        int n = Math.min(len, buffer.remaining());
+
+        try {
+            buffer.get(b, off, n);
+        } catch (InternalError e) {
+            throw truncated(e);
+        }
+
+        return n;
+    }
+
+    /* (non-Javadoc)
+     * @see java.io.InputStream#skip(long)
+     */
+    @Override
+    public long skip(long n) {
+        int k = (int) Math.max(0, Math.min(n, buffer.remaining()));
+
+        buffer.position(buffer.position() + k);
+        return k;
+    }
+
+    /* (non-Javadoc)
+     * @see java.io.InputStream#available()
+     */
+    @Override
+    public int available() {
+        return buffer.remaining();
+    }
+
+    /**
+     * Wraps the error of an access to a mapped page that is no longer backed
+     * by the file (the JVM reports the bus error as an {@code InternalError}).
+     * @param e the error
+     * @return the exception to be thrown
+     */
+    private static IOException truncated(InternalError e) {
+        return new IOException("File truncated while reading", e);
+    }
+}
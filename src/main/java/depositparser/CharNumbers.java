@@ -0,0 +1,279 @@
+package depositparser;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Helpers for trimming and parsing numbers directly from character and byte
+ * arrays, so that parsers do not have to create intermediate strings.
+ */
+final class CharNumbers {
+
+    private CharNumbers() {}
+
+    /**
+     * Skips leading whitespace the way {@link String#trim()} does.
+     * @param ch the characters
+     * @param start the range start
+     * @param end the range end (exclusive)
+     * @return the start of the trimmed range
+     */
+    static int trimStart(char[] ch, int start, int end) {
+        while ((start < end) && (ch[start] <= ' ')) {
+            start++;
+        }
+
+        return start;
+    }
+
+    /**
+     * Skips trailing whitespace the way {@link String#trim()} does.
+     * @param ch the characters
+     * @param start the range start
+     * @param end the range end (exclusive)
+     * @return the end of the trimmed range
+     */
+    static int trimEnd(char[] ch, int start, int end) {
+        while ((end > start) && (ch[end - 1] <= ' ')) {
+            end--;
+        }
+
+        return end;
+    }
+
+    /**
+     * Parses a decimal {@code int} like {@link Integer#parseInt(String)}.
+     * @param ch the characters
+     * @param start the range start
+     * @param end the range end (exclusive)
+     * @return the parsed value
+     * @throws NumberFormatException if the range is not a valid number
+     */
+    static int parseInt(char[] ch, int start, int end) {
+        long value = parseLong(ch, start, end);
+
+        if ((value < Integer.MIN_VALUE) || (value > Integer.MAX_VALUE)) {
+            throw invalid(ch, start, end);
+        }
+
+        return (int) value;
+    }
+
+    /**
+     * Parses a decimal {@code long} like {@link Long#parseLong(String)}.
+     * @param ch the characters
+     * @param start the range start
+     * @param end the range end (exclusive)
+     * @return the parsed value
+     * @throws NumberFormatException if the range is not a valid number
+     */
+    static long parseLong(char[] ch, int start, int end) {
+        int i = start;
+        boolean negative = false;
+
+        if ((i < end) && ((ch[i] == '-') || (ch[i] == '+'))) {
+            negative = ch[i] == '-';
+            i++;
+        }
+
+        if (i == end) {
+            throw invalid(ch, start, end);
+        }
+
+        // accumulate negatively to cover Long.MIN_VALUE
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long value = 0;
+
+        for (; i < end; i++) {
+            int digit = ch[i] - '0';
+
+            if ((digit < 0) || (digit > 9) || (value < limit / 10)) {
+                throw invalid(ch, start, end);
+            }
+
+            value *= 10;
+
+            if (value < limit + digit) {
+                throw invalid(ch, start, end);
+            }
+
+            value -= digit;
+        }
+
+        return negative ? value : -value;
+    }
+
+    /**
+     * Skips leading whitespace of ASCII bytes the way {@link String#trim()}
+     * does.
+     * @param b the bytes
+     * @param start the range start
+     * @param end the range end (exclusive)
+     * @return the start of the trimmed range
+     */
+    static int trimStart(byte[] b, int start, int end) {
+        while ((start < end) && (b[start] >= 0) && (b[start] <= ' ')) {
+            start++;
+        }
+
+        return start;
+    }
+
+    /**
+     * Skips trailing whitespace of ASCII bytes the way {@link String#trim()}
+     * does.
+     * @param b the bytes
+     * @param start the range start
+     * @param end the range end (exclusive)
+     * @return the end of the trimmed range
+     */
+    static int trimEnd(byte[] b, int start, int end) {
+        while ((end > start) && (b[end - 1] >= 0) && (b[end - 1] <= ' ')) {
+            end--;
+        }
+
+        return end;
+    }
+
+    /**
+     * Parses a decimal {@code int} of ASCII bytes like
+     * {@link Integer#parseInt(String)}.
+     * @param b the bytes
+     * @param start the range start
+     * @param end the range end (exclusive)
+     * @return the parsed value
+     * @throws NumberFormatException if the range is not a valid number
+     */
+    static int parseInt(byte[] b, int start, int end) {
+        long value = parseLong(b, start, end);
+
+        if ((value < Integer.MIN_VALUE) || (value > Integer.MAX_VALUE)) {
+            throw invalid(b, start, end);
+        }
+
+        return (int) value;
+    }
+
+    /**
+     * Parses a decimal {@code long} of ASCII bytes like
+     * {@link Long#parseLong(String)}.
+     * @param b the bytes
+     * @param start the range start
+     * @param end the range end (exclusive)
+     * @return the parsed value
+     * @throws NumberFormatException if the range is not a valid number
+     */
+    static long parseLong(byte[] b, int start, int end) {
+        int i = start;
+        boolean negative = false;
+
+        if ((i < end) && ((b[i] == '-') || (b[i] == '+'))) {
+            negative = b[i] == '-';
+            i++;
+        }
+
+        if (i == end) {
+            throw invalid(b, start, end);
+        }
+
+        // accumulate negatively to cover Long.MIN_VALUE
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long value = 0;
+
+        for (; i < end; i++) {
+            int digit = b[i] - '0';
+
+            if ((digit < 0) || (digit > 9) || (value < limit / 10)) {
+                throw invalid(b, start, end);
+            }
+
+            value *= 10;
+
+            if (value < limit + digit) {
+                throw invalid(b, start, end);
+            }
+
+            value -= digit;
+        }
+
+        return negative ? value : -value;
+    }
+
+    /**
+     * Parses a decimal number of ASCII bytes like
+     * {@link BigDecimal#BigDecimal(String)}. Numbers of up to 18 digits
+     * without an exponent are parsed without creating a string.
+     * @param b the bytes
+     * @param start the range start
+     * @param end the range end (exclusive)
+     * @return the parsed value
+     * @throws NumberFormatException if the range is not a valid number
+     */
+    static BigDecimal parseDecimal(byte[] b, int start, int end) {
+        int i = start;
+        boolean negative = false;
+
+        if ((i < end) && ((b[i] == '-') || (b[i] == '+'))) {
+            negative = b[i] == '-';
+            i++;
+        }
+
+        long unscaled = 0;
+        int digits = 0;
+        int scale = -1;
+
+        for (; i < end; i++) {
+            int digit = b[i] - '0';
+
+            if ((digit >= 0) && (digit <= 9)) {
+                unscaled = unscaled * 10 + digit;
+                digits++;
+            } else if ((b[i] == '.') && (scale < 0)) {
+                scale = 0;
+                continue;
+            } else {
+                break;
+            }
+
+            if (scale >= 0) {
+                scale++;
+            }
+        }
+
+        if ((i < end) || (digits == 0) || (digits > 18)) {
+            // an exponent, a long number or an invalid one
+            return new BigDecimal(new String(b, start, end - start,
+                    StandardCharsets.US_ASCII));
+        }
+
+        return BigDecimal.valueOf(negative ? -unscaled : unscaled,
+                Math.max(scale, 0));
+    }
+
+    /**
+     * Creates an exception for an invalid number.
+     * @param ch the characters
+     * @param start the range start
+     * @param end the range end (exclusive)
+     * @return the exception
+     */
+    private static NumberFormatException invalid(char[] ch, int start,
+                                                 int end) {
+        return new NumberFormatException("For input string: \""
+                + new String(ch, start, end - start) + "\"");
+    }
+
+    /**
+     * Creates an exception for an invalid number of ASCII bytes.
+     * @param b the bytes
+     * @param start the range start
+     * @param end the range end (exclusive)
+     * @return the exception
+     */
+    private static NumberFormatException invalid(byte[] b, int start,
+                                                 int end) {
+        return new NumberFormatException("For input string: \""
+                + new String(b, start, end - start,
+                        StandardCharsets.ISO_8859_1) + "\"");
+    }
+}
@@ -0,0 +1,160 @@
+package depositparser;
+
+import deposit.ISO3166CountryCode;
+import deposit.Type;
+
+/**
+ * Constant-time decoders of the {@code type} and {@code country} attribute
+ * values. Unlike {@link Type#fromValue(String)} and
+ * {@link ISO3166CountryCode#fromValue(String)}, they do not copy the enum
+ * values or throw on unknown values, and they decode byte ranges without
+ * creating strings.
+ */
+final class DepositCodes {
+
+    /** The mask of the type hash. */
+    private static final int TYPE_MASK = 15;
+
+    /**
+     * The deposit types by the hash of their values (a perfect hash, see
+     * {@link #typeHash(int, int)}).
+     */
+    private static final Type[] TYPES = new Type[TYPE_MASK + 1];
+
+    /** The countries by two-letter codes ({@code 26 * first + second}). */
+    private static final ISO3166CountryCode[] COUNTRIES =
+            new ISO3166CountryCode[26 * 26];
+
+    static {
+        for (Type type : Type.values()) {
+            String value = type.value();
+            int hash = typeHash(value.charAt(0), value.length());
+
+            if (TYPES[hash] != null) {
+                throw new IllegalStateException("Type hash collision: "
+                        + TYPES[hash] + ", " + type);
+            }
+
+            TYPES[hash] = type;
+        }
+
+        for (ISO3166CountryCode country : ISO3166CountryCode.values()) {
+            String code = country.value();
+
+            COUNTRIES[countryIndex(code.charAt(0), code.charAt(1))] = country;
+        }
+    }
+
+    private DepositCodes() {}
+
+    /**
+     * Decodes a deposit type.
+     * @param value the attribute value
+     * @return the type or null if the value is null or unknown
+     */
+    static Type type(CharSequence value) {
+        if ((value == null) || (value.length() == 0)) {
+            return null;
+        }
+
+        Type type = TYPES[typeHash(value.charAt(0), value.length())];
+
+        return ((type != null) && type.value().contentEquals(value)) ? type
+                : null;
+    }
+
+    /**
+     * Decodes a deposit type from ASCII bytes.
+     * @param b the bytes
+     * @param start the range start
+     * @param end the range end (exclusive)
+     * @return the type or null if the value is unknown
+     */
+    static Type type(byte[] b, int start, int end) {
+        int length = end - start;
+
+        if (length == 0) {
+            return null;
+        }
+
+        Type type = TYPES[typeHash(b[start], length)];
+
+        if (type == null) {
+            return null;
+        }
+
+        String value = type.value();
+
+        if (value.length() != length) {
+            return null;
+        }
+
+        for (int i = 1; i < length; i++) {
+            if (b[start + i] != value.charAt(i)) {
+                return null;
+            }
+        }
+
+        return type;
+    }
+
+    /**
+     * Decodes a country code.
+     * @param value the attribute value
+     * @return the country or null if the value is null or unknown
+     */
+    static ISO3166CountryCode country(CharSequence value) {
+        if ((value == null) || (value.length() != 2)) {
+            return null;
+        }
+
+        int index = countryIndex(value.charAt(0), value.charAt(1));
+
+        return (index < 0) ? null : COUNTRIES[index];
+    }
+
+    /**
+     * Decodes a country code from ASCII bytes.
+     * @param b the bytes
+     * @param start the range start
+     * @param end the range end (exclusive)
+     * @return the country or null if the value is unknown
+     */
+    static ISO3166CountryCode country(byte[] b, int start, int end) {
+        if (end - start != 2) {
+            return null;
+        }
+
+        int index = countryIndex(b[start], b[start + 1]);
+
+        return (index < 0) ? null : COUNTRIES[index];
+    }
+
+    /**
+     * Hashes a type value. The first letters and the lengths of the values
+     * tell them apart.
+     * @param first the first character
+     * @param length the length
+     * @return the hash
+     */
+    private static int typeHash(int first, int length) {
+        return (first + length) & TYPE_MASK;
+    }
+
+    /**
+     * Gets the index of a country code in the table.
+     * @param first the first letter
+     * @param second the second letter
+     * @return the index or -1 if a letter is not an uppercase Latin letter
+     */
+    private static int countryIndex(int first, int second) {
+        first -= 'A';
+        second -= 'A';
+
+        if ((first < 0) || (first >= 26) || (second < 0) || (second >= 26)) {
+            return -1;
+        }
+
+        return 26 * first + second;
+    }
+}
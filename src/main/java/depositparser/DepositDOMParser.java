@@ -2,32 +2,38 @@ package depositparser;
 
 import java.io.File;
 import java.io.IOException;
-import java.math.BigDecimal;
-import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
 
 import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
+import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
+import org.w3c.dom.Node;
 import org.xml.sax.SAXException;
 
 import deposit.Deposit;
-import deposit.DepositsDB;
-import deposit.ISO3166CountryCode;
-import deposit.Type;
 
 /**
- * A simple DOM parser for parsing a deposits XML file.
+ * A simple DOM parser for parsing a deposits XML file. Note that the whole
+ * document tree is built in memory before any deposit is emitted.
+ * <p>
+ * Deposits are read in one pass over the children of the root element and
+ * of each {@code deposit} element, matching elements and attributes by
+ * namespace and local name. By default node expansion is deferred (as in
+ * the JDK): the parser builds a compact tree whose nodes are created on
+ * first access, which keeps {@link #parseDocument()} usable for editing
+ * large files. The tree can be expanded while it is built instead.
  */
 public class DepositDOMParser extends AbstractDepositParser {
-    
-    /** The logger. */
-    private static final Logger LOGGER = LogManager.getLogger();
+
+    /** The bank namespace. */
+    private static final String BANK_NS = "www.example.org/xmlns/bank";
+
+    /** Whether nodes are expanded on first access. */
+    private boolean deferNodeExpansion = true;
 
     /**
      * Instantiates a new deposit DOM parser.
@@ -37,80 +43,162 @@ public class DepositDOMParser extends AbstractDepositParser {
         super(xmlFile);
     }
 
+    /**
+     * Instantiates a new deposit DOM parser of a document source.
+     * @param source a source of an XML document to be parsed
+     */
+    public DepositDOMParser(DepositSource source) {
+        super(source);
+    }
+
+    /**
+     * Checks whether nodes are expanded on first access.
+     * @return true if node expansion is deferred (the default)
+     */
+    public boolean isDeferNodeExpansion() {
+        return deferNodeExpansion;
+    }
+
+    /**
+     * Sets whether nodes are expanded on first access. Deferred expansion
+     * keeps untouched nodes compact; reading every node once takes about as
+     * long either way.
+     * @param deferNodeExpansion true to defer node expansion
+     */
+    public void setDeferNodeExpansion(boolean deferNodeExpansion) {
+        this.deferNodeExpansion = deferNodeExpansion;
+    }
+
+    /**
+     * Parses the XML document into a DOM tree, e.g. to edit it.
+     * @return the document
+     * @throws DepositParserException if the document could not be parsed
+     */
+    public Document parseDocument() {
+        try {
+            DocumentBuilder db =
+                    XMLParsers.acquireDocumentBuilder(deferNodeExpansion);
+
+            try (DepositSource.Input input = getSource().open()) {
+                return db.parse(input.toInputSource());
+            } finally {
+                XMLParsers.release(db, deferNodeExpansion);
+            }
+        } catch (ParserConfigurationException | SAXException | IOException e) {
+            throw new DepositParserException(e);
+        }
+    }
+
     /* (non-Javadoc)
-     * @see depositparser.DepositParser#parse()
+     * @see depositparser.AbstractDepositParser#parse(java.util.function.Consumer)
      */
     @Override
-    public DepositsDB parse() {
-        DepositsDB depositsDB = new DepositsDB();
-        
-        // get reference to the empty deposits list
-        List<Deposit> list = depositsDB.getDeposits();
-
-        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-        dbf.setNamespaceAware(true);
-        dbf.setIgnoringElementContentWhitespace(true);
-        
-        try {
-            DocumentBuilder db = dbf.newDocumentBuilder();
-            Document doc = db.parse(xmlFile);
-
-            NodeList depositNodes = doc.getElementsByTagName("deposit");
-            Element depositElement;
-            Deposit deposit;
-            
-            String id;
-            String type;
-            String name;
-            String country;
-            String depositor;
-            String accountId;
-            String amountOnDeposit;
-            String interest;
-            String timeConstraint;
-
-            // traverse all 'deposit' nodes
-            for (int i = 0, endi = depositNodes.getLength(); i < endi; i++) {
-                deposit = new Deposit();
-                depositElement = (Element) depositNodes.item(i);
-
-                id = depositElement.getAttributes()
-                        .getNamedItem("id").getTextContent().trim();
-                type = depositElement.getAttributes()
-                        .getNamedItem("type").getTextContent().trim();
-                name = depositElement.getAttributes()
-                        .getNamedItem("bank:name").getTextContent().trim();
-                country = depositElement.getAttributes()
-                        .getNamedItem("country").getTextContent().trim();
-                depositor = depositElement.getElementsByTagName("depositor")
-                	.item(0).getTextContent().trim();
-                accountId = depositElement.getElementsByTagName("account-id")
-                	.item(0).getTextContent().trim();
-                amountOnDeposit = depositElement.getElementsByTagName("fin:amount-on-deposit")
-                	.item(0).getTextContent().trim();
-                interest = depositElement.getElementsByTagName("fin:interest")
-                	.item(0).getTextContent().trim();
-                timeConstraint = depositElement.getElementsByTagName("time-constraint")
-                	.item(0).getTextContent().trim();
-                
-                deposit.setId(id);
-                deposit.setType(Type.fromValue(type));
-                deposit.setName(name);
-                deposit.setCountry(ISO3166CountryCode.fromValue(country));
-                deposit.setDepositor(depositor);
-                deposit.setAccountId(Integer.parseInt(accountId));
-                deposit.setAmountOnDeposit(new BigDecimal(amountOnDeposit));
-                deposit.setInterest(new BigDecimal(interest));
-                deposit.setTimeConstraint(Long.parseLong(timeConstraint));
-
-                list.add(deposit);
+    public void parse(Consumer<? super Deposit> consumer) {
+        ParseOptions options = getOptions();
+        Element root = parseDocument().getDocumentElement();
+
+        // traverse all 'deposit' nodes
+        for (Node node = root.getFirstChild(); node != null;
+                node = node.getNextSibling()) {
+            if (isElement(node, null, "deposit")) {
+                Deposit deposit = readDeposit((Element) node, options);
+
+                if (deposit != null) {
+                    consumer.accept(deposit);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a deposit element.
+     * @param element the element
+     * @param options the parse options
+     * @return the deposit or null if it is skipped by the unknown value
+     * policy or the filter
+     * @throws DepositParserException if the text of a numeric field is not a
+     * number
+     */
+    private static Deposit readDeposit(Element element, ParseOptions options) {
+        Deposit deposit = new Deposit();
+        String type = options.reads(DepositField.TYPE)
+                ? attribute(element, null, "type") : null;
+        String country = options.reads(DepositField.COUNTRY)
+                ? attribute(element, null, "country") : null;
+
+        if (options.reads(DepositField.ID)) {
+            deposit.setId(attribute(element, null, "id"));
+        }
+
+        if (options.reads(DepositField.NAME)) {
+            deposit.setName(options.name(attribute(element, BANK_NS,
+                    "name")));
+        }
+
+        deposit.setType(DepositCodes.type(type));
+        deposit.setCountry(DepositCodes.country(country));
+
+        boolean keep = options.policy.accept(deposit.getId(), "type", type,
+                deposit.getType());
+
+        keep &= options.policy.accept(deposit.getId(), "country", country,
+                deposit.getCountry());
+
+        if (!keep || !options.filter.testAttributes(deposit)) {
+            // the child nodes of a deferred document are never expanded
+            return null;
+        }
+
+        for (Node node = element.getFirstChild(); node != null;
+                node = node.getNextSibling()) {
+            if (node.getNodeType() != Node.ELEMENT_NODE) {
+                continue;
             }
 
-            return depositsDB;
-        } catch (ParserConfigurationException | SAXException | IOException e) {
-            LOGGER.error(e);
+            DepositField field = DepositField.ofElement(
+                    node.getNamespaceURI(), node.getLocalName());
+
+            if ((field != null) && options.reads(field)) {
+                String text = node.getTextContent().trim();
+
+                try {
+                    options.setField(deposit, field, text);
+                } catch (NumberFormatException e) {
+                    // a DOM does not keep the positions of its nodes
+                    throw DepositParserException.invalidNumber(deposit,
+                            field.localName(), text, e, -1, -1);
+                }
+            }
         }
-        
-        return null;
+
+        return options.filter.testFields(deposit) ? deposit : null;
+    }
+
+    /**
+     * Gets an attribute value.
+     * @param element the element
+     * @param ns the namespace URI or null
+     * @param name the local name
+     * @return the value or null if the element has no such attribute
+     */
+    private static String attribute(Element element, String ns,
+                                    String name) {
+        // getAttributeNS cannot tell a missing attribute from an empty one
+        Attr attr = element.getAttributeNodeNS(ns, name);
+
+        return (attr == null) ? null : attr.getValue();
+    }
+
+    /**
+     * Checks whether a node is an element with the given name.
+     * @param node the node
+     * @param ns the namespace URI or null
+     * @param name the local name
+     * @return true if the node is such an element
+     */
+    private static boolean isElement(Node node, String ns, String name) {
+        return (node.getNodeType() == Node.ELEMENT_NODE)
+                && name.equals(node.getLocalName())
+                && Objects.equals(ns, node.getNamespaceURI());
     }
 }
@@ -0,0 +1,81 @@
+package depositparser;
+
+import deposit.Deposit;
+
+/**
+ * A change of a deposit between two versions of a deposits XML file.
+ * Deposits are matched by their {@code id} attribute.
+ */
+public final class DepositDelta {
+
+    /**
+     * A kind of change.
+     */
+    public enum Kind {
+
+        /** A deposit with a new id. */
+        ADD,
+
+        /** A deposit whose element has changed. */
+        UPDATE,
+
+        /**
+         * A deposit whose id is no longer in the file or that is no longer
+         * parsed (e.g. it does not match the filter any more).
+         */
+        REMOVE
+    }
+
+    /** The kind of change. */
+    private final Kind kind;
+
+    /** The deposit id. */
+    private final String id;
+
+    /** The new deposit. */
+    private final Deposit deposit;
+
+    /**
+     * Instantiates a new deposit delta.
+     * @param kind the kind of change
+     * @param id the deposit id
+     * @param deposit the new deposit or null for {@link Kind#REMOVE}
+     */
+    public DepositDelta(Kind kind, String id, Deposit deposit) {
+        this.kind = kind;
+        this.id = id;
+        this.deposit = deposit;
+    }
+
+    /**
+     * Gets the kind of change.
+     * @return the kind
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Gets the deposit id.
+     * @return the id
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Gets the new deposit.
+     * @return the deposit or null if it has been removed
+     */
+    public Deposit getDeposit() {
+        return deposit;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return kind + " " + id;
+    }
+}
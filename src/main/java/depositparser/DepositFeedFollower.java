@@ -0,0 +1,355 @@
+package depositparser;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import deposit.Deposit;
+
+/**
+ * A follower of a deposits XML file that is still being appended to, e.g. a
+ * feed that writes {@code deposit} elements into a file without closing it.
+ * The file is polled for growth, and the deposits whose end tags have been
+ * written since the last poll are parsed with a StAX cursor (as a fragment
+ * with the prolog and the root start tag of the file) and passed to the
+ * subscribers. A deposit is delivered at most one poll interval after its
+ * end tag has been written. A deposit that could not be parsed is logged and
+ * skipped, the other deposits of the poll are delivered.
+ * <p>
+ * Following stops when the root end tag is written. If the file is
+ * truncated, it is followed again from the start. The file must use an ASCII
+ * compatible encoding (e.g. UTF-8).
+ */
+public class DepositFeedFollower implements Closeable {
+
+    /** The logger. */
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    /** The maximal size of a fragment (a fragment is mapped as a whole). */
+    private static final long MAX_FRAGMENT_SIZE = 1L << 30;
+
+    /** The XML file. */
+    private final File xmlFile;
+
+    /** The subscribers. */
+    private final List<Consumer<? super Deposit>> subscribers =
+            new CopyOnWriteArrayList<>();
+
+    /** The file channel or null if the file has not been opened yet. */
+    private FileChannel channel;
+
+    /** The file layout or null if the root start tag has not been read. */
+    private DepositFileLayout layout;
+
+    /** The offset after the last delivered deposit. */
+    private long offset;
+
+    /** Whether the root end tag has been read. */
+    private boolean finished;
+
+    /** The scheduler of polls. */
+    private ScheduledExecutorService scheduler;
+
+    /** Whether the scheduler has been created by the follower. */
+    private boolean ownScheduler;
+
+    /** The scheduled polls. */
+    private ScheduledFuture<?> polls;
+
+    /** The policy for unknown deposit types and country codes. */
+    private UnknownValuePolicy unknownValuePolicy = UnknownValuePolicy.FAIL;
+
+    /**
+     * Instantiates a new deposit feed follower. The file does not have to
+     * exist yet.
+     * @param xmlFile an XML file to be followed
+     */
+    public DepositFeedFollower(File xmlFile) {
+        this.xmlFile = xmlFile;
+    }
+
+    /**
+     * Adds a subscriber. Subscribers are called on the polling thread in
+     * document order of deposits.
+     * @param subscriber a consumer of new deposits
+     */
+    public void subscribe(Consumer<? super Deposit> subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    /**
+     * Removes a subscriber.
+     * @param subscriber a consumer of new deposits
+     */
+    public void unsubscribe(Consumer<? super Deposit> subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    /**
+     * Gets the policy for unknown deposit types and country codes.
+     * @return the policy ({@link UnknownValuePolicy#FAIL} by default)
+     */
+    public synchronized UnknownValuePolicy getUnknownValuePolicy() {
+        return unknownValuePolicy;
+    }
+
+    /**
+     * Sets the policy for unknown deposit types and country codes. A deposit
+     * rejected by the policy is skipped.
+     * @param unknownValuePolicy a new policy
+     */
+    public synchronized void setUnknownValuePolicy(
+            UnknownValuePolicy unknownValuePolicy) {
+        this.unknownValuePolicy = unknownValuePolicy;
+    }
+
+    /**
+     * Starts polling the file on a daemon thread of its own.
+     * @param interval the poll interval
+     * @param unit the unit of the interval
+     */
+    public synchronized void start(long interval, TimeUnit unit) {
+        if (polls != null) {
+            throw new IllegalStateException("Already started");
+        }
+
+        ScheduledExecutorService executor =
+                Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread thread = new Thread(r, "deposit-feed-follower");
+
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        start(executor, interval, unit);
+        ownScheduler = true;
+    }
+
+    /**
+     * Starts polling the file on the given scheduler.
+     * @param executor the scheduler of polls
+     * @param interval the poll interval
+     * @param unit the unit of the interval
+     */
+    public synchronized void start(ScheduledExecutorService executor,
+                                   long interval, TimeUnit unit) {
+        if (polls != null) {
+            throw new IllegalStateException("Already started");
+        }
+
+        scheduler = executor;
+        ownScheduler = false;
+        polls = executor.scheduleWithFixedDelay(this::pollQuietly, 0,
+                interval, unit);
+    }
+
+    /**
+     * Checks whether the root end tag has been read, so that no more
+     * deposits can follow.
+     * @return true if the feed is finished
+     */
+    public synchronized boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Reads the deposits written since the last poll and passes them to the
+     * subscribers. A deposit that could not be parsed is logged and
+     * skipped.
+     * @return the number of new deposits
+     * @throws DepositParserException if the file could not be read
+     */
+    public synchronized int poll() {
+        if (finished) {
+            return 0;
+        }
+
+        try {
+            if (!openLayout()) {
+                return 0;
+            }
+
+            long size = channel.size();
+
+            if (size < offset) {
+                LOGGER.warn("Deposit feed truncated, following from start.");
+                closeChannel();
+                return 0;
+            }
+
+            long limit = Math.min(size, offset + MAX_FRAGMENT_SIZE);
+            long end = layout.findDepositEnd(offset, limit);
+            List<Deposit> deposits = new ArrayList<>();
+
+            if (end > offset) {
+                readFragment(offset, end, deposits);
+                offset = end;
+            }
+
+            // deposits beyond the limit are read by the next polls
+            finished = layout.findFooter(offset, limit) >= 0;
+
+            for (Deposit d : deposits) {
+                for (Consumer<? super Deposit> subscriber : subscribers) {
+                    subscriber.accept(d);
+                }
+            }
+
+            return deposits.size();
+        } catch (IOException e) {
+            throw new DepositParserException(e);
+        }
+    }
+
+    /**
+     * Stops polling and closes the file.
+     * @throws IOException if the file could not be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (polls != null) {
+            polls.cancel(false);
+            polls = null;
+        }
+
+        if (ownScheduler) {
+            scheduler.shutdown();
+        }
+
+        scheduler = null;
+        closeChannel();
+    }
+
+    /**
+     * Poll the file and log errors instead of throwing them, so that
+     * scheduled polls go on.
+     */
+    private void pollQuietly() {
+        try {
+            poll();
+        } catch (RuntimeException e) {
+            LOGGER.error(e);
+        }
+
+        synchronized (this) {
+            if (finished && (polls != null)) {
+                polls.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Read the deposits of a fragment. If the fragment could not be parsed,
+     * its deposits are parsed one by one, and the ones that could not be
+     * parsed are logged and skipped.
+     * @param start the fragment start offset
+     * @param end the fragment end offset
+     * @param deposits a list to add the deposits to
+     * @throws IOException if the file could not be read
+     */
+    private void readFragment(long start, long end, List<Deposit> deposits)
+            throws IOException {
+        ParseOptions options = new ParseOptions(unknownValuePolicy, null,
+                null, DepositFilter.ALL, DepositField.ALL);
+
+        try {
+            readDeposits(start, end, options, deposits);
+            return;
+        } catch (DepositParserException e) {
+            LOGGER.debug(e);
+        }
+
+        for (long from = layout.findDepositStart(start, end); from < end;) {
+            long to = layout.findDepositStart(from + 1, end);
+
+            try {
+                readDeposits(from, to, options, deposits);
+            } catch (DepositParserException e) {
+                LOGGER.error("Deposit skipped.", layout.locate(e, from));
+            }
+
+            from = to;
+        }
+    }
+
+    /**
+     * Read the deposits of a fragment. No deposits are added if the
+     * fragment could not be parsed.
+     * @param start the fragment start offset
+     * @param end the fragment end offset
+     * @param options the parse options
+     * @param deposits a list to add the deposits to
+     * @throws IOException if the file could not be mapped
+     * @throws DepositParserException if the fragment could not be parsed
+     */
+    private void readDeposits(long start, long end, ParseOptions options,
+                              List<Deposit> deposits) throws IOException {
+        List<Deposit> read = new ArrayList<>();
+
+        try (DepositIterator it = DepositStAXCursorParser.iterator(
+                layout.openFragment(start, end), null, options)) {
+            it.forEachRemaining(read::add);
+        }
+
+        deposits.addAll(read);
+    }
+
+    /**
+     * Open the file and read its root start tag if it has not been done.
+     * @return true if the file is open and its root start tag has been read
+     * @throws IOException if the file could not be read
+     */
+    private boolean openLayout() throws IOException {
+        if (channel == null) {
+            try {
+                channel = FileChannel.open(xmlFile.toPath(),
+                        StandardOpenOption.READ);
+            } catch (NoSuchFileException e) {
+                return false;
+            }
+        }
+
+        if (layout == null) {
+            try {
+                layout = new DepositFileLayout(channel, false);
+            } catch (DepositParserException e) {
+                // the root start tag may not have been written yet
+                LOGGER.debug(e);
+                return false;
+            }
+
+            offset = layout.getBodyStart();
+        }
+
+        return true;
+    }
+
+    /**
+     * Close the file, so that it is read again from the start.
+     * @throws IOException if the file could not be closed
+     */
+    private void closeChannel() throws IOException {
+        layout = null;
+
+        if (channel != null) {
+            FileChannel c = channel;
+
+            channel = null;
+            c.close();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package depositparser;
+
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * The fields of a deposit, i.e. the attributes and the child elements of a
+ * {@code deposit} element. A parser can be told which fields to read (see
+ * {@link AbstractDepositParser#setProjection(Set)}); the other fields are
+ * not decoded and are left unset.
+ */
+public enum DepositField {
+
+    /** The {@code id} attribute. */
+    ID,
+
+    /** The {@code type} attribute. */
+    TYPE,
+
+    /** The {@code bank:name} attribute. */
+    NAME,
+
+    /** The {@code country} attribute. */
+    COUNTRY,
+
+    /** The {@code depositor} element. */
+    DEPOSITOR,
+
+    /** The {@code account-id} element. */
+    ACCOUNT_ID,
+
+    /** The {@code fin:amount-on-deposit} element. */
+    AMOUNT_ON_DEPOSIT,
+
+    /** The {@code fin:interest} element. */
+    INTEREST,
+
+    /** The {@code time-constraint} element. */
+    TIME_CONSTRAINT;
+
+    /** The financial namespace URI. */
+    private static final String FIN_NS = "www.example.org/xmlns/financial";
+
+    /** The mask of all fields. */
+    static final int ALL = (1 << values().length) - 1;
+
+    /** The mask of the attributes. */
+    static final int ATTRIBUTES = mask(EnumSet.range(ID, COUNTRY));
+
+    /**
+     * Gets the bit of the field in a mask of fields.
+     * @return the bit
+     */
+    int bit() {
+        return 1 << ordinal();
+    }
+
+    /**
+     * Gets the local name of the attribute or the element of the field.
+     * @return the local name
+     */
+    String localName() {
+        return name().toLowerCase(Locale.ROOT).replace('_', '-');
+    }
+
+    /**
+     * Gets the field of a child element of a deposit.
+     * @param ns the namespace URI (null or empty if there is none)
+     * @param localName the local name
+     * @return the field or null if the element is unknown
+     */
+    static DepositField ofElement(String ns, String localName) {
+        if ((ns == null) || ns.isEmpty()) {
+            switch (localName) {
+            case "depositor":
+                return DEPOSITOR;
+            case "account-id":
+                return ACCOUNT_ID;
+            case "time-constraint":
+                return TIME_CONSTRAINT;
+            default:
+                return null;
+            }
+        }
+
+        if (FIN_NS.equals(ns)) {
+            switch (localName) {
+            case "amount-on-deposit":
+                return AMOUNT_ON_DEPOSIT;
+            case "interest":
+                return INTEREST;
+            default:
+                return null;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Gets the mask of a set of fields.
+     * @param fields the fields
+     * @return the mask
+     */
+    static int mask(Set<DepositField> fields) {
+        int mask = 0;
+
+        for (DepositField field : fields) {
+            mask |= field.bit();
+        }
+
+        return mask;
+    }
+
+    /**
+     * Gets the set of fields of a mask.
+     * @param mask the mask
+     * @return the fields
+     */
+    static Set<DepositField> fields(int mask) {
+        Set<DepositField> fields = EnumSet.noneOf(DepositField.class);
+
+        for (DepositField field : values()) {
+            if ((mask & field.bit()) != 0) {
+                fields.add(field);
+            }
+        }
+
+        return fields;
+    }
+}
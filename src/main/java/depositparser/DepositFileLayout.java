@@ -0,0 +1,882 @@
+package depositparser;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.CRC32;
+
+/**
+ * The byte layout of a deposits XML file: a header (the prolog and the root
+ * start tag), a body with {@code deposit} elements and the root end tag.
+ * The body can be cut at {@code deposit} element boundaries, and any such
+ * fragment can be read as a standalone document with the header and the
+ * footer around it, so the namespace declarations of the root element
+ * ({@code bank:}, {@code fin:}) stay in scope.
+ * <p>
+ * Boundaries are found by a byte scan for {@code <deposit}, so the file must
+ * use an ASCII compatible encoding (e.g. UTF-8) and should not contain such
+ * text inside comments or CDATA sections.
+ */
+final class DepositFileLayout {
+
+    /** The size of a window for scanning the file. */
+    private static final int WINDOW = 64 * 1024;
+
+    /** The start of a deposit element. */
+    private static final byte[] DEPOSIT_START = bytes("<deposit");
+
+    /** The end tag of a deposit element without its closing '>'. */
+    private static final byte[] DEPOSIT_END = bytes("</deposit");
+
+    /** A marker of a start tag that does not end within the bytes. */
+    private static final String NO_TAG_END = new String("");
+
+    /** The file channel. */
+    private final FileChannel channel;
+
+    /** The prolog and the root start tag. */
+    private byte[] header;
+
+    /** The root end tag. */
+    private byte[] footer;
+
+    /** The offset of the first byte after the root start tag. */
+    private long bodyStart;
+
+    /** The offset of the root end tag. */
+    private long bodyEnd;
+
+    /**
+     * Instantiates a new layout and reads the header and the footer
+     * positions of the file.
+     * @param channel the file channel
+     * @throws IOException if the file could not be read
+     * @throws DepositParserException if the file has no root element
+     */
+    DepositFileLayout(FileChannel channel) throws IOException {
+        this(channel, true);
+    }
+
+    /**
+     * Instantiates a new layout of a file that may still be written to. The
+     * body of such a file has no known end until the root end tag is
+     * written, so only the header is read.
+     * @param channel the file channel
+     * @param complete false if the file may still be written to
+     * @throws IOException if the file could not be read
+     * @throws DepositParserException if the file has no root element (yet)
+     */
+    DepositFileLayout(FileChannel channel, boolean complete)
+            throws IOException {
+        this.channel = channel;
+        readHeader();
+
+        if (complete) {
+            readFooter();
+        } else {
+            bodyEnd = Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Gets the offset of the first byte after the root start tag.
+     * @return the body start offset
+     */
+    long getBodyStart() {
+        return bodyStart;
+    }
+
+    /**
+     * Gets the offset of the root end tag.
+     * @return the body end offset or {@code Long.MAX_VALUE} if the file may
+     * still be written to
+     */
+    long getBodyEnd() {
+        return bodyEnd;
+    }
+
+    /**
+     * Finds the start of the first {@code deposit} element at or after the
+     * given offset.
+     * @param from the offset to start the search from
+     * @return the offset of the element or the body end offset if there are
+     * no more deposits
+     * @throws IOException if the file could not be read
+     */
+    long findDepositStart(long from) throws IOException {
+        return findDepositStart(from, bodyEnd);
+    }
+
+    /**
+     * Finds the start of the first {@code deposit} element within the given
+     * range.
+     * @param from the range start offset
+     * @param to the range end offset
+     * @return the offset of the element or the range end offset if there
+     * are no more deposits within the range
+     * @throws IOException if the file could not be read
+     * @throws DepositParserException if the file ends within the range
+     */
+    long findDepositStart(long from, long to) throws IOException {
+        ByteBuffer window = ByteBuffer.allocate(WINDOW);
+        byte[] b = window.array();
+        long pos = Math.max(from, bodyStart);
+
+        while (pos < to) {
+            int n = readRange(window, pos, to);
+
+            for (int i = 0; i + DEPOSIT_START.length < n; i++) {
+                if (matches(b, i, DEPOSIT_START)
+                        && isNameEnd(b[i + DEPOSIT_START.length])) {
+                    return pos + i;
+                }
+            }
+
+            if (pos + n >= to) {
+                break;
+            }
+
+            // keep the overlap so that a tag across windows is not missed
+            pos += n - DEPOSIT_START.length;
+        }
+
+        return to;
+    }
+
+    /**
+     * Scans the body for {@code deposit} elements in document order. A
+     * deposit range reaches from its start tag to the start of the next
+     * deposit (or the root end tag), so ranges cover the whole body from the
+     * first deposit on and can be opened by {@link #openFragment}.
+     * @param visitor the visitor of deposit ranges
+     * @throws IOException if the file could not be read
+     * @throws DepositParserException if the file has been truncated while
+     * it was scanned
+     */
+    void scanDeposits(DepositRangeVisitor visitor) throws IOException {
+        ByteBuffer window = ByteBuffer.allocate(WINDOW);
+        byte[] b = window.array();
+        CRC32 crc = new CRC32();
+        long start = -1;
+        String id = null;
+        long pos = bodyStart;
+
+        while (pos < bodyEnd) {
+            int n = readRange(window, pos, bodyEnd);
+            int hashed = 0;
+            int i = 0;
+
+            for (; i + DEPOSIT_START.length < n; i++) {
+                if (!matches(b, i, DEPOSIT_START)
+                        || !isNameEnd(b[i + DEPOSIT_START.length])) {
+                    continue;
+                }
+
+                if (start >= 0) {
+                    crc.update(b, hashed, i - hashed);
+                    visitor.visit(start, pos + i, id,
+                            fingerprint(pos + i - start, crc));
+                }
+
+                crc.reset();
+                hashed = i;
+                start = pos + i;
+                id = depositId(b, i, n);
+
+                if (id == NO_TAG_END) {
+                    id = readDepositId(start);
+                }
+            }
+
+            // the rest of the window is scanned again with the next one
+            int scanned = (pos + n >= bodyEnd) ? n : i;
+
+            if (start >= 0) {
+                crc.update(b, hashed, scanned - hashed);
+            }
+
+            pos += scanned;
+
+            if (scanned == n) {
+                break;
+            }
+        }
+
+        if (start >= 0) {
+            visitor.visit(start, bodyEnd, id,
+                    fingerprint(bodyEnd - start, crc));
+        }
+    }
+
+    /**
+     * Finds the end of the last complete {@code deposit} element within the
+     * given range.
+     * @param from the range start offset
+     * @param to the range end offset
+     * @return the offset after the end tag of the element or the range start
+     * offset if no element ends within the range
+     * @throws IOException if the file could not be read
+     */
+    long findDepositEnd(long from, long to) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(256);
+        byte[] b = buf.array();
+        long end = to;
+
+        while (true) {
+            long tag = findLast(DEPOSIT_END, DEPOSIT_END.length, from, end);
+
+            if (tag < 0) {
+                return from;
+            }
+
+            // the end tag may have whitespace before its '>'
+            int n = read(buf, tag + DEPOSIT_END.length, to);
+            int i = 0;
+
+            while ((i < n) && isWhitespace(b[i])) {
+                i++;
+            }
+
+            if ((i < n) && (b[i] == '>')) {
+                return tag + DEPOSIT_END.length + i + 1;
+            }
+
+            end = tag + DEPOSIT_END.length - 1;
+        }
+    }
+
+    /**
+     * Finds the root end tag within the given range.
+     * @param from the range start offset
+     * @param to the range end offset
+     * @return the offset of the root end tag or -1 if there is none
+     * @throws IOException if the file could not be read
+     */
+    long findFooter(long from, long to) throws IOException {
+        // the footer is matched without its closing '>'
+        return findLast(footer, footer.length - 1, from, to);
+    }
+
+    /**
+     * Opens a body fragment as a standalone document. The fragment must
+     * start and end at deposit element boundaries.
+     * @param start the fragment start offset
+     * @param end the fragment end offset
+     * @return an input stream of the document
+     * @throws IOException if the file could not be mapped
+     */
+    InputStream openFragment(long start, long end) throws IOException {
+        ByteBuffer body = channel.map(FileChannel.MapMode.READ_ONLY,
+                start, end - start);
+
+        return new SequenceInputStream(Collections.enumeration(Arrays.asList(
+                new ByteArrayInputStream(header),
+                new ByteBufferInputStream(body),
+                new ByteArrayInputStream(footer))));
+    }
+
+    /**
+     * Translates the position of an error in a fragment opened by
+     * {@link #openFragment} into the position in the file. The lines before
+     * the fragment are counted only when an error is reported.
+     * @param e the exception of the error
+     * @param start the fragment start offset
+     * @return the exception with the position in the file or with an
+     * unknown position if the file could not be read
+     */
+    DepositParserException locate(DepositParserException e, long start) {
+        if (e.getLineNumber() < 0) {
+            return e;
+        }
+
+        ByteBuffer window = ByteBuffer.allocate(WINDOW);
+        byte[] b = window.array();
+        long lines = 0;
+        long lineStart = 0;
+
+        try {
+            for (long pos = 0; pos < start;) {
+                int n = read(window, pos, start);
+
+                if (n == 0) {
+                    throw new EOFException("File truncated at " + pos);
+                }
+
+                for (int i = 0; i < n; i++) {
+                    if (b[i] == '\n') {
+                        lines++;
+                        lineStart = pos + i + 1;
+                    }
+                }
+
+                pos += n;
+            }
+        } catch (IOException ie) {
+            DepositParserException result = e.relocate(-1, -1);
+
+            result.addSuppressed(ie);
+            return result;
+        }
+
+        return locate(e, header, start, lines, lineStart);
+    }
+
+    /**
+     * Translates the position of an error in a document made of the header
+     * of a file and the bytes of the file from the given offset on into the
+     * position in the file.
+     * @param e the exception of the error
+     * @param header the header, i.e. the beginning of the file
+     * @param start the offset of the bytes after the header
+     * @param lines the number of line feeds before the offset
+     * @param lineStart the offset after the last line feed before the
+     * offset
+     * @return the exception with the position in the file
+     */
+    static DepositParserException locate(DepositParserException e,
+                                         byte[] header, long start,
+                                         long lines, long lineStart) {
+        int headerLines = 0;
+        int headerTail = 0;
+
+        for (byte c : header) {
+            if (c == '\n') {
+                headerLines++;
+                headerTail = 0;
+            } else {
+                headerTail++;
+            }
+        }
+
+        int line = e.getLineNumber() - 1 - headerLines;
+
+        // the position of an error in the header is the one in the file
+        if ((e.getLineNumber() < 0) || (line < 0)) {
+            return e;
+        }
+
+        // the first line after the header follows the last line of it
+        int column = (line == 0) ? e.getColumnNumber() - headerTail
+                + (int) (start - lineStart) : e.getColumnNumber();
+
+        return e.relocate((int) (lines + 1 + line), column);
+    }
+
+    /**
+     * Reads the {@code id} attribute of a deposit start tag that does not
+     * fit in the scan window.
+     * @param start the offset of the start tag
+     * @return the attribute value or null if there is none
+     * @throws IOException if the file could not be read
+     */
+    private String readDepositId(long start) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(WINDOW);
+
+        while (true) {
+            int n = readRange(buf, start, bodyEnd);
+            String id = depositId(buf.array(), 0, n);
+
+            if (id != NO_TAG_END) {
+                return id;
+            }
+
+            if (n < buf.capacity()) {
+                throw new DepositParserException(
+                        "Unterminated deposit start tag at offset " + start);
+            }
+
+            buf = ByteBuffer.allocate(buf.capacity() * 2);
+        }
+    }
+
+    /**
+     * Gets the {@code id} attribute of a deposit start tag.
+     * @param b the bytes
+     * @param from the offset of the start tag
+     * @param n the number of bytes
+     * @return the attribute value, null if there is none or
+     * {@link #NO_TAG_END} if the start tag does not end within the bytes
+     */
+    private static String depositId(byte[] b, int from, int n) {
+        int end = startTagEnd(b, n, from + DEPOSIT_START.length);
+
+        if (end < 0) {
+            return NO_TAG_END;
+        }
+
+        byte quote = 0;
+
+        for (int i = from + DEPOSIT_START.length; i + 2 < end; i++) {
+            if (quote != 0) {
+                if (b[i] == quote) {
+                    quote = 0;
+                }
+            } else if ((b[i] == '"') || (b[i] == '\'')) {
+                quote = b[i];
+            } else if (isWhitespace(b[i]) && (b[i + 1] == 'i')
+                    && (b[i + 2] == 'd')) {
+                int value = attributeValueStart(b, end, i + 3);
+
+                if (value >= 0) {
+                    int valueEnd = value;
+
+                    while (b[valueEnd] != b[value - 1]) {
+                        valueEnd++;
+                    }
+
+                    return attributeValue(new String(b, value,
+                            valueEnd - value, StandardCharsets.UTF_8));
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Decodes the literal of an attribute value as an XML parser does: line
+     * ends and whitespace are replaced by spaces, and character references
+     * and the predefined entity references are resolved.
+     * @param literal the text between the quotes
+     * @return the attribute value
+     * @throws DepositParserException if the literal has another entity
+     * reference or a malformed reference
+     */
+    static String attributeValue(String literal) {
+        if ((literal.indexOf('&') < 0) && (literal.indexOf('\t') < 0)
+                && (literal.indexOf('\n') < 0)
+                && (literal.indexOf('\r') < 0)) {
+            return literal;
+        }
+
+        StringBuilder value = new StringBuilder(literal.length());
+
+        for (int i = 0; i < literal.length(); i++) {
+            char c = literal.charAt(i);
+
+            if (c == '\r') {
+                // a CR LF pair is one line end
+                if ((i + 1 < literal.length())
+                        && (literal.charAt(i + 1) == '\n')) {
+                    i++;
+                }
+
+                value.append(' ');
+            } else if ((c == '\t') || (c == '\n')) {
+                value.append(' ');
+            } else if (c == '&') {
+                int end = literal.indexOf(';', i);
+
+                if (end < 0) {
+                    throw new DepositParserException(
+                            "Malformed reference in attribute: " + literal);
+                }
+
+                value.append(reference(literal.substring(i + 1, end)));
+                i = end;
+            } else {
+                value.append(c);
+            }
+        }
+
+        return value.toString();
+    }
+
+    /**
+     * Resolves a character reference or a predefined entity reference.
+     * @param name the text between '&amp;' and ';'
+     * @return the characters of the reference
+     * @throws DepositParserException if the reference is not a character
+     * reference or a predefined entity reference
+     */
+    private static String reference(String name) {
+        switch (name) {
+        case "lt":
+            return "<";
+        case "gt":
+            return ">";
+        case "amp":
+            return "&";
+        case "apos":
+            return "'";
+        case "quot":
+            return "\"";
+        default:
+            break;
+        }
+
+        try {
+            if (name.startsWith("#x")) {
+                return new String(Character.toChars(
+                        Integer.parseInt(name.substring(2), 16)));
+            } else if (name.startsWith("#")) {
+                return new String(Character.toChars(
+                        Integer.parseInt(name.substring(1))));
+            }
+        } catch (IllegalArgumentException e) {
+            throw new DepositParserException(
+                    "Malformed character reference: &" + name + ";", e);
+        }
+
+        throw new DepositParserException(
+                "Unsupported entity reference in attribute: &" + name + ";");
+    }
+
+    /**
+     * Finds the value of an attribute after its name.
+     * @param b the start tag bytes
+     * @param end the end of the start tag
+     * @param from the offset after the attribute name
+     * @return the offset after the opening quote or -1 if the name is not
+     * followed by '='
+     */
+    private static int attributeValueStart(byte[] b, int end, int from) {
+        int i = from;
+
+        while ((i < end) && isWhitespace(b[i])) {
+            i++;
+        }
+
+        if ((i >= end) || (b[i] != '=')) {
+            return -1;
+        }
+
+        i++;
+
+        while ((i < end) && isWhitespace(b[i])) {
+            i++;
+        }
+
+        return ((i < end) && ((b[i] == '"') || (b[i] == '\''))) ? i + 1 : -1;
+    }
+
+    /**
+     * Combines the length and the checksum of a deposit range.
+     * @param length the length of the range
+     * @param crc the checksum of the range
+     * @return the fingerprint
+     */
+    private static long fingerprint(long length, CRC32 crc) {
+        return (length << 32) ^ crc.getValue();
+    }
+
+    /**
+     * Reads the prolog and the root start tag.
+     * @throws IOException if the file could not be read
+     */
+    private void readHeader() throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(WINDOW);
+        long size = channel.size();
+
+        while (true) {
+            int n = readRange(buf, 0, size);
+            int end = rootTagEnd(buf.array(), n);
+
+            if (end >= 0) {
+                bodyStart = end;
+                return;
+            }
+
+            if (n == size) {
+                throw new DepositParserException("No root element found");
+            }
+
+            buf = ByteBuffer.allocate(buf.capacity() * 2);
+        }
+    }
+
+    /**
+     * Finds the root end tag searching backwards from the end of file.
+     * @throws IOException if the file could not be read
+     */
+    private void readFooter() throws IOException {
+        bodyEnd = findFooter(bodyStart, channel.size());
+
+        if (bodyEnd < 0) {
+            throw new DepositParserException("No root end tag found");
+        }
+    }
+
+    /**
+     * Finds the last occurrence of a pattern prefix within the given range
+     * searching backwards.
+     * @param pattern the pattern
+     * @param len the pattern prefix length
+     * @param from the range start offset
+     * @param to the range end offset
+     * @return the offset of the occurrence or -1 if there is none
+     * @throws IOException if the file could not be read
+     */
+    private long findLast(byte[] pattern, int len, long from, long to)
+            throws IOException {
+        ByteBuffer window = ByteBuffer.allocate(WINDOW);
+        byte[] b = window.array();
+        long end = to;
+
+        while (end - from >= len) {
+            long pos = Math.max(from, end - WINDOW);
+            int n = read(window, pos, end);
+
+            for (int i = n - len; i >= 0; i--) {
+                if (matches(b, i, pattern, len)) {
+                    return pos + i;
+                }
+            }
+
+            if (pos == from) {
+                break;
+            }
+
+            // keep the overlap so that a pattern across windows is not missed
+            end = pos + len - 1;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Finds the end of the root start tag in the beginning of a file and
+     * builds the header and the footer.
+     * @param b the file bytes
+     * @param n the number of bytes
+     * @return the offset after the root start tag or -1 if it is not
+     * complete within the given bytes
+     */
+    private int rootTagEnd(byte[] b, int n) {
+        if ((n >= 2) && (((b[0] == (byte) 0xFE) && (b[1] == (byte) 0xFF))
+                || ((b[0] == (byte) 0xFF) && (b[1] == (byte) 0xFE)))) {
+            throw new DepositParserException(
+                    "UTF-16 files can not be split into fragments");
+        }
+
+        int i = rootTagStart(b, n);
+
+        if (i < 0) {
+            return -1;
+        }
+
+        int nameEnd = i + 1;
+
+        while ((nameEnd < n) && !isNameEnd(b[nameEnd])) {
+            nameEnd++;
+        }
+
+        int tagEnd = startTagEnd(b, n, nameEnd);
+
+        if (tagEnd < 0) {
+            return -1;
+        }
+
+        header = Arrays.copyOf(b, tagEnd);
+        footer = ("</" + new String(b, i + 1, nameEnd - i - 1,
+                StandardCharsets.US_ASCII) + ">")
+                .getBytes(StandardCharsets.US_ASCII);
+        return tagEnd;
+    }
+
+    /**
+     * Finds the root start tag in the beginning of a document skipping the
+     * XML declaration, processing instructions, comments and the document
+     * type declaration.
+     * @param b the document bytes
+     * @param n the number of bytes
+     * @return the offset of the root start tag or -1 if it is not within the
+     * given bytes
+     */
+    static int rootTagStart(byte[] b, int n) {
+        int i = 0;
+
+        while (i < n - 1) {
+            if (b[i] != '<') {
+                i++;
+            } else if (b[i + 1] == '?') {
+                i = indexOf(b, n, bytes("?>"), i);
+            } else if (b[i + 1] == '!') {
+                i = matches(b, i, bytes("<!--"))
+                        ? indexOf(b, n, bytes("-->"), i)
+                        : indexOf(b, n, bytes(">"), i);
+            } else {
+                return i;
+            }
+
+            if (i < 0) {
+                return -1;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Finds the end of a start tag skipping quoted attribute values.
+     * @param b the bytes
+     * @param n the number of bytes
+     * @param from the offset to start from
+     * @return the offset after the closing '>' or -1 if not found
+     */
+    static int startTagEnd(byte[] b, int n, int from) {
+        byte quote = 0;
+
+        for (int i = from; i < n; i++) {
+            if (quote != 0) {
+                if (b[i] == quote) {
+                    quote = 0;
+                }
+            } else if ((b[i] == '"') || (b[i] == '\'')) {
+                quote = b[i];
+            } else if (b[i] == '>') {
+                return i + 1;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Finds a pattern and returns the offset after it.
+     * @param b the bytes
+     * @param n the number of bytes
+     * @param pattern the pattern
+     * @param from the offset to start from
+     * @return the offset after the pattern or -1 if not found
+     */
+    private static int indexOf(byte[] b, int n, byte[] pattern, int from) {
+        for (int i = from; i + pattern.length <= n; i++) {
+            if (matches(b, i, pattern)) {
+                return i + pattern.length;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Reads file bytes to the buffer.
+     * @param buf the buffer
+     * @param pos the file offset
+     * @param limit the offset not to be read past
+     * @return the number of bytes read
+     * @throws IOException if the file could not be read
+     */
+    private int read(ByteBuffer buf, long pos, long limit) throws IOException {
+        buf.clear();
+
+        if (limit - pos < buf.capacity()) {
+            buf.limit((int) (limit - pos));
+        }
+
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, pos + buf.position()) < 0) {
+                break;
+            }
+        }
+
+        return buf.position();
+    }
+
+    /**
+     * Reads bytes of a range that the file is known to contain.
+     * @param buf the buffer
+     * @param pos the file offset
+     * @param limit the range end offset
+     * @return the number of bytes read
+     * @throws IOException if the file could not be read
+     * @throws DepositParserException if the file ends before the buffer is
+     * full, i.e. it has been truncated while it was scanned
+     */
+    private int readRange(ByteBuffer buf, long pos, long limit)
+            throws IOException {
+        int n = read(buf, pos, limit);
+
+        if (n < buf.limit()) {
+            throw new DepositParserException("File changed while scanning");
+        }
+
+        return n;
+    }
+
+    /**
+     * Checks whether the bytes at the given offset match the pattern.
+     * @param b the bytes
+     * @param off the offset
+     * @param pattern the pattern
+     * @return true if the bytes match
+     */
+    static boolean matches(byte[] b, int off, byte[] pattern) {
+        return matches(b, off, pattern, pattern.length);
+    }
+
+    /**
+     * Checks whether the bytes at the given offset match the pattern prefix.
+     * @param b the bytes
+     * @param off the offset
+     * @param pattern the pattern
+     * @param len the pattern prefix length
+     * @return true if the bytes match
+     */
+    static boolean matches(byte[] b, int off, byte[] pattern, int len) {
+        if ((off < 0) || (off + len > b.length)) {
+            return false;
+        }
+
+        for (int i = 0; i < len; i++) {
+            if (b[off + i] != pattern[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Checks whether the byte terminates an element name.
+     * @param c the byte
+     * @return true if the byte is a whitespace, '/' or '>'
+     */
+    static boolean isNameEnd(byte c) {
+        return isWhitespace(c) || (c == '/') || (c == '>');
+    }
+
+    /**
+     * Checks whether the byte is an XML whitespace.
+     * @param c the byte
+     * @return true if the byte is a space, tab or line break
+     */
+    static boolean isWhitespace(byte c) {
+        return (c == ' ') || (c == '\t') || (c == '\n') || (c == '\r');
+    }
+
+    /**
+     * Encodes an ASCII string.
+     * @param s the string
+     * @return the bytes
+     */
+    static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * A visitor of deposit ranges of the body.
+     */
+    @FunctionalInterface
+    interface DepositRangeVisitor {
+
+        /**
+         * Visits a deposit range.
+         * @param start the offset of the deposit start tag
+         * @param end the offset of the next deposit or the root end tag
+         * @param id the {@code id} attribute or null
+         * @param fingerprint a checksum of the range bytes
+         * @throws IOException if the range could not be processed
+         */
+        void visit(long start, long end, String id, long fingerprint)
+                throws IOException;
+    }
+}
@@ -0,0 +1,388 @@
+package depositparser;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import deposit.Deposit;
+import deposit.ISO3166CountryCode;
+import deposit.Type;
+
+/**
+ * A filter of deposits: a conjunction of conditions on the attributes of a
+ * deposit ({@code id}, {@code type}, {@code country} and {@code bank:name})
+ * and on its fields.
+ * <p>
+ * Given to a parser, the filter is checked as soon as the start tag of a
+ * {@code deposit} element has been read: a deposit whose attributes do not
+ * match is skipped without reading its fields. The conditions on fields are
+ * checked when the deposit is complete. A filter is also a plain predicate,
+ * e.g. for deposits in memory. A filter is immutable, so the parallel
+ * parser checks it on its worker threads; the conditions given to
+ * {@link #where(Predicate)} and {@link #whereAttributes(Predicate)} must be
+ * thread-safe as well.
+ * <p>
+ * A filter can be built from the factory methods or parsed from a query,
+ * such as {@code country=UA and type=savings and amount>5000}; see
+ * {@link #parse(String)}.
+ */
+public final class DepositFilter implements Predicate<Deposit> {
+
+    /** The filter that accepts all deposits. */
+    public static final DepositFilter ALL = new DepositFilter(null, null, 0,
+            "all");
+
+    /** A condition of a query. */
+    private static final Pattern CONDITION = Pattern.compile(
+            "\\G\\s*([\\w:-]+)\\s*(<=|>=|!=|=|<|>)\\s*('[^']*'|\"[^\"]*\"|"
+            + "[^\\s'\"]+)\\s*(?:(?i:and)(?=\\s)|$)");
+
+    /** The condition on attributes or null. */
+    private final Predicate<Deposit> attributes;
+
+    /** The condition on fields or null. */
+    private final Predicate<Deposit> fields;
+
+    /** The mask of the fields that the conditions read. */
+    private final int reads;
+
+    /** The description. */
+    private final String description;
+
+    /**
+     * Instantiates a new deposit filter.
+     * @param attributes the condition on attributes or null
+     * @param fields the condition on fields or null
+     * @param reads the mask of the fields that the conditions read
+     * @param description the description
+     */
+    private DepositFilter(Predicate<Deposit> attributes,
+                          Predicate<Deposit> fields, int reads,
+                          String description) {
+        this.attributes = attributes;
+        this.fields = fields;
+        this.reads = reads;
+        this.description = description;
+    }
+
+    /**
+     * Creates a filter of deposits of the given types.
+     * @param types the types
+     * @return the filter
+     */
+    public static DepositFilter type(Type... types) {
+        Set<Type> set = EnumSet.noneOf(Type.class);
+
+        set.addAll(Arrays.asList(types));
+        return new DepositFilter(d -> set.contains(d.getType()), null,
+                DepositField.TYPE.bit(), "type in " + set);
+    }
+
+    /**
+     * Creates a filter of deposits in the given countries.
+     * @param countries the countries
+     * @return the filter
+     */
+    public static DepositFilter country(ISO3166CountryCode... countries) {
+        Set<ISO3166CountryCode> set =
+                EnumSet.noneOf(ISO3166CountryCode.class);
+
+        set.addAll(Arrays.asList(countries));
+        return new DepositFilter(d -> set.contains(d.getCountry()), null,
+                DepositField.COUNTRY.bit(), "country in " + set);
+    }
+
+    /**
+     * Creates a filter of deposits in the given banks.
+     * @param names the bank names
+     * @return the filter
+     */
+    public static DepositFilter bankName(String... names) {
+        Set<String> set = new HashSet<>(Arrays.asList(names));
+
+        return new DepositFilter(d -> set.contains(d.getName()), null,
+                DepositField.NAME.bit(), "bank:name in " + set);
+    }
+
+    /**
+     * Creates a filter with a condition on the attributes of deposits. The
+     * condition is checked before the fields are read, so it must only use
+     * the id, the type, the country and the bank name.
+     * @param condition the condition
+     * @return the filter
+     */
+    public static DepositFilter whereAttributes(
+            Predicate<? super Deposit> condition) {
+        return new DepositFilter(condition::test, null,
+                DepositField.ATTRIBUTES, "attributes " + condition);
+    }
+
+    /**
+     * Creates a filter with a condition on complete deposits.
+     * @param condition the condition
+     * @return the filter
+     */
+    public static DepositFilter where(Predicate<? super Deposit> condition) {
+        return new DepositFilter(null, condition::test, DepositField.ALL,
+                "where " + condition);
+    }
+
+    /**
+     * Parses a query: conditions joined by {@code and}. A condition is a
+     * field, an operator ({@code =}, {@code !=}, {@code <}, {@code <=},
+     * {@code >} or {@code >=}) and a value, which is quoted if it has
+     * spaces. The fields are {@code id}, {@code type}, {@code country},
+     * {@code name} (or {@code bank:name}), {@code depositor},
+     * {@code account-id}, {@code amount} (or {@code amount-on-deposit}),
+     * {@code interest} and {@code time} (or {@code time-constraint}).
+     * Only numeric fields can be ordered.
+     * @param query the query
+     * @return the filter
+     * @throws IllegalArgumentException if the query is invalid
+     */
+    public static DepositFilter parse(String query) {
+        Matcher m = CONDITION.matcher(query);
+        DepositFilter filter = null;
+        int end = 0;
+
+        while ((end < query.length()) && m.find()) {
+            String value = m.group(3);
+
+            if ((value.charAt(0) == '\'') || (value.charAt(0) == '"')) {
+                value = value.substring(1, value.length() - 1);
+            }
+
+            DepositFilter condition = condition(m.group(1), m.group(2),
+                    value);
+
+            filter = (filter == null) ? condition : filter.and(condition);
+            end = m.end();
+        }
+
+        if ((filter == null) || (end < query.length())) {
+            throw new IllegalArgumentException("Invalid query: " + query);
+        }
+
+        return new DepositFilter(filter.attributes, filter.fields,
+                filter.reads, query.trim());
+    }
+
+    /**
+     * Combines the filter with another one.
+     * @param other the other filter
+     * @return a filter of deposits that match both filters
+     */
+    public DepositFilter and(DepositFilter other) {
+        if (this == ALL) {
+            return other;
+        }
+
+        if (other == ALL) {
+            return this;
+        }
+
+        return new DepositFilter(and(attributes, other.attributes),
+                and(fields, other.fields), reads | other.reads,
+                description + " and " + other.description);
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.function.Predicate#test(java.lang.Object)
+     */
+    @Override
+    public boolean test(Deposit deposit) {
+        return testAttributes(deposit) && testFields(deposit);
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return description;
+    }
+
+    /**
+     * Checks the conditions on attributes.
+     * @param deposit a deposit whose attributes have been read
+     * @return true if the attributes match
+     */
+    boolean testAttributes(Deposit deposit) {
+        return (attributes == null) || attributes.test(deposit);
+    }
+
+    /**
+     * Checks the conditions on fields.
+     * @param deposit a complete deposit
+     * @return true if the fields match
+     */
+    boolean testFields(Deposit deposit) {
+        return (fields == null) || fields.test(deposit);
+    }
+
+    /**
+     * Gets the fields that the conditions read. A parser reads them even if
+     * they are not in its projection.
+     * @return the mask of the fields
+     */
+    int reads() {
+        return reads;
+    }
+
+    /**
+     * Creates a filter of a query condition.
+     * @param field the field name
+     * @param op the operator
+     * @param value the value
+     * @return the filter
+     * @throws IllegalArgumentException if the condition is invalid
+     */
+    private static DepositFilter condition(String field, String op,
+                                           String value) {
+        String description = field + op + value;
+
+        try {
+            switch (field) {
+            case "id":
+                return new DepositFilter(compare(Deposit::getId, value, op,
+                        false), null, DepositField.ID.bit(), description);
+            case "type":
+                return new DepositFilter(compare(Deposit::getType,
+                        valid(DepositCodes.type(value), field, value), op,
+                        false), null, DepositField.TYPE.bit(), description);
+            case "country":
+                return new DepositFilter(compare(Deposit::getCountry,
+                        valid(DepositCodes.country(value), field, value), op,
+                        false), null, DepositField.COUNTRY.bit(),
+                        description);
+            case "name":
+            case "bank:name":
+                return new DepositFilter(compare(Deposit::getName, value, op,
+                        false), null, DepositField.NAME.bit(), description);
+            case "depositor":
+                return new DepositFilter(null, compare(Deposit::getDepositor,
+                        value, op, false), DepositField.DEPOSITOR.bit(),
+                        description);
+            case "account-id":
+                return new DepositFilter(null, compare(Deposit::getAccountId,
+                        Integer.valueOf(value), op, true),
+                        DepositField.ACCOUNT_ID.bit(), description);
+            case "amount":
+            case "amount-on-deposit":
+                return new DepositFilter(null, compare(
+                        Deposit::getAmountOnDeposit, new BigDecimal(value),
+                        op, true), DepositField.AMOUNT_ON_DEPOSIT.bit(),
+                        description);
+            case "interest":
+                return new DepositFilter(null, compare(Deposit::getInterest,
+                        new BigDecimal(value), op, true),
+                        DepositField.INTEREST.bit(), description);
+            case "time":
+            case "time-constraint":
+                return new DepositFilter(null, compare(
+                        Deposit::getTimeConstraint, Long.valueOf(value), op,
+                        true), DepositField.TIME_CONSTRAINT.bit(),
+                        description);
+            default:
+                throw new IllegalArgumentException("Unknown field: "
+                        + field);
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number: "
+                    + description, e);
+        }
+    }
+
+    /**
+     * Creates a comparison of a deposit property with a value. Decimals are
+     * compared by value, so {@code 5000} equals {@code 5000.00}; a missing
+     * property only matches {@code !=}.
+     * @param getter the getter of the property
+     * @param value the value
+     * @param op the operator
+     * @param ordered whether the property can be ordered
+     * @param <T> the property type
+     * @return the comparison
+     * @throws IllegalArgumentException if the operator is not supported
+     */
+    private static <T extends Comparable<? super T>> Predicate<Deposit>
+            compare(Function<Deposit, T> getter, T value, String op,
+                    boolean ordered) {
+        if (!ordered && !"=".equals(op) && !"!=".equals(op)) {
+            throw new IllegalArgumentException("Operator " + op
+                    + " is only supported for numbers");
+        }
+
+        IntPredicate result;
+
+        switch (op) {
+        case "=":
+            result = c -> c == 0;
+            break;
+        case "!=":
+            result = c -> c != 0;
+            break;
+        case "<":
+            result = c -> c < 0;
+            break;
+        case "<=":
+            result = c -> c <= 0;
+            break;
+        case ">":
+            result = c -> c > 0;
+            break;
+        default:
+            result = c -> c >= 0;
+            break;
+        }
+
+        boolean missing = "!=".equals(op);
+
+        return d -> {
+            T property = getter.apply(d);
+
+            return (property == null) ? missing
+                    : result.test(property.compareTo(value));
+        };
+    }
+
+    /**
+     * Checks that a query value has been decoded.
+     * @param decoded the decoded value or null
+     * @param field the field name
+     * @param value the value
+     * @param <T> the value type
+     * @return the decoded value
+     * @throws IllegalArgumentException if the value is unknown
+     */
+    private static <T> T valid(T decoded, String field, String value) {
+        if (decoded == null) {
+            throw new IllegalArgumentException("Unknown " + field + ": "
+                    + value);
+        }
+
+        return decoded;
+    }
+
+    /**
+     * Combines two conditions.
+     * @param a a condition or null
+     * @param b a condition or null
+     * @return the conjunction or null if both are null
+     */
+    private static Predicate<Deposit> and(Predicate<Deposit> a,
+                                          Predicate<Deposit> b) {
+        if ((a == null) || (b == null)) {
+            return (a == null) ? b : a;
+        }
+
+        return a.and(b);
+    }
+}
@@ -0,0 +1,18 @@
+package depositparser;
+
+import java.util.Iterator;
+
+import deposit.Deposit;
+
+/**
+ * An iterator over deposits of an XML document, which holds the underlying
+ * source open until it is closed.
+ */
+public interface DepositIterator extends Iterator<Deposit>, AutoCloseable {
+
+    /**
+     * Closes the underlying XML reader and source.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,165 @@
+package depositparser;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+import deposit.Deposit;
+
+/**
+ * A deposits parser that splits the XML file into chunks at {@code deposit}
+ * element boundaries and parses the chunks with a StAX cursor on a fork-join
+ * pool.
+ * Every chunk is parsed as a standalone document with the prolog and the
+ * root start tag of the file, so the namespace context is the same as in
+ * the whole file. Deposits are emitted in document order on the calling
+ * thread, where their bank names and depositors are pooled too (the pools
+ * are not thread-safe).
+ * <p>
+ * The file must use an ASCII compatible encoding (e.g. UTF-8).
+ */
+public class DepositParallelParser extends AbstractDepositParser {
+
+    /** The minimal chunk size. Smaller files are parsed as one chunk. */
+    private static final long MIN_CHUNK_SIZE = 1L << 20;
+
+    /** The maximal chunk size (a chunk is mapped to memory as a whole). */
+    private static final long MAX_CHUNK_SIZE = 1L << 30;
+
+    /** The number of chunks per pool thread (for load balancing). */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    /** The pool for parsing chunks. */
+    private final ForkJoinPool pool;
+
+    /**
+     * Instantiates a new deposit parallel parser that uses the common pool.
+     * @param xmlFile an XML file to be parsed
+     */
+    public DepositParallelParser(File xmlFile) {
+        this(xmlFile, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Instantiates a new deposit parallel parser.
+     * @param xmlFile an XML file to be parsed
+     * @param pool a pool for parsing chunks
+     */
+    public DepositParallelParser(File xmlFile, ForkJoinPool pool) {
+        super(xmlFile);
+        this.pool = pool;
+    }
+
+    /* (non-Javadoc)
+     * @see depositparser.AbstractDepositParser#parse(java.util.function.Consumer)
+     */
+    @Override
+    public void parse(Consumer<? super Deposit> consumer) {
+        try (FileChannel channel = FileChannel.open(xmlFile.toPath(),
+                StandardOpenOption.READ)) {
+            DepositFileLayout layout = new DepositFileLayout(channel);
+            ParseOptions options = getOptions();
+            ParseOptions chunkOptions = new ParseOptions(options.policy,
+                    null, null, options.filter, options.fields);
+            List<ForkJoinTask<List<Deposit>>> tasks = new ArrayList<>();
+            long[] bounds = split(layout);
+
+            for (int i = 0; i < bounds.length - 1; i++) {
+                long start = bounds[i];
+                long end = bounds[i + 1];
+
+                tasks.add(pool.submit(() -> parseChunk(layout, start, end,
+                        chunkOptions)));
+            }
+
+            try {
+                for (ForkJoinTask<List<Deposit>> task : tasks) {
+                    for (Deposit d : task.join()) {
+                        d.setName(options.name(d.getName()));
+                        d.setDepositor(options.depositor(d.getDepositor()));
+                        consumer.accept(d);
+                    }
+                }
+            } catch (DepositParserException e) {
+                // the pool rethrows an exception of a worker wrapped in a
+                // new one of the same class
+                throw (e.getCause() instanceof DepositParserException)
+                        ? (DepositParserException) e.getCause() : e;
+            } finally {
+                tasks.forEach(task -> task.cancel(false));
+            }
+        } catch (IOException e) {
+            throw new DepositParserException(e);
+        }
+    }
+
+    /**
+     * Splits the file body into chunks of about the same size.
+     * @param layout the file layout
+     * @return the chunk boundaries (the first one is the body start and
+     * the last one is the body end)
+     * @throws IOException if the file could not be read
+     */
+    private long[] split(DepositFileLayout layout) throws IOException {
+        long start = layout.getBodyStart();
+        long size = layout.getBodyEnd() - start;
+        long chunks = pool.getParallelism() * CHUNKS_PER_THREAD;
+
+        chunks = Math.min(chunks, Math.max(1, size / MIN_CHUNK_SIZE));
+        chunks = Math.max(chunks, size / MAX_CHUNK_SIZE + 1);
+
+        long[] bounds = new long[(int) chunks + 1];
+        int n = 1;
+
+        bounds[0] = start;
+
+        for (int i = 1; i < chunks; i++) {
+            long bound = layout.findDepositStart(start + size * i / chunks);
+
+            if (bound > bounds[n - 1]) {
+                bounds[n++] = bound;
+            }
+        }
+
+        if (bounds[n - 1] < layout.getBodyEnd()) {
+            bounds[n++] = layout.getBodyEnd();
+        }
+
+        long[] result = new long[n];
+
+        System.arraycopy(bounds, 0, result, 0, n);
+        return result;
+    }
+
+    /**
+     * Parses a chunk of the file body.
+     * @param layout the file layout
+     * @param start the chunk start offset
+     * @param end the chunk end offset
+     * @param options the parse options
+     * @return the deposits of the chunk
+     * @throws DepositParserException if the chunk could not be parsed
+     */
+    private static List<Deposit> parseChunk(DepositFileLayout layout,
+                                            long start, long end,
+                                            ParseOptions options) {
+        List<Deposit> deposits = new ArrayList<>();
+
+        try (DepositIterator it = DepositStAXCursorParser.iterator(
+                layout.openFragment(start, end), null, options)) {
+            it.forEachRemaining(deposits::add);
+        } catch (DepositParserException e) {
+            throw layout.locate(e, start);
+        } catch (IOException e) {
+            throw new DepositParserException(e);
+        }
+
+        return deposits;
+    }
+}
@@ -0,0 +1,143 @@
+package depositparser;
+
+import deposit.Deposit;
+
+/**
+ * An exception thrown when a deposits XML file could not be parsed.
+ * It wraps the underlying parser or I/O exception.
+ */
+public class DepositParserException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    /** The line number of the error or -1 if it is unknown. */
+    private final int lineNumber;
+
+    /** The column number of the error or -1 if it is unknown. */
+    private final int columnNumber;
+
+    /** The detail message without the position of the error. */
+    private final String detail;
+
+    /**
+     * Instantiates a new deposit parser exception.
+     * @param message the detail message
+     */
+    public DepositParserException(String message) {
+        this(message, null, -1, -1);
+    }
+
+    /**
+     * Instantiates a new deposit parser exception.
+     * @param cause the underlying exception
+     */
+    public DepositParserException(Throwable cause) {
+        this((cause == null) ? null : cause.toString(), cause, -1, -1);
+    }
+
+    /**
+     * Instantiates a new deposit parser exception.
+     * @param message the detail message
+     * @param cause the underlying exception
+     */
+    public DepositParserException(String message, Throwable cause) {
+        this(message, cause, -1, -1);
+    }
+
+    /**
+     * Instantiates a new deposit parser exception for an error at the given
+     * position of the XML file.
+     * @param message the detail message
+     * @param cause the underlying exception
+     * @param lineNumber the line number or -1 if it is unknown
+     * @param columnNumber the column number or -1 if it is unknown
+     */
+    public DepositParserException(String message, Throwable cause,
+                                  int lineNumber, int columnNumber) {
+        this(message, message, cause, lineNumber, columnNumber);
+    }
+
+    /**
+     * Instantiates a new deposit parser exception.
+     * @param message the detail message
+     * @param detail the detail message without the position of the error
+     * @param cause the underlying exception
+     * @param lineNumber the line number or -1 if it is unknown
+     * @param columnNumber the column number or -1 if it is unknown
+     */
+    private DepositParserException(String message, String detail,
+                                   Throwable cause, int lineNumber,
+                                   int columnNumber) {
+        super(message, cause);
+        this.lineNumber = lineNumber;
+        this.columnNumber = columnNumber;
+        this.detail = detail;
+    }
+
+    /**
+     * Creates an exception for an error at the given position of the XML
+     * file. The position, if it is known, is prepended to the message.
+     * @param detail the detail message
+     * @param cause the underlying exception
+     * @param lineNumber the line number or -1 if it is unknown
+     * @param columnNumber the column number or -1 if it is unknown
+     * @return the exception
+     */
+    static DepositParserException at(String detail, Throwable cause,
+                                     int lineNumber, int columnNumber) {
+        return new DepositParserException((lineNumber < 0) ? detail
+                : "Line " + lineNumber + ", column " + columnNumber + ": "
+                + detail, detail, cause, lineNumber, columnNumber);
+    }
+
+    /**
+     * Creates an exception for a numeric element whose text is not a number.
+     * @param deposit the deposit
+     * @param element the local name of the element
+     * @param text the trimmed text
+     * @param cause the number format exception
+     * @param lineNumber the line number or -1 if it is unknown
+     * @param columnNumber the column number or -1 if it is unknown
+     * @return the exception
+     */
+    static DepositParserException invalidNumber(Deposit deposit,
+                                                String element, String text,
+                                                NumberFormatException cause,
+                                                int lineNumber,
+                                                int columnNumber) {
+        return at("Deposit " + deposit.getId() + ": invalid " + element
+                + " '" + text + "'", cause, lineNumber, columnNumber);
+    }
+
+    /**
+     * Creates a copy of the exception for another position of the error,
+     * e.g. to translate a position within a fragment of the XML file into
+     * a position within the file.
+     * @param lineNumber the line number or -1 if it is unknown
+     * @param columnNumber the column number or -1 if it is unknown
+     * @return the exception
+     */
+    DepositParserException relocate(int lineNumber, int columnNumber) {
+        DepositParserException e = at(detail, getCause(), lineNumber,
+                columnNumber);
+
+        e.setStackTrace(getStackTrace());
+        return e;
+    }
+
+    /**
+     * Gets the line number of the error.
+     * @return the line number or -1 if it is unknown
+     */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Gets the column number of the error.
+     * @return the column number or -1 if it is unknown
+     */
+    public int getColumnNumber() {
+        return columnNumber;
+    }
+}
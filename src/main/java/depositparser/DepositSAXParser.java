@@ -3,31 +3,38 @@ package depositparser;
 import java.io.File;
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.function.Consumer;
 
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
+import javax.xml.validation.Schema;
+import javax.xml.validation.ValidatorHandler;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.xml.sax.Attributes;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.Locator;
 import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
 import org.xml.sax.XMLReader;
 import org.xml.sax.helpers.DefaultHandler;
 
 import deposit.Deposit;
-import deposit.DepositsDB;
-import deposit.ISO3166CountryCode;
-import deposit.Type;
 
 /**
- * A simple deposits SAX parser.
+ * A simple deposits SAX parser. If a schema is set, the document is
+ * validated while it is parsed, in the same pass over the file.
  */
 public class DepositSAXParser extends AbstractDepositParser {
-    
+
     /** The logger. */
     private static final Logger LOGGER = LogManager.getLogger();
 
+    /** A schema to validate the document against or null. */
+    private Schema schema;
+
     /**
      * Instantiates a new deposit SAX parser.
      * @param xmlFile an XML file to be parsed
@@ -36,63 +43,156 @@ public class DepositSAXParser extends AbstractDepositParser {
         super(xmlFile);
     }
 
+    /**
+     * Instantiates a new deposit SAX parser of a document source.
+     * @param source a source of an XML document to be parsed
+     */
+    public DepositSAXParser(DepositSource source) {
+        super(source);
+    }
+
+    /**
+     * Gets the schema the document is validated against.
+     * @return the schema or {@code null} if the document is not validated
+     */
+    public Schema getSchema() {
+        return schema;
+    }
+
+    /**
+     * Sets the schema to validate the document against while parsing.
+     * Deposits are passed to the consumer as they are parsed, so the ones
+     * that precede a validation error have already been consumed when the
+     * error is thrown.
+     * @param schema a schema or {@code null} not to validate the document
+     */
+    public void setSchema(Schema schema) {
+        this.schema = schema;
+    }
+
     /* (non-Javadoc)
-     * @see depositparser.DepositParser#parse()
+     * @see depositparser.AbstractDepositParser#parse(java.util.function.Consumer)
      */
     @Override
-    public DepositsDB parse() {
-        SAXParserFactory spf = SAXParserFactory.newInstance();
-        spf.setNamespaceAware(true);
-        
+    public void parse(Consumer<? super Deposit> consumer) {
         try {
-            SAXParser sp = spf.newSAXParser();
+            SAXParser sp = XMLParsers.acquireSAXParser();
             XMLReader xmlReader = sp.getXMLReader();
-            DepositContentHandler dch = new DepositContentHandler();
-            
-            xmlReader.setContentHandler(dch);
-            xmlReader.parse(xmlFile.getAbsolutePath());
+            DepositContentHandler dch = new DepositContentHandler(consumer,
+                    getOptions());
+
+            if (schema == null) {
+                xmlReader.setContentHandler(dch);
+            } else {
+                // the validator passes events through to the deposit handler
+                ValidatorHandler vh = schema.newValidatorHandler();
 
-            return dch.getDepositsDB();
+                vh.setContentHandler(dch);
+                vh.setErrorHandler(new ValidationErrorHandler());
+                xmlReader.setContentHandler(vh);
+            }
+
+            try (DepositSource.Input input = getSource().open()) {
+                xmlReader.parse(input.toInputSource());
+            } finally {
+                // the reused parser must not keep the consumer reachable
+                xmlReader.setContentHandler(null);
+                XMLParsers.release(sp);
+            }
+        } catch (SAXParseException e) {
+            throw DepositParserException.at(e.getMessage(), e,
+                    e.getLineNumber(), e.getColumnNumber());
         } catch (ParserConfigurationException | SAXException | IOException e) {
-            LOGGER.error(e);
+            throw new DepositParserException(e);
+        }
+    }
+
+    /**
+     * An error handler that stops validation at the first error.
+     */
+    private static class ValidationErrorHandler implements ErrorHandler {
+
+        /* (non-Javadoc)
+         * @see org.xml.sax.ErrorHandler#warning(org.xml.sax.SAXParseException)
+         */
+        @Override
+        public void warning(SAXParseException e) {
+            LOGGER.warn("Line " + e.getLineNumber() + ", column "
+                    + e.getColumnNumber() + ": " + e.getMessage());
+        }
+
+        /* (non-Javadoc)
+         * @see org.xml.sax.ErrorHandler#error(org.xml.sax.SAXParseException)
+         */
+        @Override
+        public void error(SAXParseException e) throws SAXParseException {
+            throw e;
         }
 
-        return null;
+        /* (non-Javadoc)
+         * @see org.xml.sax.ErrorHandler#fatalError(org.xml.sax.SAXParseException)
+         */
+        @Override
+        public void fatalError(SAXParseException e) throws SAXParseException {
+            throw e;
+        }
     }
 }
 
 /**
- * A deposit content handler for deposit SAX parser.
+ * A deposit content handler for deposit SAX parser. Text of a field element
+ * is accumulated in a reusable buffer, because SAX may report it in several
+ * {@code characters} calls, and is parsed once the element is closed.
  */
 class DepositContentHandler extends DefaultHandler {
-    
-    /** Types of content (used for proper parsing of characters content) */
-    private enum ContentType {
-        NONE, DEPOSITOR, ACCOUNTID, AMOUNT, INTEREST, TIME
-    }
+
+    /** The bank namespace. */
+    private static final String BANK_NS = "www.example.org/xmlns/bank";
 
     /** A deposit. */
     private Deposit deposit;
     
-    /** A content type flag. */
-    private ContentType flag = ContentType.NONE;
-    
-    /** A {@code DepositsDB} object. */
-    private DepositsDB depositsDB;
+    /** The field of the current element or null. */
+    private DepositField field;
+
+    /** A buffer for text of the current field element. */
+    private char[] text = new char[64];
+
+    /** The length of text in the buffer. */
+    private int textLength;
+
+    /**
+     * Whether the current deposit is kept (by the unknown value policy and
+     * the filter).
+     */
+    private boolean keep;
+
+    /** A consumer of parsed deposits. */
+    private Consumer<? super Deposit> consumer;
+
+    /** The parse options. */
+    private ParseOptions options;
+
+    /** The locator of document events or null. */
+    private Locator locator;
 
     /**
      * Instantiates a new deposit content handler.
+     * @param consumer a consumer of parsed deposits
+     * @param options the parse options
      */
-    public DepositContentHandler() {
-        this.depositsDB = new DepositsDB();
+    DepositContentHandler(Consumer<? super Deposit> consumer,
+                          ParseOptions options) {
+        this.consumer = consumer;
+        this.options = options;
     }
 
-    /**
-     * Gets the {@code DepositsDB} object.
-     * @return the {@code DepositsDB} object.
+    /* (non-Javadoc)
+     * @see org.xml.sax.helpers.DefaultHandler#setDocumentLocator(org.xml.sax.Locator)
      */
-    public DepositsDB getDepositsDB() {
-        return depositsDB;
+    @Override
+    public void setDocumentLocator(Locator locator) {
+        this.locator = locator;
     }
 
     /* (non-Javadoc)
@@ -105,30 +205,48 @@ class DepositContentHandler extends DefaultHandler {
                              String qName,
                              Attributes attributes)
             throws SAXException {
-        switch (qName) {
-        case "deposit":
+        textLength = 0;
+
+        if ((deposit == null) && !"deposit".equals(localName)) {
+            return;
+        }
+
+        if ("deposit".equals(localName) && uri.isEmpty()) {
+            String type = options.reads(DepositField.TYPE)
+                    ? attributes.getValue("type") : null;
+            String country = options.reads(DepositField.COUNTRY)
+                    ? attributes.getValue("country") : null;
+
             deposit = new Deposit();
-            deposit.setId(attributes.getValue("id"));
-            deposit.setName(attributes.getValue("bank:name"));
-            deposit.setType(Type.fromValue(attributes.getValue("type")));
-            deposit.setCountry(ISO3166CountryCode.fromValue(
-                    attributes.getValue("country")));
-            break;
-        case "depositor":
-            flag = ContentType.DEPOSITOR;
-            break;
-        case "account-id":
-            flag = ContentType.ACCOUNTID;
-            break;
-        case "fin:amount-on-deposit":
-            flag = ContentType.AMOUNT;
-            break;
-        case "fin:interest":
-            flag = ContentType.INTEREST;
-            break;
-        case "time-constraint":
-            flag = ContentType.TIME;
-            break;
+
+            if (options.reads(DepositField.ID)) {
+                deposit.setId(attributes.getValue("id"));
+            }
+
+            if (options.reads(DepositField.NAME)) {
+                deposit.setName(options.name(
+                        attributes.getValue(BANK_NS, "name")));
+            }
+
+            deposit.setType(DepositCodes.type(type));
+            deposit.setCountry(DepositCodes.country(country));
+            keep = options.policy.accept(deposit.getId(), "type", type,
+                    deposit.getType());
+            keep &= options.policy.accept(deposit.getId(), "country",
+                    country, deposit.getCountry());
+
+            if (!keep || !options.filter.testAttributes(deposit)) {
+                deposit = null;
+                keep = false;
+            }
+
+            return;
+        }
+
+        DepositField f = DepositField.ofElement(uri, localName);
+
+        if ((f != null) && options.reads(f)) {
+            field = f;
         }
     }
 
@@ -138,11 +256,17 @@ class DepositContentHandler extends DefaultHandler {
     @Override
     public void endElement(String uri, String localName, String qName)
             throws SAXException {
-        if ("deposit".equals(qName)) {
-            depositsDB.getDeposits().add(deposit);
+        if (field != null) {
+            setField();
+        } else if ("deposit".equals(localName) && uri.isEmpty()) {
+            if (keep && options.filter.testFields(deposit)) {
+                consumer.accept(deposit);
+            }
+
+            deposit = null;
         }
         
-        flag = ContentType.NONE;
+        field = null;
     }
 
     /* (non-Javadoc)
@@ -151,25 +275,55 @@ class DepositContentHandler extends DefaultHandler {
     @Override
     public void characters(char[] ch, int start, int length)
             throws SAXException {
-        String str = new String(ch, start, length).trim();
-
-        switch (flag) {
-        case DEPOSITOR:
-            deposit.setDepositor(str);
-            break;
-        case ACCOUNTID:
-            deposit.setAccountId(Integer.parseInt(str));
-            break;
-        case AMOUNT:
-            deposit.setAmountOnDeposit(new BigDecimal(str));
-            break;
-        case INTEREST:
-            deposit.setInterest(new BigDecimal(str));
-            break;
-        case TIME:
-            deposit.setTimeConstraint(Long.parseLong(str));
-            break;
-        default:
+        if (field == null) {
+            return;
+        }
+
+        if (textLength + length > text.length) {
+            text = Arrays.copyOf(text,
+                    Math.max(text.length * 2, textLength + length));
+        }
+
+        System.arraycopy(ch, start, text, textLength, length);
+        textLength += length;
+    }
+
+    /**
+     * Sets a deposit field from the accumulated text.
+     * @throws DepositParserException if the text of a numeric field is not
+     * a number
+     */
+    private void setField() {
+        int start = CharNumbers.trimStart(text, 0, textLength);
+        int end = CharNumbers.trimEnd(text, start, textLength);
+
+        try {
+            switch (field) {
+            case DEPOSITOR:
+                deposit.setDepositor(options.depositor(text, start, end));
+                break;
+            case ACCOUNT_ID:
+                deposit.setAccountId(CharNumbers.parseInt(text, start, end));
+                break;
+            case AMOUNT_ON_DEPOSIT:
+                deposit.setAmountOnDeposit(
+                        new BigDecimal(text, start, end - start));
+                break;
+            case INTEREST:
+                deposit.setInterest(new BigDecimal(text, start, end - start));
+                break;
+            case TIME_CONSTRAINT:
+                deposit.setTimeConstraint(
+                        CharNumbers.parseLong(text, start, end));
+                break;
+            default:
+            }
+        } catch (NumberFormatException e) {
+            throw DepositParserException.invalidNumber(deposit,
+                    field.localName(),
+                    new String(text, start, end - start), e,
+                    (locator == null) ? -1 : locator.getLineNumber(),
+                    (locator == null) ? -1 : locator.getColumnNumber());
         }
     }
 }
@@ -0,0 +1,993 @@
+package depositparser;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+import deposit.Deposit;
+
+/**
+ * A deposits parser specialized for the shape of {@code deposits.xsd} that
+ * scans UTF-8 bytes directly instead of going through a generic XML parser.
+ * Element and attribute names are matched by byte comparison, and numbers
+ * are parsed from the bytes in place.
+ * <p>
+ * The scanner handles deposits in the plain form: the four attributes and
+ * the five field elements with text, without comments, CDATA sections,
+ * references or other markup inside. A deposit with anything else is parsed
+ * by the StAX cursor parser as a fragment with the prolog and the root start
+ * tag of the document. A document that is not in UTF-8, has a document type
+ * declaration or binds the {@code bank:} and {@code fin:} prefixes to other
+ * namespaces is parsed by the StAX cursor parser as a whole. So the result
+ * for a well-formed document is the same as with the StAX cursor parser.
+ */
+public class DepositScannerParser extends AbstractDepositParser {
+
+    /** The initial size of the scan window. */
+    private static final int WINDOW = 1 << 20;
+
+    /**
+     * The scan window of each thread, kept between documents (allocating
+     * it costs more than scanning a small file).
+     */
+    private static final ThreadLocal<byte[]> WINDOWS = new ThreadLocal<>();
+
+    /** A result of a scan step: more bytes are needed. */
+    private static final int MORE = -1;
+
+    /** A result of a scan step: the root end tag has been reached. */
+    private static final int END = -2;
+
+    /** A result of a scan step: the rest must be parsed by StAX. */
+    private static final int REST = -3;
+
+    /** A result of a deposit scan: the deposit must be parsed by StAX. */
+    private static final int UNEXPECTED = -4;
+
+    /** The binding of the {@code bank:} prefix. */
+    private static final Pattern BANK_PREFIX = Pattern.compile(
+            "\\sxmlns:bank\\s*=\\s*([\"'])www\\.example\\.org/xmlns/bank\\1");
+
+    /** The binding of the {@code fin:} prefix. */
+    private static final Pattern FIN_PREFIX = Pattern.compile(
+            "\\sxmlns:fin\\s*=\\s*([\"'])www\\.example\\.org/xmlns/financial"
+            + "\\1");
+
+    /** A default namespace declaration. */
+    private static final Pattern DEFAULT_NAMESPACE =
+            Pattern.compile("\\sxmlns\\s*=");
+
+    /** The end of a comment. */
+    private static final byte[] COMMENT_END = bytes("-->");
+
+    /** The deposit element name. */
+    private static final byte[] DEPOSIT = bytes("deposit");
+
+    /** The id attribute name. */
+    private static final byte[] ID = bytes("id");
+
+    /** The type attribute name. */
+    private static final byte[] TYPE = bytes("type");
+
+    /** The country attribute name. */
+    private static final byte[] COUNTRY = bytes("country");
+
+    /** The bank name attribute name. */
+    private static final byte[] BANK_NAME = bytes("bank:name");
+
+    /** The depositor element name. */
+    private static final byte[] DEPOSITOR = bytes("depositor");
+
+    /** The account id element name. */
+    private static final byte[] ACCOUNT_ID = bytes("account-id");
+
+    /** The amount on deposit element name. */
+    private static final byte[] AMOUNT = bytes("fin:amount-on-deposit");
+
+    /** The interest element name. */
+    private static final byte[] INTEREST = bytes("fin:interest");
+
+    /** The time constraint element name. */
+    private static final byte[] TIME = bytes("time-constraint");
+
+    /**
+     * Instantiates a new deposit scanner parser.
+     * @param xmlFile an XML file to be parsed
+     */
+    public DepositScannerParser(File xmlFile) {
+        super(xmlFile);
+    }
+
+    /**
+     * Instantiates a new deposit scanner parser of a document source.
+     * @param source a source of an XML document to be parsed
+     */
+    public DepositScannerParser(DepositSource source) {
+        super(source);
+    }
+
+    /* (non-Javadoc)
+     * @see depositparser.AbstractDepositParser#parse(java.util.function.Consumer)
+     */
+    @Override
+    public void parse(Consumer<? super Deposit> consumer) {
+        byte[] window = WINDOWS.get();
+
+        // a document scanned from within the consumer gets its own window
+        WINDOWS.remove();
+
+        if (window == null) {
+            window = new byte[WINDOW];
+        }
+
+        DepositSource source = getSource();
+
+        try (DepositSource.Input input = source.open()) {
+            new Scanner(source, input, consumer, getOptions(), window).scan();
+        } catch (IOException e) {
+            throw new DepositParserException(e);
+        } finally {
+            // a grown window is dropped with the scanner
+            WINDOWS.set(window);
+        }
+    }
+
+    /**
+     * Gets the ASCII bytes of a string.
+     * @param s the string
+     * @return the bytes
+     */
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * A scan of a document through a window of its bytes.
+     */
+    private static final class Scanner {
+
+        /** The source of the document. */
+        private final DepositSource source;
+
+        /** The document. */
+        private final DepositSource.Input input;
+
+        /** The consumer of deposits. */
+        private final Consumer<? super Deposit> consumer;
+
+        /** The parse options. */
+        private final ParseOptions options;
+
+        /** The window of the document bytes. */
+        private byte[] buf;
+
+        /** The number of bytes in the window. */
+        private int n;
+
+        /** Whether the end of the document has been read. */
+        private boolean eof;
+
+        /** The number of document bytes moved out of the window. */
+        private long consumed;
+
+        /** The prolog and the root start tag. */
+        private byte[] header;
+
+        /** The root end tag. */
+        private byte[] footer;
+
+        /** The current deposit. */
+        private Deposit deposit;
+
+        /** The attributes of the current deposit (a bit per attribute). */
+        private int attributes;
+
+        /** The characters of the current string. */
+        private char[] chars = new char[64];
+
+        /** The decoder of non-ASCII text. */
+        private CharsetDecoder decoder;
+
+        /**
+         * Instantiates a new scanner.
+         * @param source the source of the document
+         * @param input the document
+         * @param consumer the consumer of deposits
+         * @param options the parse options
+         * @param window the initial scan window
+         */
+        Scanner(DepositSource source, DepositSource.Input input,
+                Consumer<? super Deposit> consumer, ParseOptions options,
+                byte[] window) {
+            this.source = source;
+            this.input = input;
+            this.consumer = consumer;
+            this.options = options;
+            this.buf = window;
+        }
+
+        /**
+         * Scans the document.
+         * @throws IOException if the document could not be read
+         */
+        void scan() throws IOException {
+            fill();
+
+            int i = readHeader();
+
+            while (i < 0) {
+                if (eof) {
+                    parseRest(0, false);
+                    return;
+                }
+
+                refill(0);
+                i = readHeader();
+            }
+
+            if (!isScannable()) {
+                parseRest(0, false);
+                return;
+            }
+
+            while (true) {
+                int next = scanNext(i);
+
+                if (next == END) {
+                    return;
+                }
+
+                if ((next == REST) || ((next == MORE) && eof)) {
+                    parseRest(i, true);
+                    return;
+                }
+
+                i = (next == MORE) ? refill(i) : next;
+            }
+        }
+
+        /**
+         * Reads the prolog and the root start tag.
+         * @return the offset after the root start tag or -1 if more bytes
+         * are needed
+         */
+        private int readHeader() {
+            int start = DepositFileLayout.rootTagStart(buf, n);
+
+            if (start < 0) {
+                return -1;
+            }
+
+            int nameEnd = start + 1;
+
+            while ((nameEnd < n)
+                    && !DepositFileLayout.isNameEnd(buf[nameEnd])) {
+                nameEnd++;
+            }
+
+            int end = DepositFileLayout.startTagEnd(buf, n, nameEnd);
+
+            if (end < 0) {
+                return -1;
+            }
+
+            header = Arrays.copyOf(buf, end);
+            footer = ("</" + new String(buf, start + 1, nameEnd - start - 1,
+                    StandardCharsets.ISO_8859_1) + ">")
+                    .getBytes(StandardCharsets.ISO_8859_1);
+            return end;
+        }
+
+        /**
+         * Checks whether the document can be scanned: it is in UTF-8, has no
+         * document type declaration, and the prefixes are bound as usual.
+         * @return true if the document can be scanned
+         */
+        private boolean isScannable() {
+            String encoding = input.encoding;
+
+            if (!"UTF-8".equalsIgnoreCase(encoding)
+                    && !"UTF8".equalsIgnoreCase(encoding)
+                    && !"US-ASCII".equalsIgnoreCase(encoding)) {
+                return false;
+            }
+
+            String prolog = new String(header, StandardCharsets.ISO_8859_1);
+
+            return !prolog.contains("<!DOCTYPE")
+                    && BANK_PREFIX.matcher(prolog).find()
+                    && FIN_PREFIX.matcher(prolog).find()
+                    && !DEFAULT_NAMESPACE.matcher(prolog).find();
+        }
+
+        /**
+         * Scans the next item of the root element: whitespace, a comment or
+         * a deposit.
+         * @param i the offset of the item
+         * @return the offset after the item or one of {@link #MORE},
+         * {@link #END} and {@link #REST}
+         */
+        private int scanNext(int i) {
+            byte[] b = buf;
+
+            i = skipWhitespace(b, i, n);
+
+            if (i + DEPOSIT.length + 2 >= n) {
+                return MORE;
+            }
+
+            if (b[i] != '<') {
+                return REST;
+            }
+
+            if (b[i + 1] == '/') {
+                return END;
+            }
+
+            if ((b[i + 1] == '!') && (b[i + 2] == '-') && (b[i + 3] == '-')) {
+                int end = indexOf(b, i + 4, n, COMMENT_END);
+
+                return (end < 0) ? MORE : end + COMMENT_END.length;
+            }
+
+            if (!matches(b, i + 1, DEPOSIT) || !DepositFileLayout.isNameEnd(
+                    b[i + 1 + DEPOSIT.length])) {
+                return REST;
+            }
+
+            int end = scanDeposit(i);
+
+            if (end == UNEXPECTED) {
+                end = depositEnd(i + 1 + DEPOSIT.length);
+
+                if (end < 0) {
+                    return MORE;
+                }
+
+                parseFragment(i, end);
+            } else if ((end != MORE) && (deposit != null)
+                    && options.filter.testFields(deposit)) {
+                consumer.accept(deposit);
+            }
+
+            return end;
+        }
+
+        /**
+         * Finds the end of the deposit end tag.
+         * @param from the offset to start the search from
+         * @return the offset after the end tag or -1 if more bytes are
+         * needed
+         */
+        private int depositEnd(int from) {
+            byte[] b = buf;
+
+            for (int j = from; j + DEPOSIT.length + 2 < n; j++) {
+                if ((b[j] != '<') || (b[j + 1] != '/')
+                        || !matches(b, j + 2, DEPOSIT)) {
+                    continue;
+                }
+
+                int k = skipWhitespace(b, j + 2 + DEPOSIT.length, n);
+
+                if (k >= n) {
+                    return -1;
+                }
+
+                if (b[k] == '>') {
+                    return k + 1;
+                }
+            }
+
+            return -1;
+        }
+
+        /**
+         * Scans a deposit element into {@link #deposit}, which is set to
+         * null if the deposit does not match the filter.
+         * @param start the offset of the start tag
+         * @return the offset after the end tag, {@link #MORE} if the element
+         * does not end within the window or {@link #UNEXPECTED} if it has to
+         * be parsed by StAX
+         */
+        private int scanDeposit(int start) {
+            byte[] b = buf;
+            int end = n;
+            int p = start + 1 + DEPOSIT.length;
+
+            deposit = new Deposit();
+            attributes = 0;
+
+            while (true) {
+                int q = skipWhitespace(b, p, end);
+
+                if (q >= end) {
+                    return MORE;
+                }
+
+                if (b[q] == '>') {
+                    p = q + 1;
+                    break;
+                }
+
+                if (q == p) {
+                    // no whitespace before an attribute or an empty element
+                    return UNEXPECTED;
+                }
+
+                int nameEnd = q;
+
+                while ((nameEnd < end) && (b[nameEnd] > ' ')
+                        && (b[nameEnd] != '=') && (b[nameEnd] != '>')) {
+                    nameEnd++;
+                }
+
+                int e = skipWhitespace(b, nameEnd, end);
+
+                if (e >= end) {
+                    return MORE;
+                }
+
+                if (b[e] != '=') {
+                    return UNEXPECTED;
+                }
+
+                e = skipWhitespace(b, e + 1, end);
+
+                if (e >= end) {
+                    return MORE;
+                }
+
+                if ((b[e] != '"') && (b[e] != '\'')) {
+                    return UNEXPECTED;
+                }
+
+                int valueEnd = e + 1;
+
+                while ((valueEnd < end) && (b[valueEnd] != b[e])) {
+                    byte c = b[valueEnd];
+
+                    // references and normalized whitespace
+                    if ((c == '&') || (c == '<') || ((c >= 0) && (c < ' '))) {
+                        return UNEXPECTED;
+                    }
+
+                    valueEnd++;
+                }
+
+                if (valueEnd >= end) {
+                    return MORE;
+                }
+
+                if (!setAttribute(q, nameEnd, e + 1, valueEnd)) {
+                    return UNEXPECTED;
+                }
+
+                p = valueEnd + 1;
+            }
+
+            if (!options.filter.testAttributes(deposit)) {
+                deposit = null;
+                return skipDeposit(p);
+            }
+
+            while (true) {
+                p = skipWhitespace(b, p, end);
+
+                if (p + 1 >= end) {
+                    return MORE;
+                }
+
+                if (b[p] != '<') {
+                    return UNEXPECTED;
+                }
+
+                if (b[p + 1] == '/') {
+                    int close = skipWhitespace(b, p + 2 + DEPOSIT.length, end);
+
+                    if (close >= end) {
+                        return MORE;
+                    }
+
+                    return (matches(b, p + 2, DEPOSIT) && (b[close] == '>'))
+                            ? close + 1 : UNEXPECTED;
+                }
+
+                int nameEnd = p + 1;
+
+                while ((nameEnd < end) && (b[nameEnd] > ' ')
+                        && (b[nameEnd] != '>') && (b[nameEnd] != '/')) {
+                    nameEnd++;
+                }
+
+                int textStart = skipWhitespace(b, nameEnd, end);
+
+                if (textStart >= end) {
+                    return MORE;
+                }
+
+                if (b[textStart] != '>') {
+                    return UNEXPECTED;
+                }
+
+                textStart++;
+
+                int textEnd = textStart;
+
+                while ((textEnd < end) && (b[textEnd] != '<')) {
+                    if (b[textEnd] == '&') {
+                        return UNEXPECTED;
+                    }
+
+                    textEnd++;
+                }
+
+                int nameLength = nameEnd - p - 1;
+                int close = skipWhitespace(b, textEnd + 2 + nameLength, end);
+
+                if (close >= end) {
+                    return MORE;
+                }
+
+                if ((b[textEnd + 1] != '/')
+                        || !regionMatches(b, textEnd + 2, p + 1, nameLength)
+                        || (b[close] != '>')
+                        || !setField(p + 1, nameEnd, textStart, textEnd)) {
+                    return UNEXPECTED;
+                }
+
+                p = close + 1;
+            }
+        }
+
+        /**
+         * Skips the content of a deposit element that does not match the
+         * filter.
+         * @param from the offset after the start tag
+         * @return the offset after the end tag, {@link #MORE} if the element
+         * does not end within the window or {@link #UNEXPECTED} if it has a
+         * comment, a CDATA section or a processing instruction
+         */
+        private int skipDeposit(int from) {
+            byte[] b = buf;
+
+            for (int j = from; j + 1 < n; j++) {
+                if (b[j] != '<') {
+                    continue;
+                }
+
+                if ((b[j + 1] == '!') || (b[j + 1] == '?')) {
+                    return UNEXPECTED;
+                }
+
+                if (b[j + 1] == '/') {
+                    int close = skipWhitespace(b, j + 2 + DEPOSIT.length, n);
+
+                    if (close >= n) {
+                        return MORE;
+                    }
+
+                    if (matches(b, j + 2, DEPOSIT) && (b[close] == '>')) {
+                        return close + 1;
+                    }
+                }
+            }
+
+            return MORE;
+        }
+
+        /**
+         * Sets an attribute of the current deposit.
+         * @param nameStart the offset of the attribute name
+         * @param nameEnd the offset after the attribute name
+         * @param start the offset of the value
+         * @param end the offset after the value
+         * @return false if the attribute is unknown, repeated or invalid
+         */
+        private boolean setAttribute(int nameStart, int nameEnd, int start,
+                                     int end) {
+            int bit;
+            byte[] name;
+            DepositField field;
+
+            // the attribute names have different lengths
+            switch (nameEnd - nameStart) {
+            case 2:
+                bit = 1;
+                name = ID;
+                field = DepositField.ID;
+                break;
+            case 4:
+                bit = 2;
+                name = TYPE;
+                field = DepositField.TYPE;
+                break;
+            case 7:
+                bit = 4;
+                name = COUNTRY;
+                field = DepositField.COUNTRY;
+                break;
+            case 9:
+                bit = 8;
+                name = BANK_NAME;
+                field = DepositField.NAME;
+                break;
+            default:
+                return false;
+            }
+
+            if (!matches(buf, nameStart, name) || ((attributes & bit) != 0)) {
+                return false;
+            }
+
+            attributes |= bit;
+
+            if (!options.reads(field)) {
+                return true;
+            }
+
+            switch (bit) {
+            case 1:
+                deposit.setId(string(start, end, null));
+                return deposit.getId() != null;
+            case 2:
+                deposit.setType(DepositCodes.type(buf, start, end));
+                return deposit.getType() != null;
+            case 4:
+                deposit.setCountry(
+                        DepositCodes.country(buf, start, end));
+                return deposit.getCountry() != null;
+            default:
+                deposit.setName(string(start, end, options.names));
+                return deposit.getName() != null;
+            }
+        }
+
+        /**
+         * Sets a field of the current deposit.
+         * @param nameStart the offset of the element name
+         * @param nameEnd the offset after the element name
+         * @param start the offset of the text
+         * @param end the offset after the text
+         * @return false if the element is unknown or its text is invalid
+         */
+        private boolean setField(int nameStart, int nameEnd, int start,
+                                 int end) {
+            byte[] b = buf;
+            byte[] name;
+            DepositField field;
+
+            // the element names have different lengths
+            switch (nameEnd - nameStart) {
+            case 9:
+                name = DEPOSITOR;
+                field = DepositField.DEPOSITOR;
+                break;
+            case 10:
+                name = ACCOUNT_ID;
+                field = DepositField.ACCOUNT_ID;
+                break;
+            case 21:
+                name = AMOUNT;
+                field = DepositField.AMOUNT_ON_DEPOSIT;
+                break;
+            case 12:
+                name = INTEREST;
+                field = DepositField.INTEREST;
+                break;
+            case 15:
+                name = TIME;
+                field = DepositField.TIME_CONSTRAINT;
+                break;
+            default:
+                return false;
+            }
+
+            if (!matches(b, nameStart, name)) {
+                return false;
+            }
+
+            if (!options.reads(field)) {
+                return true;
+            }
+
+            start = CharNumbers.trimStart(b, start, end);
+            end = CharNumbers.trimEnd(b, start, end);
+
+            try {
+                if (name == DEPOSITOR) {
+                    deposit.setDepositor(
+                            string(start, end, options.depositors));
+                    return deposit.getDepositor() != null;
+                } else if (name == ACCOUNT_ID) {
+                    deposit.setAccountId(CharNumbers.parseInt(b, start, end));
+                } else if (name == AMOUNT) {
+                    deposit.setAmountOnDeposit(
+                            CharNumbers.parseDecimal(b, start, end));
+                } else if (name == INTEREST) {
+                    deposit.setInterest(
+                            CharNumbers.parseDecimal(b, start, end));
+                } else {
+                    deposit.setTimeConstraint(
+                            CharNumbers.parseLong(b, start, end));
+                }
+            } catch (NumberFormatException e) {
+                // StAX reports the error
+                return false;
+            }
+
+            return true;
+        }
+
+        /**
+         * Decodes a UTF-8 string.
+         * @param start the offset of the string
+         * @param end the offset after the string
+         * @param pool the pool of the string or null
+         * @return the string or null if it is not valid UTF-8 or has a
+         * carriage return (which XML normalizes)
+         */
+        private String string(int start, int end, StringPool pool) {
+            byte[] b = buf;
+            int length = end - start;
+
+            if (chars.length < length) {
+                chars = new char[Math.max(length, 2 * chars.length)];
+            }
+
+            // ASCII is copied directly, without looking up a decoder
+            for (int i = 0; i < length; i++) {
+                byte c = b[start + i];
+
+                if (c < 0) {
+                    String decoded = decode(start, end);
+
+                    return ((pool == null) || (decoded == null)) ? decoded
+                            : pool.intern(decoded);
+                }
+
+                if (c == '\r') {
+                    return null;
+                }
+
+                chars[i] = (char) c;
+            }
+
+            return (pool == null) ? new String(chars, 0, length)
+                    : pool.intern(chars, 0, length);
+        }
+
+        /**
+         * Decodes a UTF-8 string with non-ASCII characters.
+         * @param start the offset of the string
+         * @param end the offset after the string
+         * @return the string or null if it is not valid UTF-8 or has a
+         * carriage return
+         */
+        private String decode(int start, int end) {
+            if (decoder == null) {
+                decoder = StandardCharsets.UTF_8.newDecoder();
+            }
+
+            try {
+                String s = decoder.decode(
+                        ByteBuffer.wrap(buf, start, end - start)).toString();
+
+                return (s.indexOf('\r') < 0) ? s : null;
+            } catch (CharacterCodingException e) {
+                return null;
+            }
+        }
+
+        /**
+         * Parses a deposit element with StAX as a standalone document.
+         * @param start the offset of the start tag
+         * @param end the offset after the end tag
+         */
+        private void parseFragment(int start, int end) {
+            InputStream fragment = new SequenceInputStream(
+                    Collections.enumeration(Arrays.asList(
+                            new ByteArrayInputStream(header),
+                            new ByteArrayInputStream(buf, start, end - start),
+                            new ByteArrayInputStream(footer))));
+
+            try (DepositIterator it = DepositStAXCursorParser.iterator(
+                    fragment, input.encoding, options)) {
+                it.forEachRemaining(consumer);
+            } catch (DepositParserException e) {
+                throw locate(e, start);
+            }
+        }
+
+        /**
+         * Parses the rest of the document with StAX.
+         * @param start the offset of the rest in the window
+         * @param withHeader whether the header has to be prepended (it is
+         * not in the window any more)
+         */
+        private void parseRest(int start, boolean withHeader) {
+            InputStream rest = new SequenceInputStream(
+                    Collections.enumeration(Arrays.asList(
+                            new ByteArrayInputStream(withHeader ? header
+                                    : new byte[0]),
+                            new ByteArrayInputStream(buf, start, n - start),
+                            input.stream)));
+
+            try (DepositIterator it = DepositStAXCursorParser.iterator(rest,
+                    input.encoding, options)) {
+                it.forEachRemaining(consumer);
+            } catch (DepositParserException e) {
+                // the rest is only the document itself if it has its header
+                throw withHeader ? locate(e, start) : e;
+            }
+        }
+
+        /**
+         * Translates the position of an error in a document made of the
+         * header and the bytes from a window offset on into the position in
+         * the document. The lines before the offset are counted in the
+         * document opened again, so the position is unknown if the source
+         * is a stream.
+         * @param e the exception of the error
+         * @param start the window offset
+         * @return the exception with the position in the document
+         */
+        private DepositParserException locate(DepositParserException e,
+                                              int start) {
+            if (e.getLineNumber() < 0) {
+                return e;
+            }
+
+            if (!source.isRepeatable()) {
+                return e.relocate(-1, -1);
+            }
+
+            long offset = consumed + start;
+            long lines = 0;
+            long lineStart = 0;
+
+            try (DepositSource.Input document = source.open()) {
+                byte[] b = new byte[WINDOW];
+
+                for (long pos = 0; pos < offset;) {
+                    int k = document.stream.read(b, 0,
+                            (int) Math.min(b.length, offset - pos));
+
+                    if (k < 0) {
+                        throw new EOFException("Document truncated at "
+                                + pos);
+                    }
+
+                    for (int i = 0; i < k; i++) {
+                        if (b[i] == '\n') {
+                            lines++;
+                            lineStart = pos + i + 1;
+                        }
+                    }
+
+                    pos += k;
+                }
+            } catch (IOException ie) {
+                DepositParserException result = e.relocate(-1, -1);
+
+                result.addSuppressed(ie);
+                return result;
+            }
+
+            return DepositFileLayout.locate(e, header, offset, lines,
+                    lineStart);
+        }
+
+        /**
+         * Moves the unscanned bytes to the start of the window (growing it
+         * if they fill it) and reads more bytes.
+         * @param start the offset of the unscanned bytes
+         * @return the new offset of the unscanned bytes
+         * @throws IOException if the document could not be read
+         */
+        private int refill(int start) throws IOException {
+            if (start > 0) {
+                System.arraycopy(buf, start, buf, 0, n - start);
+                n -= start;
+                consumed += start;
+            } else if (n == buf.length) {
+                buf = Arrays.copyOf(buf, 2 * buf.length);
+            }
+
+            fill();
+            return 0;
+        }
+
+        /**
+         * Reads bytes until the window is full or the document ends.
+         * @throws IOException if the document could not be read
+         */
+        private void fill() throws IOException {
+            while (n < buf.length) {
+                int k = input.stream.read(buf, n, buf.length - n);
+
+                if (k < 0) {
+                    eof = true;
+                    return;
+                }
+
+                n += k;
+            }
+        }
+    }
+
+    /**
+     * Skips XML whitespace.
+     * @param b the bytes
+     * @param i the offset
+     * @param end the end of the bytes
+     * @return the offset of the first non-whitespace byte or {@code end}
+     */
+    private static int skipWhitespace(byte[] b, int i, int end) {
+        while ((i < end) && DepositFileLayout.isWhitespace(b[i])) {
+            i++;
+        }
+
+        return i;
+    }
+
+
+    /**
+     * Checks whether the bytes at the given offset match the pattern.
+     * @param b the bytes
+     * @param off the offset
+     * @param pattern the pattern
+     * @return true if the bytes match
+     */
+    private static boolean matches(byte[] b, int off, byte[] pattern) {
+        return DepositFileLayout.matches(b, off, pattern);
+    }
+
+    /**
+     * Checks whether two ranges of bytes are equal.
+     * @param b the bytes
+     * @param off the offset of the first range
+     * @param other the offset of the second range
+     * @param length the length of the ranges
+     * @return true if the ranges are equal
+     */
+    private static boolean regionMatches(byte[] b, int off, int other,
+                                         int length) {
+        for (int i = 0; i < length; i++) {
+            if (b[off + i] != b[other + i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Finds a pattern.
+     * @param b the bytes
+     * @param from the offset to start from
+     * @param end the end of the bytes
+     * @param pattern the pattern
+     * @return the offset of the pattern or -1 if not found
+     */
+    private static int indexOf(byte[] b, int from, int end, byte[] pattern) {
+        for (int i = from; i + pattern.length <= end; i++) {
+            if (matches(b, i, pattern)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+}
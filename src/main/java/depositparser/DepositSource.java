@@ -0,0 +1,419 @@
+package depositparser;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.xml.sax.InputSource;
+
+/**
+ * A source of a deposits XML document for the parsers: a file, an input
+ * stream, a channel (e.g. a socket) or a byte buffer.
+ * <p>
+ * Large files are memory-mapped, so the parsers read the bytes of the page
+ * cache without copying them to an intermediate buffer; buffers are read in
+ * place too. Files of less than {@value #MIN_MAPPED_SIZE} bytes are read into
+ * a heap buffer instead: a mapping is released only when its buffer is
+ * garbage collected, and until then the file cannot be deleted or replaced
+ * on Windows. A mapped file that is truncated while it is parsed fails with
+ * an {@code IOException}. The encoding is detected before parsing from the byte order mark or
+ * the XML declaration (UTF-8 by default) and passed to the parser
+ * explicitly, so the platform charset is never used.
+ * <p>
+ * A file or a buffer can be parsed any number of times. A stream or a
+ * channel can be parsed only once, and it is closed after parsing.
+ */
+public final class DepositSource {
+
+    /** The minimal size of a file that is memory-mapped. */
+    static final long MIN_MAPPED_SIZE = 16L << 20;
+
+    /** The maximal size of a mapped region of a file. */
+    private static final long MAX_REGION_SIZE = 1L << 30;
+
+    /** The number of bytes looked at to detect the encoding. */
+    private static final int PROBE_SIZE = 256;
+
+    /** The file or null. */
+    private final File file;
+
+    /** The buffer or null. */
+    private final ByteBuffer buffer;
+
+    /** The stream or null if it has been opened. */
+    private InputStream stream;
+
+    /**
+     * Instantiates a new deposit source.
+     * @param file the file or null
+     * @param buffer the buffer or null
+     * @param stream the stream or null
+     */
+    private DepositSource(File file, ByteBuffer buffer, InputStream stream) {
+        this.file = file;
+        this.buffer = buffer;
+        this.stream = stream;
+    }
+
+    /**
+     * Creates a source of an XML file.
+     * @param file the file
+     * @return the source
+     */
+    public static DepositSource of(File file) {
+        return new DepositSource(file, null, null);
+    }
+
+    /**
+     * Creates a source of the remaining bytes of a buffer. The position of
+     * the buffer is not changed by parsing.
+     * @param buffer the buffer
+     * @return the source
+     */
+    public static DepositSource of(ByteBuffer buffer) {
+        return new DepositSource(null, buffer.slice(), null);
+    }
+
+    /**
+     * Creates a source of an input stream. The stream is read only once.
+     * @param in the input stream
+     * @return the source
+     */
+    public static DepositSource of(InputStream in) {
+        return new DepositSource(null, null, in);
+    }
+
+    /**
+     * Creates a source of a channel. The channel is read only once.
+     * @param channel the channel
+     * @return the source
+     */
+    public static DepositSource of(ReadableByteChannel channel) {
+        return of(Channels.newInputStream(channel));
+    }
+
+    /**
+     * Gets the file of the source.
+     * @return the file or null if the source is not a file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Checks whether the source can be opened more than once.
+     * @return true if the source is a file or a buffer
+     */
+    boolean isRepeatable() {
+        return (file != null) || (buffer != null);
+    }
+
+    /**
+     * Gets the system id of the source (for error messages).
+     * @return the file URI or null if the source is not a file
+     */
+    public String getSystemId() {
+        return (file == null) ? null : file.toURI().toString();
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        if (file != null) {
+            return file.toString();
+        }
+
+        return (buffer != null) ? "buffer" : "stream";
+    }
+
+    /**
+     * Opens the document bytes and detects their encoding.
+     * @return the input
+     * @throws IOException if the source could not be read
+     * @throws DepositParserException if a stream source has already been
+     * read
+     */
+    Input open() throws IOException {
+        if (file != null) {
+            return open(load(file));
+        }
+
+        if (buffer != null) {
+            return open(buffer);
+        }
+
+        if (stream == null) {
+            throw new DepositParserException(
+                    "The input stream has already been read");
+        }
+
+        PushbackInputStream in = new PushbackInputStream(stream, PROBE_SIZE);
+        byte[] probe = new byte[PROBE_SIZE];
+        int n = 0;
+
+        stream = null;
+
+        try {
+            // the XML declaration may come in several reads
+            while ((n < PROBE_SIZE) && (indexOf(probe, n, '>') < 0)) {
+                int k = in.read(probe, n, PROBE_SIZE - n);
+
+                if (k < 0) {
+                    break;
+                }
+
+                n += k;
+            }
+
+            in.unread(probe, 0, n);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+
+        return new Input(in, detectEncoding(probe, n), getSystemId());
+    }
+
+    /**
+     * Opens the bytes of a buffer.
+     * @param bytes the buffer
+     * @return the input
+     */
+    private Input open(ByteBuffer bytes) {
+        return new Input(new ByteBufferInputStream(bytes),
+                detectEncoding(bytes), getSystemId());
+    }
+
+    /**
+     * Opens the loaded regions of a file.
+     * @param regions the regions
+     * @return the input
+     */
+    private Input open(List<ByteBuffer> regions) {
+        if (regions.size() == 1) {
+            return open(regions.get(0));
+        }
+
+        List<InputStream> streams = new ArrayList<>(regions.size());
+
+        for (ByteBuffer region : regions) {
+            streams.add(new ByteBufferInputStream(region));
+        }
+
+        return new Input(new SequenceInputStream(
+                Collections.enumeration(streams)),
+                detectEncoding(regions.get(0)), getSystemId());
+    }
+
+    /**
+     * Loads a file to memory: a small file is read into a heap buffer and a
+     * large one is mapped in regions of at most 1 GB.
+     * @param file the file
+     * @return the regions
+     * @throws IOException if the file could not be read or mapped
+     */
+    private static List<ByteBuffer> load(File file) throws IOException {
+        List<ByteBuffer> regions = new ArrayList<>(1);
+
+        // mapped regions stay valid after the channel is closed
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ)) {
+            long size = channel.size();
+            long pos = 0;
+
+            if (size < MIN_MAPPED_SIZE) {
+                regions.add(read(channel, (int) size));
+                return regions;
+            }
+
+            do {
+                long length = Math.min(MAX_REGION_SIZE, size - pos);
+
+                regions.add(channel.map(FileChannel.MapMode.READ_ONLY, pos,
+                        length));
+                pos += length;
+            } while (pos < size);
+        }
+
+        return regions;
+    }
+
+    /**
+     * Reads the bytes of a file channel into a heap buffer.
+     * @param channel the channel
+     * @param size the size of the file
+     * @return the buffer of the bytes read (fewer if the file has been
+     * truncated meanwhile)
+     * @throws IOException if the file could not be read
+     */
+    private static ByteBuffer read(FileChannel channel, int size)
+            throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(size);
+
+        while (bytes.hasRemaining() && (channel.read(bytes) >= 0)) {
+            // read until the buffer is full or the end of the file
+        }
+
+        bytes.flip();
+        return bytes;
+    }
+
+    /**
+     * Detects the encoding of an XML document as described in the appendix
+     * F of the XML specification.
+     * @param b the first bytes of the document
+     * @param n the number of bytes
+     * @return the encoding name
+     */
+    static String detectEncoding(byte[] b, int n) {
+        if ((n >= 3) && ((b[0] & 0xFF) == 0xEF) && ((b[1] & 0xFF) == 0xBB)
+                && ((b[2] & 0xFF) == 0xBF)) {
+            return "UTF-8";
+        }
+
+        if ((n >= 2) && ((((b[0] & 0xFF) == 0xFE) && ((b[1] & 0xFF) == 0xFF))
+                || (((b[0] & 0xFF) == 0xFF) && ((b[1] & 0xFF) == 0xFE)))) {
+            // the decoder reads the byte order from the mark
+            return "UTF-16";
+        }
+
+        if ((n >= 4) && (b[0] == 0) && (b[1] == '<') && (b[2] == 0)
+                && (b[3] == '?')) {
+            return "UTF-16BE";
+        }
+
+        if ((n >= 4) && (b[0] == '<') && (b[1] == 0) && (b[2] == '?')
+                && (b[3] == 0)) {
+            return "UTF-16LE";
+        }
+
+        String declared = declaredEncoding(b, n);
+
+        return (declared != null) ? declared : "UTF-8";
+    }
+
+    /**
+     * Detects the encoding of an XML document in a buffer.
+     * @param bytes the buffer
+     * @return the encoding name
+     */
+    private static String detectEncoding(ByteBuffer bytes) {
+        byte[] probe = new byte[Math.min(PROBE_SIZE, bytes.remaining())];
+
+        bytes.duplicate().get(probe);
+        return detectEncoding(probe, probe.length);
+    }
+
+    /**
+     * Reads the encoding of an XML declaration in an ASCII compatible
+     * encoding.
+     * @param b the first bytes of the document
+     * @param n the number of bytes
+     * @return the encoding name or null if it is not declared
+     */
+    private static String declaredEncoding(byte[] b, int n) {
+        String prolog = new String(b, 0, n, StandardCharsets.ISO_8859_1);
+
+        if (!prolog.startsWith("<?xml")) {
+            return null;
+        }
+
+        int end = prolog.indexOf("?>");
+        int i = prolog.indexOf("encoding");
+
+        if ((end < 0) || (i < 0) || (i > end)) {
+            return null;
+        }
+
+        i += "encoding".length();
+
+        while ((i < end) && (prolog.charAt(i) != '"')
+                && (prolog.charAt(i) != '\'')) {
+            i++;
+        }
+
+        int valueEnd = (i < end) ? prolog.indexOf(prolog.charAt(i), i + 1)
+                : -1;
+
+        return ((valueEnd < 0) || (valueEnd > end)) ? null
+                : prolog.substring(i + 1, valueEnd);
+    }
+
+    /**
+     * Finds a byte.
+     * @param b the bytes
+     * @param n the number of bytes
+     * @param c the byte to find
+     * @return the index of the byte or -1
+     */
+    private static int indexOf(byte[] b, int n, char c) {
+        for (int i = 0; i < n; i++) {
+            if (b[i] == c) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * An opened source: the document bytes and their encoding.
+     */
+    static final class Input implements Closeable {
+
+        /** The document bytes. */
+        final InputStream stream;
+
+        /** The encoding. */
+        final String encoding;
+
+        /** The system id or null. */
+        final String systemId;
+
+        /**
+         * Instantiates a new input.
+         * @param stream the document bytes
+         * @param encoding the encoding
+         * @param systemId the system id or null
+         */
+        Input(InputStream stream, String encoding, String systemId) {
+            this.stream = stream;
+            this.encoding = encoding;
+            this.systemId = systemId;
+        }
+
+        /**
+         * Creates a SAX input source.
+         * @return the input source
+         */
+        InputSource toInputSource() {
+            InputSource inputSource = new InputSource(stream);
+
+            inputSource.setEncoding(encoding);
+            inputSource.setSystemId(systemId);
+            return inputSource;
+        }
+
+        /* (non-Javadoc)
+         * @see java.io.Closeable#close()
+         */
+        @Override
+        public void close() throws IOException {
+            stream.close();
+        }
+    }
+}
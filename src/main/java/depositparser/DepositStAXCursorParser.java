@@ -0,0 +1,336 @@
+package depositparser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import deposit.Deposit;
+
+/**
+ * A deposits StAX parser built on the cursor API ({@code XMLStreamReader}).
+ * Unlike {@link DepositStAXParser}, it does not create an event object per
+ * element, attribute or text node: attributes are read by index, and
+ * element names are compared by local name and namespace URI.
+ */
+public class DepositStAXCursorParser extends AbstractDepositParser {
+
+    /** The logger. */
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    /** The bank namespace. */
+    private static final String BANK_NS = "www.example.org/xmlns/bank";
+
+    /**
+     * Instantiates a new deposit StAX cursor parser.
+     * @param xmlFile the XML file
+     */
+    public DepositStAXCursorParser(File xmlFile) {
+        super(xmlFile);
+    }
+
+    /**
+     * Instantiates a new deposit StAX cursor parser of a document source.
+     * @param source a source of an XML document
+     */
+    public DepositStAXCursorParser(DepositSource source) {
+        super(source);
+    }
+
+    /* (non-Javadoc)
+     * @see depositparser.AbstractDepositParser#parse(java.util.function.Consumer)
+     */
+    @Override
+    public void parse(Consumer<? super Deposit> consumer) {
+        try (DepositIterator it = iterator()) {
+            it.forEachRemaining(consumer);
+        }
+    }
+
+    /**
+     * Opens the XML file for pulling deposits one by one. The iterator must
+     * be closed when it is no longer needed.
+     * @return an iterator over deposits of the XML file
+     * @throws DepositParserException if the file could not be opened
+     */
+    public DepositIterator iterator() {
+        DepositSource.Input input;
+
+        try {
+            input = getSource().open();
+        } catch (IOException e) {
+            throw new DepositParserException(e);
+        }
+
+        return iterator(input.stream, input.encoding, getOptions());
+    }
+
+    /**
+     * Opens an input stream with a deposits XML document in the given
+     * encoding for pulling deposits one by one. Closing the iterator closes
+     * the stream.
+     * @param in the input stream
+     * @param encoding the encoding or null to detect it from the document
+     * @param options the parse options
+     * @return an iterator over deposits of the document
+     * @throws DepositParserException if the document could not be opened
+     */
+    static DepositIterator iterator(InputStream in, String encoding,
+                                    ParseOptions options) {
+        XMLInputFactory inputFactory = XMLParsers.inputFactory();
+
+        try {
+            return new CursorDepositIterator(in, (encoding == null)
+                    ? inputFactory.createXMLStreamReader(in)
+                    : inputFactory.createXMLStreamReader(in, encoding),
+                    options);
+        } catch (XMLStreamException e) {
+            try {
+                in.close();
+            } catch (IOException ce) {
+                e.addSuppressed(ce);
+            }
+
+            throw new DepositParserException(e);
+        }
+    }
+
+    /**
+     * A deposit iterator that moves the cursor until the next
+     * {@code deposit} element is closed.
+     */
+    private static class CursorDepositIterator implements DepositIterator {
+
+        /** The underlying source. */
+        private final InputStream source;
+
+        /** The XML stream reader. */
+        private final XMLStreamReader reader;
+
+        /** The parse options. */
+        private final ParseOptions options;
+
+        /** The next complete deposit. */
+        private Deposit next;
+
+        /** Whether the iterator has been closed. */
+        private boolean closed;
+
+        /**
+         * Instantiates a new cursor deposit iterator.
+         * @param source the underlying source
+         * @param reader the XML stream reader
+         * @param options the parse options
+         */
+        CursorDepositIterator(InputStream source, XMLStreamReader reader,
+                              ParseOptions options) {
+            this.source = source;
+            this.reader = reader;
+            this.options = options;
+        }
+
+        /* (non-Javadoc)
+         * @see java.util.Iterator#hasNext()
+         */
+        @Override
+        public boolean hasNext() {
+            if ((next == null) && !closed) {
+                try {
+                    next = readNext();
+                } catch (XMLStreamException e) {
+                    throw new DepositParserException(e);
+                }
+            }
+
+            return next != null;
+        }
+
+        /* (non-Javadoc)
+         * @see java.util.Iterator#next()
+         */
+        @Override
+        public Deposit next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            Deposit result = next;
+
+            next = null;
+            return result;
+        }
+
+        /* (non-Javadoc)
+         * @see depositparser.DepositIterator#close()
+         */
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+
+            // the reader may be reused for another document once closed
+            closed = true;
+
+            try {
+                reader.close();
+                source.close();
+            } catch (XMLStreamException | IOException e) {
+                LOGGER.error(e);
+            }
+        }
+
+        /**
+         * Moves the cursor to the start of the next deposit and reads it.
+         * @return the next deposit or {@code null} if there are no more
+         * deposits
+         * @throws XMLStreamException if the XML is malformed
+         */
+        private Deposit readNext() throws XMLStreamException {
+            while (reader.hasNext()) {
+                if ((reader.next() == XMLStreamConstants.START_ELEMENT)
+                        && "deposit".equals(reader.getLocalName())
+                        && isEmpty(reader.getNamespaceURI())) {
+                    Deposit deposit = readDeposit();
+
+                    if (deposit != null) {
+                        return deposit;
+                    }
+                }
+            }
+
+            return null;
+        }
+
+        /**
+         * Reads a deposit. The cursor must be at the start of the
+         * {@code deposit} element; it is left at its end.
+         * @return the deposit or null if it is skipped by the unknown value
+         * policy or the filter
+         * @throws XMLStreamException if the XML is malformed
+         */
+        private Deposit readDeposit() throws XMLStreamException {
+            Deposit deposit = new Deposit();
+            String type = null;
+            String country = null;
+
+            for (int i = 0, n = reader.getAttributeCount(); i < n; i++) {
+                String name = reader.getAttributeLocalName(i);
+                String ns = reader.getAttributeNamespace(i);
+
+                if (isEmpty(ns)) {
+                    switch (name) {
+                    case "id":
+                        if (options.reads(DepositField.ID)) {
+                            deposit.setId(reader.getAttributeValue(i));
+                        }
+
+                        break;
+                    case "type":
+                        if (options.reads(DepositField.TYPE)) {
+                            type = reader.getAttributeValue(i);
+                            deposit.setType(DepositCodes.type(type));
+                        }
+
+                        break;
+                    case "country":
+                        if (options.reads(DepositField.COUNTRY)) {
+                            country = reader.getAttributeValue(i);
+                            deposit.setCountry(DepositCodes.country(country));
+                        }
+
+                        break;
+                    default:
+                    }
+                } else if ("name".equals(name) && BANK_NS.equals(ns)
+                        && options.reads(DepositField.NAME)) {
+                    deposit.setName(
+                            options.name(reader.getAttributeValue(i)));
+                }
+            }
+
+            boolean keep = options.policy.accept(deposit.getId(), "type",
+                    type, deposit.getType());
+
+            keep &= options.policy.accept(deposit.getId(), "country",
+                    country, deposit.getCountry());
+            keep = keep && options.filter.testAttributes(deposit);
+
+            int depth = 1;
+
+            while (depth > 0) {
+                switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    if (keep && readField(deposit)) {
+                        // the cursor is at the end of the field element
+                        break;
+                    }
+
+                    depth++;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    depth--;
+                    break;
+                case XMLStreamConstants.END_DOCUMENT:
+                    throw new DepositParserException(
+                            "Unexpected end of document in a deposit");
+                default:
+                }
+            }
+
+            return (keep && options.filter.testFields(deposit)) ? deposit
+                    : null;
+        }
+
+        /**
+         * Reads a deposit field if the cursor is at the start of a known
+         * field element.
+         * @param deposit the deposit
+         * @return true if the field has been read
+         * @throws XMLStreamException if the XML is malformed
+         * @throws DepositParserException if the text of a numeric field is
+         * not a number
+         */
+        private boolean readField(Deposit deposit) throws XMLStreamException {
+            DepositField field = DepositField.ofElement(
+                    reader.getNamespaceURI(), reader.getLocalName());
+
+            if ((field == null) || !options.reads(field)) {
+                return false;
+            }
+
+            Location location = reader.getLocation();
+            String text = reader.getElementText().trim();
+
+            try {
+                options.setField(deposit, field, text);
+            } catch (NumberFormatException e) {
+                throw DepositParserException.invalidNumber(deposit,
+                        field.localName(), text, e,
+                        location.getLineNumber(),
+                        location.getColumnNumber());
+            }
+
+            return true;
+        }
+
+        /**
+         * Checks whether a namespace URI stands for no namespace.
+         * @param ns the namespace URI
+         * @return true if there is no namespace
+         */
+        private static boolean isEmpty(String ns) {
+            return (ns == null) || ns.isEmpty();
+        }
+    }
+}
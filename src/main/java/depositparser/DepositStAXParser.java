@@ -1,16 +1,22 @@
 package depositparser;
 
+import java.io.Closeable;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.math.BigDecimal;
-import java.util.List;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import javax.xml.namespace.QName;
+import javax.xml.stream.Location;
 import javax.xml.stream.XMLEventReader;
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.events.Characters;
+import javax.xml.stream.events.Attribute;
 import javax.xml.stream.events.EndElement;
 import javax.xml.stream.events.StartElement;
 import javax.xml.stream.events.XMLEvent;
@@ -19,22 +25,16 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import deposit.Deposit;
-import deposit.DepositsDB;
-import deposit.ISO3166CountryCode;
-import deposit.Type;
 
 /**
- * A simple deposits StAX parser.
+ * A simple deposits StAX parser. Besides the callback mode, it supports
+ * pulling deposits one by one through {@link #iterator()} and
+ * {@link #stream()}.
  */
 public class DepositStAXParser extends AbstractDepositParser {
-    
+
     /** The logger. */
     private static final Logger LOGGER = LogManager.getLogger();
-    
-    /** Types of content (used for proper parsing of characters content) */
-    private enum ContentType {
-        NONE, DEPOSITOR, ACCOUNTID, AMOUNT, INTEREST, TIME
-    }
 
     /**
      * Instantiates a new deposit stax parser.
@@ -44,37 +44,260 @@ public class DepositStAXParser extends AbstractDepositParser {
         super(xmlFile);
     }
 
+    /**
+     * Instantiates a new deposit stax parser of a document source.
+     * @param source a source of an XML document
+     */
+    public DepositStAXParser(DepositSource source) {
+        super(source);
+    }
+
     /* (non-Javadoc)
-     * @see depositparser.DepositParser#parse()
+     * @see depositparser.AbstractDepositParser#parse(java.util.function.Consumer)
      */
     @Override
-    public DepositsDB parse() {
-        XMLInputFactory inputFactory = XMLInputFactory.newFactory();
-        inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+    public void parse(Consumer<? super Deposit> consumer) {
+        try (DepositIterator it = iterator()) {
+            it.forEachRemaining(consumer);
+        }
+    }
+
+    /**
+     * Opens the XML file for pulling deposits one by one. The iterator must
+     * be closed when it is no longer needed.
+     * @return an iterator over deposits of the XML file
+     * @throws DepositParserException if the file could not be opened
+     */
+    public DepositIterator iterator() {
+        DepositSource.Input input;
 
         try {
-            XMLEventReader reader = inputFactory.createXMLEventReader(
-                    new FileReader(xmlFile));
-            XMLEvent event;
+            input = getSource().open();
+        } catch (IOException e) {
+            throw new DepositParserException(e);
+        }
+
+        return iterator(input.stream, input.encoding, getOptions());
+    }
+
+    /**
+     * Opens an input stream with a deposits XML document in the given
+     * encoding for pulling deposits one by one. Closing the iterator closes
+     * the stream.
+     * @param in the input stream
+     * @param encoding the encoding or null to detect it from the document
+     * @param options the parse options
+     * @return an iterator over deposits of the document
+     * @throws DepositParserException if the document could not be opened
+     */
+    static DepositIterator iterator(InputStream in, String encoding,
+                                    ParseOptions options) {
+        try {
+            XMLInputFactory inputFactory = XMLParsers.inputFactory();
+
+            return new StAXDepositIterator(in, (encoding == null)
+                    ? inputFactory.createXMLEventReader(in)
+                    : inputFactory.createXMLEventReader(in, encoding),
+                    options);
+        } catch (XMLStreamException e) {
+            try {
+                in.close();
+            } catch (IOException ce) {
+                e.addSuppressed(ce);
+            }
+
+            throw new DepositParserException(e);
+        }
+    }
+
+    /**
+     * Opens the XML file as a sequential stream of deposits. The stream
+     * must be closed when it is no longer needed.
+     * @return a stream of deposits of the XML file
+     * @throws DepositParserException if the file could not be opened
+     */
+    public Stream<Deposit> stream() {
+        DepositIterator it = iterator();
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(it,
+                Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(it::close);
+    }
+
+    /**
+     * A deposit iterator that reads events until the next {@code deposit}
+     * element is closed.
+     */
+    private static class StAXDepositIterator implements DepositIterator {
+
+        /** The bank namespace. */
+        private static final String BANK_NS = "www.example.org/xmlns/bank";
+
+        private static final QName QN_ID = new QName("id");
+        private static final QName QN_NAME = new QName(BANK_NS, "name", "bank");
+        private static final QName QN_TYPE = new QName("type");
+        private static final QName QN_COUNTRY = new QName("country");
+
+        /** The underlying source. */
+        private final Closeable source;
+
+        /** The XML event reader. */
+        private final XMLEventReader reader;
+
+        /** A deposit that is being parsed. */
+        private Deposit deposit;
+
+        /** The next complete deposit. */
+        private Deposit next;
 
-            String bankNS = "www.example.org/xmlns/bank";
-            String finNS = "www.example.org/xmlns/financial";
+        /** Whether the iterator has been closed. */
+        private boolean closed;
 
-            DepositsDB depositsDB = new DepositsDB();
-            Deposit deposit = null;
-            
-            // get reference to the empty deposits list
-            List<Deposit> list = depositsDB.getDeposits();
-            
-            ContentType flag = ContentType.NONE;
+        /**
+         * Whether the current deposit is kept (by the unknown value policy
+         * and the filter).
+         */
+        private boolean keep;
 
-            QName qnId = new QName("id");
-            QName qnName = new QName(bankNS, "name", "bank");
-            QName qnType = new QName("type");
-            QName qnCountry = new QName("country");
+        /** The parse options. */
+        private final ParseOptions options;
+
+        /**
+         * Instantiates a new StAX deposit iterator.
+         * @param source the underlying source
+         * @param reader the XML event reader
+         * @param options the parse options
+         */
+        StAXDepositIterator(Closeable source, XMLEventReader reader,
+                            ParseOptions options) {
+            this.source = source;
+            this.reader = reader;
+            this.options = options;
+        }
+
+        /* (non-Javadoc)
+         * @see java.util.Iterator#hasNext()
+         */
+        @Override
+        public boolean hasNext() {
+            if ((next == null) && !closed) {
+                try {
+                    next = readNext();
+                } catch (XMLStreamException e) {
+                    throw new DepositParserException(e);
+                }
+            }
+
+            return next != null;
+        }
+
+        /* (non-Javadoc)
+         * @see java.util.Iterator#next()
+         */
+        @Override
+        public Deposit next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            Deposit result = next;
+
+            next = null;
+            return result;
+        }
 
+        /* (non-Javadoc)
+         * @see depositparser.DepositIterator#close()
+         */
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+
+            // the reader may be reused for another document once closed
+            closed = true;
+
+            try {
+                reader.close();
+                source.close();
+            } catch (XMLStreamException | IOException e) {
+                LOGGER.error(e);
+            }
+        }
+
+        /**
+         * Gets the value of an attribute of an element.
+         * @param se the start element
+         * @param name the attribute name
+         * @return the value or null if the element has no such attribute
+         */
+        private static String attr(StartElement se, QName name) {
+            Attribute attribute = se.getAttributeByName(name);
+
+            return (attribute == null) ? null : attribute.getValue();
+        }
+
+        /**
+         * Reads the events of the current element up to its end without
+         * handling them.
+         * @throws XMLStreamException if the XML is malformed
+         */
+        private void skipElement() throws XMLStreamException {
+            int depth = 1;
+
+            while (depth > 0) {
+                XMLEvent event = reader.nextEvent();
+
+                if (event.isStartElement()) {
+                    depth++;
+                } else if (event.isEndElement()) {
+                    depth--;
+                }
+            }
+        }
+
+        /**
+         * Reads the text of a deposit field element up to its end, so that
+         * text split into several events (around entities, comments or
+         * {@code CDATA} sections) is read whole.
+         * @param se the start of the element
+         * @throws XMLStreamException if the XML is malformed
+         * @throws DepositParserException if the text of a numeric field is
+         * not a number
+         */
+        private void readField(StartElement se) throws XMLStreamException {
+            DepositField field = DepositField.ofElement(
+                    se.getName().getNamespaceURI(),
+                    se.getName().getLocalPart());
+
+            if ((deposit == null) || (field == null) || !options.reads(field)) {
+                return;
+            }
+
+            String text = reader.getElementText().trim();
+
+            try {
+                options.setField(deposit, field, text);
+            } catch (NumberFormatException e) {
+                Location location = se.getLocation();
+
+                throw DepositParserException.invalidNumber(deposit,
+                        field.localName(), text, e,
+                        location.getLineNumber(),
+                        location.getColumnNumber());
+            }
+        }
+
+        /**
+         * Reads events until the next deposit is complete.
+         * @return the next deposit or {@code null} if there are no more
+         * deposits
+         * @throws XMLStreamException if the XML is malformed
+         */
+        private Deposit readNext() throws XMLStreamException {
+            XMLEvent event;
             String qName;
-            String ns;
 
             while (reader.hasNext()) {
                 event = reader.nextEvent();
@@ -83,39 +306,40 @@ public class DepositStAXParser extends AbstractDepositParser {
                 case XMLEvent.START_ELEMENT:
                     StartElement se = event.asStartElement();
                     qName = se.getName().getLocalPart();
-                    ns = se.getName().getNamespaceURI();
 
                     switch (qName) {
                     case "deposit":
+                        String type = options.reads(DepositField.TYPE)
+                                ? attr(se, QN_TYPE) : null;
+                        String country = options.reads(DepositField.COUNTRY)
+                                ? attr(se, QN_COUNTRY) : null;
+
                         deposit = new Deposit();
-                        deposit.setId(se.getAttributeByName(qnId).getValue());
-                        deposit.setName(se.getAttributeByName(qnName).getValue());
-                        deposit.setType(Type.fromValue(
-                                se.getAttributeByName(qnType).getValue()));
-                        deposit.setCountry(ISO3166CountryCode.fromValue(
-                                se.getAttributeByName(qnCountry).getValue()));
-                        break;
-                    case "depositor":
-                        flag = ContentType.DEPOSITOR;
-                        break;
-                    case "account-id":
-                        flag = ContentType.ACCOUNTID;
-                        break;
-                    case "amount-on-deposit":
-                        if (ns.equals(finNS)) {
-                            flag = ContentType.AMOUNT;
+
+                        if (options.reads(DepositField.ID)) {
+                            deposit.setId(attr(se, QN_ID));
                         }
 
-                        break;
-                    case "interest":
-                        if (ns.equals(finNS)) {
-                            flag = ContentType.INTEREST;
+                        if (options.reads(DepositField.NAME)) {
+                            deposit.setName(options.name(attr(se, QN_NAME)));
+                        }
+
+                        deposit.setType(DepositCodes.type(type));
+                        deposit.setCountry(DepositCodes.country(country));
+                        keep = options.policy.accept(deposit.getId(), "type",
+                                type, deposit.getType());
+                        keep &= options.policy.accept(deposit.getId(),
+                                "country", country, deposit.getCountry());
+
+                        if (!keep
+                                || !options.filter.testAttributes(deposit)) {
+                            deposit = null;
+                            skipElement();
                         }
 
                         break;
-                    case "time-constraint":
-                        flag = ContentType.TIME;
-                        break;
+                    default:
+                        readField(se);
                     }
 
                     break;
@@ -124,45 +348,21 @@ public class DepositStAXParser extends AbstractDepositParser {
                     qName = ee.getName().toString();
 
                     if ("deposit".equals(qName) && (deposit != null)) {
-                        list.add(deposit);
-                    }
-                 
-                    flag = ContentType.NONE;
-                    break;
-                case XMLEvent.CHARACTERS:
-                    Characters ch = event.asCharacters();
+                        Deposit result = deposit;
 
-                    switch (flag) {
-                    case DEPOSITOR:
-                        deposit.setDepositor(ch.getData().trim());
-                        break;
-                    case ACCOUNTID:
-                        deposit.setAccountId(
-                        	Integer.parseInt(ch.getData().trim()));
-                        break;
-                    case AMOUNT:
-                        deposit.setAmountOnDeposit(
-                        	new BigDecimal(ch.getData().trim()));
-                        break;
-                    case INTEREST:
-                        deposit.setInterest(
-                        	new BigDecimal(ch.getData().trim()));
-                        break;
-                    case TIME:
-                        deposit.setTimeConstraint(
-                        	Long.parseLong(ch.getData().trim()));
-                        break;
-                    default:
+                        deposit = null;
+
+                        if (keep && options.filter.testFields(result)) {
+                            return result;
+                        }
                     }
+
+                    break;
+                default:
                 }
             }
 
-            return depositsDB;
-
-        } catch (XMLStreamException | FileNotFoundException e) {
-            LOGGER.error(e);
+            return null;
         }
-
-        return null;
     }
 }
@@ -0,0 +1,181 @@
+package depositparser;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import deposit.Deposit;
+
+/**
+ * A parser that re-reads a deposits XML file as it changes and reports the
+ * deposits added, updated or removed since the previous read. The bytes of
+ * every {@code deposit} element are fingerprinted, and only elements whose
+ * fingerprints have changed are parsed (with a StAX cursor, as fragments of
+ * the file), so the cost of a refresh beyond a checksum scan of the file is
+ * proportional to the number of changes.
+ * <p>
+ * Deposits are matched by their {@code id} attribute, which must be present
+ * and unique. The file must use an ASCII compatible encoding (e.g. UTF-8).
+ * Changed deposits are parsed with the options of the parser; a deposit
+ * that no longer matches the filter (or is skipped by the unknown value
+ * policy) is reported as removed. Options set between refreshes apply to
+ * the deposits that change afterwards, or to all deposits after
+ * {@link #reset()}. The parser is not thread-safe.
+ */
+public class IncrementalDepositParser extends AbstractDepositParser {
+
+    /** The maximal size of a fragment (a fragment is mapped as a whole). */
+    private static final long MAX_FRAGMENT_SIZE = 1L << 30;
+
+    /** The fingerprints of deposits of the last read by id. */
+    private Map<String, Long> fingerprints = Collections.emptyMap();
+
+    /** The ids of the deposits of the last read that have been reported. */
+    private Set<String> reported = Collections.emptySet();
+
+    /**
+     * Instantiates a new incremental deposit parser. The first refresh
+     * reports all deposits of the file as added.
+     * @param xmlFile an XML file to be parsed
+     */
+    public IncrementalDepositParser(File xmlFile) {
+        super(xmlFile);
+    }
+
+    /**
+     * Parses the whole XML file regardless of the previous refresh.
+     * @param consumer a consumer of parsed deposits
+     * @throws DepositParserException if the file could not be parsed
+     */
+    @Override
+    public void parse(Consumer<? super Deposit> consumer) {
+        DepositSource.Input input;
+
+        try {
+            input = getSource().open();
+        } catch (IOException e) {
+            throw new DepositParserException(e);
+        }
+
+        try (DepositIterator it = DepositStAXCursorParser.iterator(
+                input.stream, input.encoding, getOptions())) {
+            it.forEachRemaining(consumer);
+        }
+    }
+
+    /**
+     * Re-reads the file and gets the changes since the previous refresh.
+     * If the refresh fails, the next one reports the changes since the
+     * last successful refresh.
+     * @return the added and updated deposits in document order followed by
+     * the removed ones
+     * @throws DepositParserException if the file could not be read or
+     * parsed, or a deposit has no id or a duplicate one
+     */
+    public List<DepositDelta> refresh() {
+        Map<String, Long> seen = new LinkedHashMap<>(
+                Math.max(16, fingerprints.size() * 4 / 3 + 1));
+        Set<String> changedIds = new HashSet<>();
+        Set<String> parsedIds = new HashSet<>();
+        List<long[]> changed = new ArrayList<>();
+        List<DepositDelta> deltas = new ArrayList<>();
+        ParseOptions options = getOptions();
+
+        // deposits are matched by id, so the id is read under any projection
+        options = new ParseOptions(options.policy, options.names,
+                options.depositors, options.filter,
+                options.fields | DepositField.ID.bit());
+
+        try (FileChannel channel = FileChannel.open(xmlFile.toPath(),
+                StandardOpenOption.READ)) {
+            DepositFileLayout layout = new DepositFileLayout(channel);
+
+            layout.scanDeposits((start, end, id, fingerprint) -> {
+                if (id == null) {
+                    throw new DepositParserException(
+                            "Deposit without id at offset " + start);
+                }
+
+                if (seen.put(id, fingerprint) != null) {
+                    throw new DepositParserException(
+                            "Duplicate deposit id: " + id);
+                }
+
+                Long old = fingerprints.get(id);
+
+                if ((old != null) && (old == fingerprint)) {
+                    return;
+                }
+
+                changedIds.add(id);
+
+                // adjacent changed deposits are parsed as one fragment
+                long[] last = changed.isEmpty() ? null
+                        : changed.get(changed.size() - 1);
+
+                if ((last != null) && (last[1] == start)
+                        && (end - last[0] <= MAX_FRAGMENT_SIZE)) {
+                    last[1] = end;
+                } else {
+                    changed.add(new long[] {start, end});
+                }
+            });
+
+            for (long[] fragment : changed) {
+                try (DepositIterator it = DepositStAXCursorParser.iterator(
+                        layout.openFragment(fragment[0], fragment[1]), null,
+                        options)) {
+                    while (it.hasNext()) {
+                        Deposit d = it.next();
+                        DepositDelta.Kind kind = reported.contains(d.getId())
+                                ? DepositDelta.Kind.UPDATE
+                                : DepositDelta.Kind.ADD;
+
+                        deltas.add(new DepositDelta(kind, d.getId(), d));
+                        parsedIds.add(d.getId());
+                    }
+                } catch (DepositParserException e) {
+                    throw layout.locate(e, fragment[0]);
+                }
+            }
+        } catch (IOException e) {
+            throw new DepositParserException(e);
+        }
+
+        Set<String> nowReported = new HashSet<>(reported);
+
+        nowReported.addAll(parsedIds);
+
+        // reported deposits that are gone or have been filtered out
+        for (String id : reported) {
+            if (!seen.containsKey(id)
+                    || (changedIds.contains(id) && !parsedIds.contains(id))) {
+                deltas.add(new DepositDelta(DepositDelta.Kind.REMOVE, id,
+                        null));
+                nowReported.remove(id);
+            }
+        }
+
+        fingerprints = seen;
+        reported = nowReported;
+        return deltas;
+    }
+
+    /**
+     * Forgets the previous read, so that the next refresh reports all
+     * deposits as added.
+     */
+    public void reset() {
+        fingerprints = Collections.emptyMap();
+        reported = Collections.emptySet();
+    }
+}
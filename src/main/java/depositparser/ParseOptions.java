@@ -0,0 +1,118 @@
+package depositparser;
+
+import java.math.BigDecimal;
+
+import deposit.Deposit;
+
+/**
+ * The options of a parser that are passed to its deposit readers, including
+ * the StAX cursor readers of fragments.
+ */
+final class ParseOptions {
+
+    /** The policy for unknown deposit types and country codes. */
+    final UnknownValuePolicy policy;
+
+    /** The pool of bank names or null. */
+    final StringPool names;
+
+    /** The pool of depositors or null. */
+    final StringPool depositors;
+
+    /** The filter of deposits. */
+    final DepositFilter filter;
+
+    /**
+     * The mask of the fields to read: the projection and the fields that
+     * the filter reads.
+     */
+    final int fields;
+
+    /**
+     * Instantiates new parse options.
+     * @param policy the policy for unknown deposit types and country codes
+     * @param names the pool of bank names or null
+     * @param depositors the pool of depositors or null
+     * @param filter the filter of deposits
+     * @param projection the mask of the fields to read
+     */
+    ParseOptions(UnknownValuePolicy policy, StringPool names,
+                 StringPool depositors, DepositFilter filter,
+                 int projection) {
+        this.policy = policy;
+        this.names = names;
+        this.depositors = depositors;
+        this.filter = filter;
+        this.fields = projection | filter.reads();
+    }
+
+    /**
+     * Checks whether a field has to be read.
+     * @param field the field
+     * @return true if the field has to be read
+     */
+    boolean reads(DepositField field) {
+        return (fields & field.bit()) != 0;
+    }
+
+    /**
+     * Sets a field of a deposit from the text of its element.
+     * @param deposit the deposit
+     * @param field the field of the element
+     * @param text the trimmed text
+     * @throws NumberFormatException if the text of a numeric field is not a
+     * number
+     */
+    void setField(Deposit deposit, DepositField field, String text) {
+        switch (field) {
+        case DEPOSITOR:
+            deposit.setDepositor(depositor(text));
+            break;
+        case ACCOUNT_ID:
+            deposit.setAccountId(Integer.parseInt(text));
+            break;
+        case AMOUNT_ON_DEPOSIT:
+            deposit.setAmountOnDeposit(new BigDecimal(text));
+            break;
+        case INTEREST:
+            deposit.setInterest(new BigDecimal(text));
+            break;
+        case TIME_CONSTRAINT:
+            deposit.setTimeConstraint(Long.parseLong(text));
+            break;
+        default:
+            throw new IllegalArgumentException("Not an element: " + field);
+        }
+    }
+
+    /**
+     * Gets a pooled bank name.
+     * @param name the bank name or null
+     * @return the pooled bank name or the name itself if there is no pool
+     */
+    String name(String name) {
+        return (names == null) ? name : names.intern(name);
+    }
+
+    /**
+     * Gets a pooled depositor.
+     * @param depositor the depositor or null
+     * @return the pooled depositor or the depositor itself if there is no
+     * pool
+     */
+    String depositor(String depositor) {
+        return (depositors == null) ? depositor : depositors.intern(depositor);
+    }
+
+    /**
+     * Gets a pooled depositor equal to a range of characters.
+     * @param ch the characters
+     * @param start the range start
+     * @param end the range end (exclusive)
+     * @return the pooled depositor or a new string if there is no pool
+     */
+    String depositor(char[] ch, int start, int end) {
+        return (depositors == null) ? new String(ch, start, end - start)
+                : depositors.intern(ch, start, end);
+    }
+}
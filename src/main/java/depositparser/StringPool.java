@@ -0,0 +1,192 @@
+package depositparser;
+
+/**
+ * A bounded pool of strings for values that repeat across deposits, e.g.
+ * bank names. Equal values share one string instance, so the parsed
+ * deposits take less heap.
+ * <p>
+ * The pool is a direct-mapped table: a value is looked up by the hash of
+ * its characters, and a new value replaces the one in its slot. So the
+ * pool never grows beyond its capacity, and a lookup of a character range
+ * that is already pooled does not allocate. The pool counts lookups and
+ * hits to tell how well the values repeat.
+ * <p>
+ * A pool is not thread-safe; it is meant to be used by one parser at a
+ * time.
+ */
+public final class StringPool {
+
+    /** The default number of slots. */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /** The pooled strings by hash. */
+    private final String[] slots;
+
+    /** The number of lookups. */
+    private long lookups;
+
+    /** The number of lookups that have found a pooled string. */
+    private long hits;
+
+    /**
+     * Instantiates a new string pool with the default capacity.
+     */
+    public StringPool() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Instantiates a new string pool.
+     * @param capacity the number of slots (rounded up to a power of two)
+     * @throws IllegalArgumentException if the capacity is not positive or
+     * greater than 2<sup>30</sup>
+     */
+    public StringPool(int capacity) {
+        if ((capacity <= 0) || (capacity > (1 << 30))) {
+            throw new IllegalArgumentException("Invalid capacity: "
+                    + capacity);
+        }
+
+        int size = 1;
+
+        while (size < capacity) {
+            size <<= 1;
+        }
+
+        slots = new String[size];
+    }
+
+    /**
+     * Gets a pooled string equal to a range of characters.
+     * @param ch the characters
+     * @param start the range start
+     * @param end the range end (exclusive)
+     * @return the string
+     */
+    public String intern(char[] ch, int start, int end) {
+        int h = 0;
+
+        for (int i = start; i < end; i++) {
+            h = 31 * h + ch[i];
+        }
+
+        int slot = slot(h);
+        String s = slots[slot];
+
+        lookups++;
+
+        if ((s != null) && equals(s, ch, start, end)) {
+            hits++;
+            return s;
+        }
+
+        s = new String(ch, start, end - start);
+        slots[slot] = s;
+        return s;
+    }
+
+    /**
+     * Gets a pooled string equal to a string.
+     * @param s the string or null
+     * @return the pooled string or null if the string is null
+     */
+    public String intern(String s) {
+        if (s == null) {
+            return null;
+        }
+
+        int slot = slot(s.hashCode());
+        String pooled = slots[slot];
+
+        lookups++;
+
+        if (s.equals(pooled)) {
+            hits++;
+            return pooled;
+        }
+
+        slots[slot] = s;
+        return s;
+    }
+
+    /**
+     * Gets the number of slots.
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    /**
+     * Gets the number of lookups.
+     * @return the number of lookups
+     */
+    public long getLookups() {
+        return lookups;
+    }
+
+    /**
+     * Gets the number of lookups that have found a pooled string.
+     * @return the number of hits
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Gets the share of lookups that have found a pooled string.
+     * @return the hit rate from 0 to 1 (0 if there were no lookups)
+     */
+    public double getHitRate() {
+        return (lookups == 0) ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * Resets the lookup and hit counts. The pooled strings are kept.
+     */
+    public void resetMetrics() {
+        lookups = 0;
+        hits = 0;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return String.format("StringPool[capacity=%d, lookups=%d, hits=%d, "
+                + "hit rate=%.1f%%]", slots.length, lookups, hits,
+                100 * getHitRate());
+    }
+
+    /**
+     * Gets the slot of a hash.
+     * @param h the hash
+     * @return the slot
+     */
+    private int slot(int h) {
+        return (h ^ (h >>> 16)) & (slots.length - 1);
+    }
+
+    /**
+     * Checks whether a string is equal to a range of characters.
+     * @param s the string
+     * @param ch the characters
+     * @param start the range start
+     * @param end the range end (exclusive)
+     * @return true if they are equal
+     */
+    private static boolean equals(String s, char[] ch, int start, int end) {
+        if (s.length() != end - start) {
+            return false;
+        }
+
+        for (int i = start; i < end; i++) {
+            if (s.charAt(i - start) != ch[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
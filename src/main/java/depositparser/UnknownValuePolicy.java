@@ -0,0 +1,55 @@
+package depositparser;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A policy for deposits whose {@code type} or {@code country} attribute has
+ * a value that is not a known deposit type or country code. A missing
+ * attribute is not an unknown value: the field is left null.
+ */
+public enum UnknownValuePolicy {
+
+    /** The parse fails with a {@link DepositParserException}. */
+    FAIL,
+
+    /** The field is left null and a warning is logged. */
+    KEEP_NULL,
+
+    /** The deposit is dropped and a warning is logged. */
+    SKIP_DEPOSIT;
+
+    /** The logger. */
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    /**
+     * Applies the policy to a decoded attribute value.
+     * @param deposit the deposit id (for messages)
+     * @param attribute the attribute name
+     * @param value the attribute value or null if it is missing
+     * @param decoded the decoded value or null if the value is unknown
+     * @return false if the deposit has to be dropped
+     * @throws DepositParserException if the value is unknown and the policy
+     * is {@link #FAIL}
+     */
+    boolean accept(String deposit, String attribute, String value,
+                   Object decoded) {
+        if ((decoded != null) || (value == null)) {
+            return true;
+        }
+
+        String message = "Deposit " + deposit + ": unknown " + attribute
+                + " '" + value + "'";
+
+        switch (this) {
+        case FAIL:
+            throw new DepositParserException(message);
+        case KEEP_NULL:
+            LOGGER.warn(message);
+            return true;
+        default:
+            LOGGER.warn(message + ", skipped");
+            return false;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package depositparser;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.stream.XMLInputFactory;
+
+import org.xml.sax.SAXException;
+
+/**
+ * Cached JAXP factories and per-thread parsers. Looking up a factory goes
+ * through the service loader, and a new parser sets up its scanner and
+ * symbol tables, which costs more than parsing a small file; so the
+ * factories are created once, and every thread keeps a parser of each kind
+ * that is reset between documents.
+ * <p>
+ * A parser is taken from its thread while it is in use, so a document
+ * parsed from within a consumer of another one gets a parser of its own.
+ */
+final class XMLParsers {
+
+    /** The namespace aware SAX parser factory. */
+    private static final SAXParserFactory SAX_FACTORY;
+
+    /** The feature of the Xerces DOM builder for deferred node expansion. */
+    private static final String DEFER_NODE_EXPANSION =
+            "http://apache.org/xml/features/dom/defer-node-expansion";
+
+    /**
+     * The DOM document builder factories that expand nodes while building
+     * the tree and on first access.
+     */
+    private static final DocumentBuilderFactory[] DOM_FACTORIES =
+            new DocumentBuilderFactory[2];
+
+    /** The SAX parser of each thread. */
+    private static final ThreadLocal<SAXParser> SAX_PARSERS =
+            new ThreadLocal<>();
+
+    /** The document builders of each thread (one per factory). */
+    private static final ThreadLocal<DocumentBuilder[]> DOCUMENT_BUILDERS =
+            ThreadLocal.withInitial(() -> new DocumentBuilder[2]);
+
+    /**
+     * The property of the JDK input factory that makes it reuse a closed
+     * stream reader for the next document.
+     */
+    private static final String REUSE_INSTANCE = "reuse-instance";
+
+    /**
+     * The StAX input factory of each thread (the factories are not
+     * thread-safe).
+     */
+    private static final ThreadLocal<XMLInputFactory> INPUT_FACTORIES =
+            ThreadLocal.withInitial(XMLParsers::newInputFactory);
+
+    static {
+        SAX_FACTORY = SAXParserFactory.newInstance();
+        SAX_FACTORY.setNamespaceAware(true);
+
+        for (int i = 0; i < DOM_FACTORIES.length; i++) {
+            DocumentBuilderFactory factory =
+                    DocumentBuilderFactory.newInstance();
+
+            factory.setNamespaceAware(true);
+            factory.setIgnoringElementContentWhitespace(true);
+
+            try {
+                factory.setFeature(DEFER_NODE_EXPANSION, i == 1);
+            } catch (ParserConfigurationException e) {
+                // other implementations build their own kind of tree
+            }
+
+            DOM_FACTORIES[i] = factory;
+        }
+    }
+
+    private XMLParsers() {}
+
+    /**
+     * Takes the SAX parser of the current thread or creates a new one.
+     * @return a namespace aware SAX parser
+     * @throws ParserConfigurationException if the parser could not be
+     * created
+     * @throws SAXException if the parser could not be created
+     */
+    static SAXParser acquireSAXParser()
+            throws ParserConfigurationException, SAXException {
+        SAXParser parser = SAX_PARSERS.get();
+
+        if (parser != null) {
+            SAX_PARSERS.remove();
+            return parser;
+        }
+
+        synchronized (SAX_FACTORY) {
+            return SAX_FACTORY.newSAXParser();
+        }
+    }
+
+    /**
+     * Resets a SAX parser and keeps it for the next document of the current
+     * thread.
+     * @param parser the parser
+     */
+    static void release(SAXParser parser) {
+        parser.reset();
+        SAX_PARSERS.set(parser);
+    }
+
+    /**
+     * Takes a document builder of the current thread or creates a new one.
+     * @param deferNodeExpansion whether nodes are expanded on first access
+     * @return a namespace aware document builder
+     * @throws ParserConfigurationException if the builder could not be
+     * created
+     */
+    static DocumentBuilder acquireDocumentBuilder(boolean deferNodeExpansion)
+            throws ParserConfigurationException {
+        DocumentBuilder[] builders = DOCUMENT_BUILDERS.get();
+        int i = deferNodeExpansion ? 1 : 0;
+        DocumentBuilder builder = builders[i];
+
+        if (builder != null) {
+            builders[i] = null;
+            return builder;
+        }
+
+        synchronized (DOM_FACTORIES[i]) {
+            return DOM_FACTORIES[i].newDocumentBuilder();
+        }
+    }
+
+    /**
+     * Resets a document builder and keeps it for the next document of the
+     * current thread.
+     * @param builder the builder
+     * @param deferNodeExpansion whether the builder expands nodes on first
+     * access
+     */
+    static void release(DocumentBuilder builder,
+                        boolean deferNodeExpansion) {
+        builder.reset();
+        DOCUMENT_BUILDERS.get()[deferNodeExpansion ? 1 : 0] = builder;
+    }
+
+    /**
+     * Creates a namespace aware input factory that reuses closed stream
+     * readers if it supports that.
+     * @return the input factory
+     */
+    private static XMLInputFactory newInputFactory() {
+        XMLInputFactory inputFactory = XMLInputFactory.newFactory();
+
+        inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+
+        if (inputFactory.isPropertySupported(REUSE_INSTANCE)) {
+            inputFactory.setProperty(REUSE_INSTANCE, true);
+        }
+
+        return inputFactory;
+    }
+
+    /**
+     * Gets the StAX input factory of the current thread. A stream reader
+     * must be closed exactly once, since a closed reader may already read
+     * the next document.
+     * @return a namespace aware input factory
+     */
+    static XMLInputFactory inputFactory() {
+        return INPUT_FACTORIES.get();
+    }
+}
@@ -0,0 +1,154 @@
+package depositprocessor;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+/**
+ * A thread-safe cache of objects compiled from files, such as XSD schemas
+ * and XSL stylesheets. Entries are keyed by the absolute file path. An entry
+ * is compiled again when the modification time of the file, or of any file
+ * it depends on (e.g. an imported schema), has changed.
+ * @param <T> the type of compiled objects (must be thread-safe)
+ * @param <E> the type of compilation exceptions
+ */
+final class CompiledFileCache<T, E extends Exception> {
+
+    /**
+     * A compiler of files.
+     * @param <T> the type of compiled objects
+     * @param <E> the type of compilation exceptions
+     */
+    @FunctionalInterface
+    interface Compiler<T, E extends Exception> {
+
+        /**
+         * Compiles a file.
+         * @param file the file
+         * @param dependencies a consumer of the other files to be read,
+         * called before each file is read
+         * @return the compiled object
+         * @throws E if the file could not be compiled
+         */
+        T compile(File file, Consumer<File> dependencies) throws E;
+    }
+
+    /** The compiler. */
+    private final Compiler<T, E> compiler;
+
+    /** The cache entries. */
+    private final ConcurrentMap<File, Entry<T>> entries =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Instantiates a new cache.
+     * @param compiler the compiler of files
+     */
+    CompiledFileCache(Compiler<T, E> compiler) {
+        this.compiler = compiler;
+    }
+
+    /**
+     * Gets the compiled object for the file, compiling it if it is not
+     * cached or has been modified.
+     * @param file the file
+     * @return the compiled object
+     * @throws E if the file could not be compiled
+     */
+    @SuppressWarnings("unchecked")
+    T get(File file) throws E {
+        File key = file.getAbsoluteFile();
+        Entry<T> entry = entries.get(key);
+
+        if ((entry != null) && entry.isFresh()) {
+            return entry.value;
+        }
+
+        try {
+            // compiles at most once per key when several threads miss
+            return entries.compute(key, (k, old) -> ((old != null)
+                    && old.isFresh()) ? old : compile(k)).value;
+        } catch (CompilationFailure e) {
+            throw (E) e.getCause();
+        }
+    }
+
+    /**
+     * Compiles a file into a new entry.
+     * @param file the file
+     * @return the entry
+     * @throws CompilationFailure if the file could not be compiled
+     */
+    private Entry<T> compile(File file) {
+        Map<File, Long> stamps = new HashMap<>();
+
+        // stamps are taken before the files are read, so changes made during
+        // compilation cause another compilation next time
+        stamps.put(file, file.lastModified());
+
+        try {
+            T value = compiler.compile(file, dependency -> stamps.putIfAbsent(
+                    dependency.getAbsoluteFile(), dependency.lastModified()));
+
+            return new Entry<>(value, stamps);
+        } catch (Exception e) {
+            throw new CompilationFailure(e);
+        }
+    }
+
+    /**
+     * A compiled object with modification times of its files.
+     * @param <T> the type of compiled objects
+     */
+    private static final class Entry<T> {
+
+        /** The compiled object. */
+        private final T value;
+
+        /** Modification times of the compiled files. */
+        private final Map<File, Long> stamps;
+
+        /**
+         * Instantiates a new entry.
+         * @param value the compiled object
+         * @param stamps modification times of the compiled files
+         */
+        Entry(T value, Map<File, Long> stamps) {
+            this.value = value;
+            this.stamps = stamps;
+        }
+
+        /**
+         * Checks whether none of the files has been modified.
+         * @return true if the entry is up to date
+         */
+        boolean isFresh() {
+            for (Map.Entry<File, Long> stamp : stamps.entrySet()) {
+                if (stamp.getKey().lastModified() != stamp.getValue()) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * An unchecked wrapper of compilation exceptions.
+     */
+    private static final class CompilationFailure extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Instantiates a new compilation failure.
+         * @param cause the compilation exception
+         */
+        CompilationFailure(Exception cause) {
+            super(cause);
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package depositprocessor;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.xml.sax.SAXException;
+
+import deposit.Deposit;
+import deposit.DepositsDB;
+import depositparser.AbstractDepositParser;
+import depositparser.DepositParserException;
+import depositparser.DepositSAXParser;
+import depositstore.DepositAggregator;
+
+/**
+ * A processor that ingests many deposits XML files concurrently. Every file
+ * is validated (if a schema is set) and parsed on a bounded executor, and
+ * its deposits are added to a shared {@code DepositsDB} or its totals are
+ * merged into a shared {@code DepositAggregator}. Failures are
+ * reported per file, so one bad file does not stop the batch.
+ * <p>
+ * The processor itself is immutable after configuration and may be shared
+ * between threads.
+ */
+public class DepositBatchProcessor {
+
+    /** The logger. */
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    /** The number of threads (used if no executor is given). */
+    private final int threads;
+
+    /** An executor for processing files or null. */
+    private final ExecutorService executor;
+
+    /** An XSD schema file or null. */
+    private volatile File schemaFile;
+
+    /** The parser type used for files that are not validated. */
+    private volatile byte parserType = DepositProcessor.STAX_CURSOR;
+
+    /**
+     * Instantiates a new batch processor that processes files on a new fixed
+     * thread pool for every batch.
+     * @param threads the number of threads
+     */
+    public DepositBatchProcessor(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException(
+                    "Invalid number of threads: " + threads);
+        }
+
+        this.threads = threads;
+        this.executor = null;
+    }
+
+    /**
+     * Instantiates a new batch processor that processes files on the given
+     * executor (e.g. a virtual thread executor on newer JDKs). The executor
+     * is not shut down by the processor.
+     * @param executor an executor
+     */
+    public DepositBatchProcessor(ExecutorService executor) {
+        this.threads = 0;
+        this.executor = executor;
+    }
+
+    /**
+     * Set the XSD file to be used for validation. Validated files are read
+     * with the SAX parser in a single pass.
+     * @param pathToXsd Path to XSD file or null not to validate files.
+     */
+    public void setSchema(String pathToXsd) {
+        this.schemaFile = (pathToXsd == null) ? null : new File(pathToXsd);
+    }
+
+    /**
+     * Set the parser type used for files that are not validated.
+     * @param parserType type of parser to be used (see
+     * {@link DepositProcessor}).
+     */
+    public void setParserType(byte parserType) {
+        DepositProcessor.createParser(parserType, null);
+        this.parserType = parserType;
+    }
+
+    /**
+     * Process all XML files of a directory.
+     * @param directory a directory with deposits XML files
+     * @param store a store to add deposits of valid files to
+     * @return results for the files in the order of their names
+     */
+    public List<FileResult> process(File directory, DepositsDB store) {
+        File[] files = directory.listFiles(
+                (dir, name) -> name.toLowerCase().endsWith(".xml"));
+
+        if (files == null) {
+            return Collections.singletonList(new FileResult(directory, 0,
+                    new DepositParserException("Not a directory")));
+        }
+
+        Arrays.sort(files);
+        return process(Arrays.asList(files), store);
+    }
+
+    /**
+     * Process XML files concurrently. Deposits of a file are added to the
+     * store at once after the whole file has been processed successfully;
+     * the store is locked while they are added.
+     * @param files deposits XML files
+     * @param store a store to add deposits of valid files to
+     * @return results for the files in the given order
+     */
+    public List<FileResult> process(List<File> files, DepositsDB store) {
+        return run(files, file -> processFile(file, store));
+    }
+
+    /**
+     * Aggregate XML files concurrently. Every file is aggregated separately
+     * and its totals are merged into the given ones after the whole file
+     * has been processed successfully; the totals are locked while they are
+     * merged. The parsers only read the fields that the aggregator needs.
+     * @param files deposits XML files
+     * @param totals an aggregator to merge the totals of valid files into
+     * @return results for the files in the given order
+     */
+    public List<FileResult> aggregate(List<File> files,
+                                      DepositAggregator totals) {
+        return run(files, file -> aggregateFile(file, totals));
+    }
+
+    /**
+     * Process files concurrently.
+     * @param files files
+     * @param task the task of a file
+     * @return results for the files in the given order
+     */
+    private List<FileResult> run(List<File> files,
+                                 Function<File, FileResult> task) {
+        ExecutorService pool = (executor != null) ? executor
+                : Executors.newFixedThreadPool(
+                        Math.min(threads, Math.max(1, files.size())));
+        List<Future<FileResult>> futures = new ArrayList<>(files.size());
+        List<FileResult> results = new ArrayList<>(files.size());
+
+        try {
+            for (File file : files) {
+                futures.add(pool.submit(() -> task.apply(file)));
+            }
+
+            for (int i = 0; i < futures.size(); i++) {
+                results.add(await(futures.get(i), files.get(i)));
+            }
+        } finally {
+            if (executor == null) {
+                pool.shutdownNow();
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * Validate and parse a file and add its deposits to the store.
+     * @param file an XML file
+     * @param store a store of deposits
+     * @return the file result
+     */
+    private FileResult processFile(File file, DepositsDB store) {
+        List<Deposit> deposits = new ArrayList<>();
+
+        try {
+            createParser(file).parse(deposits::add);
+        } catch (SAXException | RuntimeException e) {
+            LOGGER.debug("Could not process " + file, e);
+            return new FileResult(file, 0, e);
+        }
+
+        synchronized (store) {
+            store.getDeposits().addAll(deposits);
+        }
+
+        return new FileResult(file, deposits.size(), null);
+    }
+
+    /**
+     * Validate and aggregate a file and merge its totals.
+     * @param file an XML file
+     * @param totals the totals of all files
+     * @return the file result
+     */
+    private FileResult aggregateFile(File file, DepositAggregator totals) {
+        DepositAggregator aggregator = new DepositAggregator(
+                totals.getAmountScale(), totals.getInterestScale());
+
+        try {
+            AbstractDepositParser parser = createParser(file);
+
+            parser.setProjection(DepositAggregator.FIELDS);
+            parser.parse(aggregator);
+        } catch (SAXException | RuntimeException e) {
+            LOGGER.debug("Could not aggregate " + file, e);
+            return new FileResult(file, 0, e);
+        }
+
+        synchronized (totals) {
+            totals.merge(aggregator);
+        }
+
+        return new FileResult(file,
+                (int) aggregator.getTotal().getCount(), null);
+    }
+
+    /**
+     * Create a parser of a file: the SAX parser with the schema if a schema
+     * is set, or a parser of the configured type.
+     * @param file an XML file
+     * @return the parser
+     * @throws SAXException if the schema could not be loaded
+     */
+    private AbstractDepositParser createParser(File file)
+            throws SAXException {
+        File schema = schemaFile;
+
+        if (schema != null) {
+            DepositSAXParser saxParser = new DepositSAXParser(file);
+
+            saxParser.setSchema(DepositProcessor.SCHEMAS.get(schema));
+            return saxParser;
+        }
+
+        return DepositProcessor.createParser(parserType, file);
+    }
+
+    /**
+     * Wait for a file to be processed.
+     * @param future the file task
+     * @param file the file
+     * @return the file result
+     */
+    private static FileResult await(Future<FileResult> future, File file) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            // an error (e.g. a stack overflow) is kept wrapped
+            Throwable cause = e.getCause();
+
+            return new FileResult(file, 0, (cause instanceof Exception)
+                    ? (Exception) cause : e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new FileResult(file, 0, e);
+        }
+    }
+
+    /**
+     * A result of processing a file.
+     */
+    public static final class FileResult {
+
+        /** The file. */
+        private final File file;
+
+        /** The number of deposits read. */
+        private final int depositCount;
+
+        /** The error or null. */
+        private final Exception error;
+
+        /**
+         * Instantiates a new file result.
+         * @param file the file
+         * @param depositCount the number of deposits read
+         * @param error the error or null if the file has been processed
+         */
+        FileResult(File file, int depositCount, Exception error) {
+            this.file = file;
+            this.depositCount = depositCount;
+            this.error = error;
+        }
+
+        /**
+         * Gets the file.
+         * @return the file
+         */
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * Gets the number of deposits added to the store.
+         * @return the number of deposits
+         */
+        public int getDepositCount() {
+            return depositCount;
+        }
+
+        /**
+         * Gets the error that stopped processing of the file. Parse and
+         * validation errors are {@link DepositParserException}s with the
+         * line and column of the error. An {@code Error} thrown while
+         * processing the file is the cause of an
+         * {@code ExecutionException}.
+         * @return the error or {@code null} if the file has been processed
+         */
+        public Exception getError() {
+            return error;
+        }
+
+        /**
+         * Checks whether the file has been processed successfully.
+         * @return true if there was no error
+         */
+        public boolean isSuccessful() {
+            return error == null;
+        }
+
+        /* (non-Javadoc)
+         * @see java.lang.Object#toString()
+         */
+        @Override
+        public String toString() {
+            return file + (isSuccessful() ? ": " + depositCount + " deposits"
+                    : ": " + error.getMessage());
+        }
+    }
+}
@@ -1,17 +1,23 @@
 package depositprocessor;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
-import java.io.UnsupportedEncodingException;
-import java.util.Collections;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.function.Consumer;
 
 import javax.xml.XMLConstants;
 import javax.xml.transform.Result;
 import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.stream.StreamResult;
@@ -26,9 +32,21 @@ import org.xml.sax.SAXException;
 
 import deposit.Deposit;
 import deposit.DepositsDB;
+import depositparser.AbstractDepositParser;
 import depositparser.DepositDOMParser;
+import depositparser.DepositDelta;
+import depositparser.DepositParallelParser;
+import depositparser.DepositParserException;
 import depositparser.DepositSAXParser;
+import depositparser.DepositScannerParser;
+import depositparser.DepositStAXCursorParser;
 import depositparser.DepositStAXParser;
+import depositparser.IncrementalDepositParser;
+import depositstore.DepositAggregator;
+import depositstore.DepositOrder;
+import depositstore.DepositSnapshot;
+import depositstore.DepositSorter;
+import depositstore.IndexedDepositsDB;
 
 /**
  * A class that provides functionality for processing XML files that contain
@@ -51,6 +69,15 @@ public class DepositProcessor {
     /** The StAX parser option. */
     public static final byte STAX = 2;
 
+    /** The parallel (chunked StAX) parser option. */
+    public static final byte PARALLEL = 3;
+
+    /** The StAX cursor parser option. */
+    public static final byte STAX_CURSOR = 4;
+
+    /** The byte-level scanner parser option. */
+    public static final byte SCANNER = 5;
+
     /** The 'sort by depositor' option. */
     public static final byte DEPOSITOR = 100;
     
@@ -60,6 +87,15 @@ public class DepositProcessor {
     /** The 'sort by time constraint' option. */
     public static final byte TIME = 102;
 
+    /** Compiled schemas shared by all processors. */
+    static final CompiledFileCache<Schema, SAXException> SCHEMAS =
+            new CompiledFileCache<>(DepositProcessor::compileSchema);
+
+    /** Compiled stylesheets shared by all processors. */
+    private static final CompiledFileCache<Templates,
+            TransformerConfigurationException> STYLESHEETS =
+            new CompiledFileCache<>(DepositProcessor::compileStylesheet);
+
     /** An XML file. */
     private File xmlFile;
     
@@ -69,9 +105,18 @@ public class DepositProcessor {
     /** An XSL stylesheet file. */
     private File stylesheetFile;
 
+    /** A binary snapshot file of the deposits. */
+    private File snapshotFile;
+
     /** A deposits db (deposits list). */
     private DepositsDB depositsDB;
 
+    /** A parser of changes of the XML file since the last refresh. */
+    private IncrementalDepositParser incrementalParser;
+
+    /** The deposits db kept up to date by refreshes. */
+    private IndexedDepositsDB refreshedDB;
+
     /**
      * Instantiates a new deposit processor.
      */
@@ -102,12 +147,25 @@ public class DepositProcessor {
         }
     }
 
+    /**
+     * Set the binary snapshot file of deposits. Deposits are then read from
+     * the snapshot if it is up to date with the XML file, and a snapshot is
+     * written after the XML file has been parsed.
+     * @param pathToSnapshot path to a snapshot file or null not to use one.
+     */
+    public void setSnapshot(String pathToSnapshot) {
+        this.snapshotFile = (pathToSnapshot == null) ? null
+                : new File(pathToSnapshot);
+    }
+
     /**
      * Open an XML file.
      * @param pathToXML path to an XML file.
      */
     public void open(String pathToXML) {
         this.xmlFile = new File(pathToXML);
+        this.incrementalParser = null;
+        this.refreshedDB = null;
 
         if (!xmlFile.exists()) {
             LOGGER.error("Could not open: no xml file found.");
@@ -131,11 +189,8 @@ public class DepositProcessor {
 
         Source source = new StreamSource(xmlFile);
 
-        SchemaFactory sf = SchemaFactory.newInstance(
-                XMLConstants.W3C_XML_SCHEMA_NS_URI);
-        
         try {
-            Schema schema = sf.newSchema(schemaFile);
+            Schema schema = SCHEMAS.get(schemaFile);
             Validator validator = schema.newValidator();
 
             validator.validate(source);
@@ -148,8 +203,42 @@ public class DepositProcessor {
     }
 
     /**
-     * Read all deposit entries from the XML file.
-     * @param parserType type of parser to be used (SAX, DOM or StAX).
+     * Validate the XML file and read all deposit entries from it in a single
+     * pass (using the SAX parser). Deposits are kept only if the whole file
+     * is valid.
+     * @return returns true if XML file validates against the schema.
+     */
+    public boolean validateAndReadDeposits() {
+        if (xmlFile == null) {
+            LOGGER.error("Could not validate: no xml file opened.");
+            return false;
+        }
+
+        if (schemaFile == null) {
+            LOGGER.error("Could not validate: no schema is set.");
+            return false;
+        }
+
+        DepositsDB validDepositsDB = new DepositsDB();
+        DepositSAXParser parser = new DepositSAXParser(xmlFile);
+
+        try {
+            parser.setSchema(SCHEMAS.get(schemaFile));
+            parser.parse(validDepositsDB.getDeposits()::add);
+        } catch (SAXException | DepositParserException e) {
+            LOGGER.error(e);
+            return false;
+        }
+
+        depositsDB = validDepositsDB;
+        return true;
+    }
+
+    /**
+     * Read all deposit entries from the XML file, or from the snapshot if it
+     * is up to date.
+     * @param parserType type of parser to be used (SAX, DOM, StAX,
+     * parallel StAX, StAX cursor or scanner).
      */
     public void readDeposits(byte parserType) {
         if (xmlFile == null) {
@@ -157,16 +246,161 @@ public class DepositProcessor {
             return;
         }
 
+        if ((snapshotFile != null)
+                && DepositSnapshot.isFresh(snapshotFile, xmlFile)) {
+            try {
+                depositsDB = DepositSnapshot.load(snapshotFile);
+                return;
+            } catch (IOException e) {
+                LOGGER.warn("Could not load snapshot, reading xml file.", e);
+            }
+        }
+
+        // a file changed while it is parsed must not get a fresh snapshot
+        long modified = xmlFile.lastModified();
+        long length = xmlFile.length();
+
+        depositsDB = createParser(parserType, xmlFile).parse();
+
+        if ((snapshotFile != null) && (depositsDB != null)) {
+            try {
+                if (!DepositSnapshot.write(depositsDB, snapshotFile, xmlFile,
+                        modified, length)) {
+                    LOGGER.warn("Xml file changed while reading, snapshot "
+                            + "not written.");
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                LOGGER.warn("Could not write snapshot.", e);
+            }
+        }
+    }
+
+    /**
+     * Read all deposit entries from the XML file into the given deposits db,
+     * which then becomes the deposits db of the processor. This allows
+     * reading deposits into a store that indexes them as they are added.
+     * @param parserType type of parser to be used (SAX, DOM, StAX,
+     * parallel StAX, StAX cursor or scanner).
+     * @param store a deposits db to add deposits to
+     * @return true if the whole file has been read.
+     */
+    public boolean readDeposits(byte parserType, DepositsDB store) {
+        if (!readDeposits(parserType, store.getDeposits()::add)) {
+            return false;
+        }
+
+        depositsDB = store;
+        return true;
+    }
+
+    /**
+     * Read deposit entries from the XML file one by one and pass them to the
+     * consumer. The deposits are not kept by the processor, so memory usage
+     * does not depend on the file size (except for the DOM parser).
+     * @param parserType type of parser to be used (SAX, DOM, StAX,
+     * parallel StAX, StAX cursor or scanner).
+     * @param consumer a consumer of deposits
+     * @return true if the whole file has been read.
+     */
+    public boolean readDeposits(byte parserType,
+                                Consumer<? super Deposit> consumer) {
+        if (xmlFile == null) {
+            LOGGER.error("Could not read: no xml file opened.");
+            return false;
+        }
+
+        try {
+            createParser(parserType, xmlFile).parse(consumer);
+        } catch (DepositParserException e) {
+            LOGGER.error(e);
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Aggregate deposit entries of the XML file without keeping them. The
+     * parser only reads the fields that the aggregator needs.
+     * @param parserType type of parser to be used (SAX, DOM, StAX,
+     * parallel StAX, StAX cursor or scanner).
+     * @return the totals or null if the file could not be read.
+     */
+    public DepositAggregator aggregateDeposits(byte parserType) {
+        if (xmlFile == null) {
+            LOGGER.error("Could not aggregate: no xml file opened.");
+            return null;
+        }
+
+        AbstractDepositParser parser = createParser(parserType, xmlFile);
+        DepositAggregator aggregator = new DepositAggregator();
+
+        parser.setProjection(DepositAggregator.FIELDS);
+
+        try {
+            parser.parse(aggregator);
+        } catch (DepositParserException e) {
+            LOGGER.error(e);
+            return null;
+        }
+
+        return aggregator;
+    }
+
+    /**
+     * Bring the loaded deposits up to date with the XML file. Only deposits
+     * whose elements have changed since the previous refresh are parsed and
+     * applied to the deposits db; the first refresh reads the whole file.
+     * Deposits must have unique ids.
+     * @return true if the deposits are up to date with the file.
+     */
+    public boolean refreshDeposits() {
+        if (xmlFile == null) {
+            LOGGER.error("Could not refresh: no xml file opened.");
+            return false;
+        }
+
+        if ((incrementalParser == null) || (depositsDB != refreshedDB)) {
+            // the deposits have been replaced, so the file is read again
+            incrementalParser = new IncrementalDepositParser(xmlFile);
+            refreshedDB = new IndexedDepositsDB();
+        }
+
+        try {
+            List<DepositDelta> deltas = incrementalParser.refresh();
+
+            refreshedDB.apply(deltas);
+            LOGGER.debug("Refreshed " + deltas.size() + " deposits.");
+        } catch (DepositParserException e) {
+            LOGGER.error(e);
+            return false;
+        }
+
+        depositsDB = refreshedDB;
+        return true;
+    }
+
+    /**
+     * Create a parser of the given type for an XML file.
+     * @param parserType type of parser to be used (SAX, DOM, StAX,
+     * parallel StAX, StAX cursor or scanner).
+     * @param xmlFile an XML file
+     * @return the parser
+     */
+    static AbstractDepositParser createParser(byte parserType, File xmlFile) {
         switch (parserType) {
         case SAX:
-            depositsDB = new DepositSAXParser(xmlFile).parse();
-            break;
+            return new DepositSAXParser(xmlFile);
         case DOM:
-            depositsDB = new DepositDOMParser(xmlFile).parse();
-            break;
+            return new DepositDOMParser(xmlFile);
         case STAX:
-            depositsDB = new DepositStAXParser(xmlFile).parse();
-            break;
+            return new DepositStAXParser(xmlFile);
+        case PARALLEL:
+            return new DepositParallelParser(xmlFile);
+        case STAX_CURSOR:
+            return new DepositStAXCursorParser(xmlFile);
+        case SCANNER:
+            return new DepositScannerParser(xmlFile);
         default:
             throw new IllegalArgumentException(
                     "Invalid parser choice parameter");
@@ -196,24 +430,51 @@ public class DepositProcessor {
             return;
         }
 
+        DepositSorter.sort(depositsDB, sortingKey(how));
+    }
+
+    /**
+     * Sort deposits contained in the {@code DepositsDB} object using all
+     * processors. This is faster than {@link #sortDeposits(byte)} for large
+     * lists of deposits.
+     * @param how sorting key (depositor's name, amount on account, etc.)
+     */
+    public void parallelSortDeposits(byte how) {
+        if (depositsDB == null) {
+            System.out.println("Could not sort: no deposits loaded.");
+            return;
+        }
+
+        DepositSorter.parallelSort(depositsDB, sortingKey(how));
+    }
+
+    /**
+     * Sort deposits contained in the {@code DepositsDB} object in the given
+     * order, e.g. by type, then by amount descending.
+     * @param order an order of deposits
+     */
+    public void sortDeposits(DepositOrder order) {
+        if (depositsDB == null) {
+            System.out.println("Could not sort: no deposits loaded.");
+            return;
+        }
+
+        order.sort(depositsDB);
+    }
+
+    /**
+     * Get the sorting key for a sorting option.
+     * @param how sorting option (depositor's name, amount on account, etc.)
+     * @return the sorting key
+     */
+    private static DepositSorter.Key sortingKey(byte how) {
         switch (how) {
         case DEPOSITOR:
-            Collections.sort(depositsDB.getDeposits(),
-                             (Deposit a, Deposit b) 
-                             -> a.getDepositor().compareTo(b.getDepositor()));
-            break;
+            return DepositSorter.Key.DEPOSITOR;
         case AMOUNT:
-            Collections.sort(depositsDB.getDeposits(),
-                             (Deposit a, Deposit b) 
-                             -> a.getAmountOnDeposit()
-                             .compareTo(b.getAmountOnDeposit()));
-            break;
+            return DepositSorter.Key.AMOUNT;
         case TIME:
-            Collections.sort(depositsDB.getDeposits(),
-                             (Deposit a, Deposit b) 
-                             -> Long.compare(a.getTimeConstraint(), 
-                        	     b.getTimeConstraint()));
-            break;
+            return DepositSorter.Key.TIME;
         default:
             throw new IllegalArgumentException(
                     "Invalid sorting choice parameter");
@@ -224,29 +485,153 @@ public class DepositProcessor {
      * Transform the XML file to an HTML file using XSL.
      */
     public void generateHTML() {
+        generateHTML("xml/deposits.html");
+    }
+
+    /**
+     * Transform the XML file to the given HTML file using XSL.
+     * @param pathToHtml path to an output HTML file.
+     */
+    public void generateHTML(String pathToHtml) {
         if (stylesheetFile == null) {
             LOGGER.error("Could not output: no stylesheet loaded.");
             return;
         }
 
-        File output = new File("xml/deposits.html");
+        transformHTML(pathToHtml);
+    }
+
+    /**
+     * Write deposits to the given HTML file in the layout of deposits.xsl
+     * without a stylesheet. Loaded deposits are written in their current
+     * order; otherwise deposits are streamed from the XML file.
+     * @param pathToHtml path to an output HTML file.
+     */
+    public void writeHTMLReport(String pathToHtml) {
+        writeReport(pathToHtml, DepositReportWriter.Format.HTML);
+    }
+
+    /**
+     * Write deposits to the given CSV file. Loaded deposits are written in
+     * their current order; otherwise deposits are streamed from the XML
+     * file.
+     * @param pathToCsv path to an output CSV file.
+     */
+    public void writeCSVReport(String pathToCsv) {
+        writeReport(pathToCsv, DepositReportWriter.Format.CSV);
+    }
+
+    /**
+     * Transform the XML file to the given HTML file using XSL.
+     * @param pathToHtml path to an output HTML file.
+     */
+    private void transformHTML(String pathToHtml) {
+        File output = new File(pathToHtml);
         StreamSource xmlSource = new StreamSource(xmlFile);
-        StreamSource xslSource = new StreamSource(stylesheetFile);
-        TransformerFactory tf = TransformerFactory.newInstance();
-        
-        tf.setAttribute("indent-number", 4);
 
-        try {
-            Transformer t = tf.newTransformer(xslSource);
-            
-            // using just file doesn't produce indents in HTML
-	    Result result = new StreamResult(new OutputStreamWriter(
-		    new FileOutputStream(output), "UTF-8"));
+        // using just file doesn't produce indents in HTML
+        try (Writer writer = new OutputStreamWriter(
+                new FileOutputStream(output), "UTF-8")) {
+            Transformer t = STYLESHEETS.get(stylesheetFile).newTransformer();
+	    Result result = new StreamResult(writer);
             
             t.transform(xmlSource, result);
-        } catch (TransformerException | UnsupportedEncodingException 
-        	| FileNotFoundException e) {
+        } catch (TransformerException | IOException e) {
 	    LOGGER.error(e);
 	}
     }
+
+    /**
+     * Write loaded deposits, or deposits streamed from the XML file, to a
+     * report.
+     * @param path path to an output file.
+     * @param format the report format
+     */
+    private void writeReport(String path, DepositReportWriter.Format format) {
+        if ((depositsDB == null) && (xmlFile == null)) {
+            LOGGER.error("Could not output: no deposits loaded.");
+            return;
+        }
+
+        try (DepositReportWriter writer =
+                new DepositReportWriter(Paths.get(path), format)) {
+            if (depositsDB != null) {
+                depositsDB.getDeposits().forEach(writer);
+            } else {
+                createParser(STAX_CURSOR, xmlFile).parse(writer);
+            }
+        } catch (IOException | UncheckedIOException
+                | DepositParserException e) {
+            LOGGER.error(e);
+        }
+    }
+
+    /**
+     * Compile an XSD schema.
+     * @param file the schema file
+     * @param dependencies a consumer of imported and included files
+     * @return the schema
+     * @throws SAXException if the schema could not be compiled
+     */
+    private static Schema compileSchema(File file,
+                                        Consumer<File> dependencies)
+            throws SAXException {
+        SchemaFactory sf = SchemaFactory.newInstance(
+                XMLConstants.W3C_XML_SCHEMA_NS_URI);
+
+        // record the files to be read and let the factory read them
+        sf.setResourceResolver((type, namespaceURI, publicId, systemId,
+                baseURI) -> {
+            addDependency(dependencies, baseURI, systemId);
+            return null;
+        });
+
+        return sf.newSchema(file);
+    }
+
+    /**
+     * Compile an XSL stylesheet.
+     * @param file the stylesheet file
+     * @param dependencies a consumer of imported and included files
+     * @return the compiled stylesheet
+     * @throws TransformerConfigurationException if the stylesheet could not
+     * be compiled
+     */
+    private static Templates compileStylesheet(File file,
+                                               Consumer<File> dependencies)
+            throws TransformerConfigurationException {
+        TransformerFactory tf = TransformerFactory.newInstance();
+
+        tf.setAttribute("indent-number", 4);
+        tf.setURIResolver((href, base) -> {
+            addDependency(dependencies, base, href);
+            return null;
+        });
+
+        return tf.newTemplates(new StreamSource(file));
+    }
+
+    /**
+     * Pass a file referred to from a schema or a stylesheet to
+     * dependencies.
+     * @param dependencies the dependencies
+     * @param base the base URI of the referring file
+     * @param reference the reference
+     */
+    private static void addDependency(Consumer<File> dependencies,
+                                      String base, String reference) {
+        if ((base == null) || (reference == null)) {
+            return;
+        }
+
+        try {
+            URI uri = new URI(base).resolve(reference);
+
+            if ("file".equals(uri.getScheme())) {
+                dependencies.accept(new File(uri));
+            }
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            LOGGER.warn("Could not track changes of " + reference, e);
+        }
+    }
 }
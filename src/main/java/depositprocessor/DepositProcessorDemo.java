@@ -14,17 +14,17 @@ public class DepositProcessorDemo {
         dp.setStylesheet("xml/xsl/deposits.xsl");
         dp.open("xml/deposits.xml");
 
-        if (!dp.validate()) {
+        if (!dp.validateAndReadDeposits()) {
             System.out.println("XML validation failed");
             return;
         }
 
         System.out.println("XML validation passed");
-        dp.readDeposits(DepositProcessor.STAX);
         System.out.println("Sorted by depositor name: \n");
         dp.sortDeposits(DepositProcessor.DEPOSITOR);
         dp.printDeposits();
 
         dp.generateHTML();
+        dp.writeHTMLReport("xml/deposits-sorted.html");
     }
 }
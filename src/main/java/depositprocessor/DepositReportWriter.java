@@ -0,0 +1,310 @@
+package depositprocessor;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+import deposit.Deposit;
+
+/**
+ * A writer of deposits reports that renders deposits one by one as they
+ * are passed to it, so it can be given to a streaming parser or a sorted
+ * {@code DepositsDB}. Only the current deposit is kept in memory.
+ * <p>
+ * The HTML report has the same layout and number formatting as the one
+ * produced by {@code deposits.xsl}. The CSV report has the same columns with
+ * plain numbers. Reports are written in UTF-8.
+ */
+public class DepositReportWriter implements Consumer<Deposit>, Closeable {
+
+    /**
+     * A report format.
+     */
+    public enum Format {
+
+        /** An HTML table. */
+        HTML,
+
+        /** Comma-separated values with a header line. */
+        CSV
+    }
+
+    /** The size of the character buffer. */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** The column headers. */
+    private static final String[] HEADERS = {"id", "Depositor", "Account Id",
+        "Type", "Bank", "Country", "Amount on Deposit", "Interest",
+        "Time Constraint"};
+
+    /** The HTML report before the rows. */
+    private static final String HTML_HEADER = "<!DOCTYPE html>"
+            + "<html xmlns:bank=\"www.example.org/xmlns/bank\""
+            + " xmlns:fin=\"www.example.org/xmlns/financial\">\n"
+            + "    <head>\n"
+            + "        <META http-equiv=\"Content-Type\""
+            + " content=\"text/html; charset=UTF-8\">\n"
+            + "        <title>Deposits</title>\n"
+            + "        <link rel=\"stylesheet\" href=\"css/style.css\">\n"
+            + "    </head>\n"
+            + "    <body>\n"
+            + "        <h1>Deposits</h1>\n"
+            + "        <table>\n"
+            + "            <tr>\n"
+            + "                ";
+
+    /** The HTML report after the rows. */
+    private static final String HTML_FOOTER = "        </table>\n"
+            + "    </body>\n"
+            + "</html>\n";
+
+    /** The report format. */
+    private final Format format;
+
+    /** The output. */
+    private final Writer out;
+
+    /** The amount format (like {@code format-number} in the stylesheet). */
+    private final DecimalFormat amountFormat = new DecimalFormat("##,###.00",
+            DecimalFormatSymbols.getInstance(Locale.US));
+
+    /** The interest format. */
+    private final DecimalFormat interestFormat = new DecimalFormat("###",
+            DecimalFormatSymbols.getInstance(Locale.US));
+
+    /**
+     * Instantiates a new report writer that writes a report to a file.
+     * @param path the report file
+     * @param format the report format
+     * @throws IOException if the file could not be opened or written
+     */
+    public DepositReportWriter(Path path, Format format) throws IOException {
+        this(FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE), format);
+    }
+
+    /**
+     * Instantiates a new report writer that writes a report to a channel.
+     * The channel is closed when the writer is closed.
+     * @param channel the channel
+     * @param format the report format
+     * @throws IOException if the report could not be written
+     */
+    public DepositReportWriter(WritableByteChannel channel, Format format)
+            throws IOException {
+        this.format = format;
+        this.out = new BufferedWriter(Channels.newWriter(channel,
+                StandardCharsets.UTF_8.newEncoder(), -1), BUFFER_SIZE);
+
+        try {
+            writeHeader();
+        } catch (IOException e) {
+            out.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Write a deposit to the report.
+     * @param d the deposit
+     * @throws UncheckedIOException if the report could not be written
+     */
+    @Override
+    public void accept(Deposit d) {
+        try {
+            if (format == Format.HTML) {
+                writeHtmlRow(d);
+            } else {
+                writeCsvRow(d);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Finish the report and close the output.
+     * @throws IOException if the report could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (format == Format.HTML) {
+                out.write(HTML_FOOTER);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Write the report header.
+     * @throws IOException if the report could not be written
+     */
+    private void writeHeader() throws IOException {
+        if (format == Format.HTML) {
+            out.write(HTML_HEADER);
+
+            for (String header : HEADERS) {
+                out.write("<th>");
+                out.write(header);
+                out.write("</th>");
+            }
+
+            out.write("\n            </tr>\n");
+        } else {
+            for (int i = 0; i < HEADERS.length; i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+
+                out.write(HEADERS[i]);
+            }
+
+            out.write("\r\n");
+        }
+    }
+
+    /**
+     * Write a deposit as an HTML table row.
+     * @param d the deposit
+     * @throws IOException if the report could not be written
+     */
+    private void writeHtmlRow(Deposit d) throws IOException {
+        out.write("            <tr>\n                ");
+        writeHtmlCell("col-id", d.getId());
+        writeHtmlCell("col-depositor", d.getDepositor());
+        writeHtmlCell("col-account-id", Integer.toString(d.getAccountId()));
+        writeHtmlCell("col-type",
+                (d.getType() == null) ? null : d.getType().value());
+        writeHtmlCell("col-bank", d.getName());
+        writeHtmlCell("col-country",
+                (d.getCountry() == null) ? null : d.getCountry().value());
+        writeHtmlCell("col-amount",
+                formatNumber(amountFormat, d.getAmountOnDeposit()));
+        writeHtmlCell("col-interest",
+                formatNumber(interestFormat, d.getInterest()) + "%");
+        writeHtmlCell("col-time", Long.toString(d.getTimeConstraint()));
+        out.write("\n            </tr>\n");
+    }
+
+    /**
+     * Write an HTML table cell.
+     * @param cssClass the class of the cell
+     * @param text the text or null for an empty cell
+     * @throws IOException if the report could not be written
+     */
+    private void writeHtmlCell(String cssClass, String text)
+            throws IOException {
+        out.write("<td class=\"");
+        out.write(cssClass);
+        out.write("\">");
+
+        if (text != null) {
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+
+                switch (c) {
+                case '&':
+                    out.write("&amp;");
+                    break;
+                case '<':
+                    out.write("&lt;");
+                    break;
+                case '>':
+                    out.write("&gt;");
+                    break;
+                default:
+                    out.write(c);
+                }
+            }
+        }
+
+        out.write("</td>");
+    }
+
+    /**
+     * Write a deposit as a CSV line.
+     * @param d the deposit
+     * @throws IOException if the report could not be written
+     */
+    private void writeCsvRow(Deposit d) throws IOException {
+        writeCsvField(d.getId());
+        out.write(',');
+        writeCsvField(d.getDepositor());
+        out.write(',');
+        out.write(Integer.toString(d.getAccountId()));
+        out.write(',');
+        writeCsvField((d.getType() == null) ? null : d.getType().value());
+        out.write(',');
+        writeCsvField(d.getName());
+        out.write(',');
+        writeCsvField((d.getCountry() == null) ? null
+                : d.getCountry().value());
+        out.write(',');
+        writeCsvField((d.getAmountOnDeposit() == null) ? null
+                : d.getAmountOnDeposit().toPlainString());
+        out.write(',');
+        writeCsvField((d.getInterest() == null) ? null
+                : d.getInterest().toPlainString());
+        out.write(',');
+        out.write(Long.toString(d.getTimeConstraint()));
+        out.write("\r\n");
+    }
+
+    /**
+     * Write a CSV field, quoting it if needed.
+     * @param text the text or null for an empty field
+     * @throws IOException if the report could not be written
+     */
+    private void writeCsvField(String text) throws IOException {
+        if (text == null) {
+            return;
+        }
+
+        boolean quoted = false;
+
+        for (int i = 0; (i < text.length()) && !quoted; i++) {
+            char c = text.charAt(i);
+
+            quoted = (c == ',') || (c == '"') || (c == '\n') || (c == '\r');
+        }
+
+        if (!quoted) {
+            out.write(text);
+            return;
+        }
+
+        out.write('"');
+        out.write(text.replace("\"", "\"\""));
+        out.write('"');
+    }
+
+    /**
+     * Format a number like {@code format-number} of XSLT. XPath numbers are
+     * doubles, so the number is rounded as a double (e.g. {@code 1.015} is
+     * formatted as {@code 1.01}).
+     * @param numberFormat the format
+     * @param value the number or null
+     * @return the formatted number or {@code NaN} for null
+     */
+    private static String formatNumber(DecimalFormat numberFormat,
+                                       BigDecimal value) {
+        return (value == null) ? "NaN"
+                : numberFormat.format(value.doubleValue());
+    }
+}
@@ -0,0 +1,953 @@
+package depositstore;
+
+import java.math.BigDecimal;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+import deposit.Deposit;
+import deposit.DepositsDB;
+import deposit.ISO3166CountryCode;
+import deposit.Type;
+
+/**
+ * A {@code DepositsDB} that keeps deposits in primitive columns instead of
+ * {@code Deposit} objects. Amounts and interests are stored as {@code long}
+ * values scaled to a fixed number of fraction digits, types and countries as
+ * ordinals and bank names as codes of a dictionary. This takes several times
+ * less memory than a list of deposits. An amount or an interest with more
+ * fraction digits or out of the range of a scaled {@code long} is kept as a
+ * {@code BigDecimal} in a side column, so every value is returned as it has
+ * been added.
+ * <p>
+ * Deposits added to the list (e.g. by a parser) are copied into the columns.
+ * Elements returned by the list are views of a row: reading them reads the
+ * columns and writing them writes the columns. A view refers to a row
+ * position, so it shows another deposit after deposits have been removed or
+ * sorted. {@code toArray} returns detached copies. The store is not
+ * thread-safe.
+ */
+public class ColumnarDepositsDB extends DepositsDB {
+
+    /** The default number of fraction digits of amounts and interests. */
+    public static final int DEFAULT_SCALE = 2;
+
+    /** The initial capacity of the columns. */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** The types by ordinal. */
+    private static final Type[] TYPES = Type.values();
+
+    /** The countries by ordinal. */
+    private static final ISO3166CountryCode[] COUNTRIES =
+            ISO3166CountryCode.values();
+
+    /** The scale of a missing amount or interest. */
+    private static final byte NULL_SCALE = -1;
+
+    /** The scale of an amount or an interest kept in a decimal column. */
+    private static final byte DECIMAL_SCALE = -2;
+
+    /** The number of fraction digits of stored amounts. */
+    private final int amountScale;
+
+    /** The number of fraction digits of stored interests. */
+    private final int interestScale;
+
+    /** The number of rows. */
+    private int size;
+
+    /** The ids. */
+    private String[] ids;
+
+    /** The depositors. */
+    private String[] depositors;
+
+    /** The account ids. */
+    private int[] accountIds;
+
+    /** The scaled amounts on deposit. */
+    private long[] amounts;
+
+    /** The scales of the amounts as they have been added. */
+    private byte[] amountScales;
+
+    /** The amounts that are not scaled or null if there are none. */
+    private BigDecimal[] amountDecimals;
+
+    /** The scaled interests. */
+    private long[] interests;
+
+    /** The scales of the interests as they have been added. */
+    private byte[] interestScales;
+
+    /** The interests that are not scaled or null if there are none. */
+    private BigDecimal[] interestDecimals;
+
+    /** The time constraints. */
+    private long[] timeConstraints;
+
+    /** The type ordinals plus one (zero for no type). */
+    private byte[] types;
+
+    /** The country ordinals plus one (zero for no country). */
+    private short[] countries;
+
+    /** The bank name codes (-1 for no name). */
+    private int[] names;
+
+    /** The bank names by code. */
+    private final List<String> nameDictionary = new ArrayList<>();
+
+    /** The bank name codes by name. */
+    private final Map<String, Integer> nameCodes = new HashMap<>();
+
+    /**
+     * Instantiates a new empty columnar deposits db that stores amounts and
+     * interests with two fraction digits.
+     */
+    public ColumnarDepositsDB() {
+        this(DEFAULT_SCALE, DEFAULT_SCALE, INITIAL_CAPACITY);
+    }
+
+    /**
+     * Instantiates a new empty columnar deposits db.
+     * @param amountScale the number of fraction digits of amounts
+     * @param interestScale the number of fraction digits of interests
+     * @param capacity the initial number of rows
+     */
+    public ColumnarDepositsDB(int amountScale, int interestScale,
+                              int capacity) {
+        if ((amountScale < 0) || (interestScale < 0)) {
+            throw new IllegalArgumentException("Negative scale");
+        }
+
+        this.amountScale = amountScale;
+        this.interestScale = interestScale;
+        allocate(Math.max(capacity, 1));
+        deposit = new ColumnList();
+    }
+
+    /**
+     * Gets the number of fraction digits of stored amounts.
+     * @return the amount scale
+     */
+    public int getAmountScale() {
+        return amountScale;
+    }
+
+    /**
+     * Gets the number of fraction digits of stored interests.
+     * @return the interest scale
+     */
+    public int getInterestScale() {
+        return interestScale;
+    }
+
+    /**
+     * Gets the number of rows.
+     * @return the number of deposits
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the id of a row.
+     * @param row the row
+     * @return the id
+     */
+    public String getId(int row) {
+        return ids[check(row)];
+    }
+
+    /**
+     * Gets the depositor of a row.
+     * @param row the row
+     * @return the depositor
+     */
+    public String getDepositor(int row) {
+        return depositors[check(row)];
+    }
+
+    /**
+     * Gets the account id of a row.
+     * @param row the row
+     * @return the account id
+     */
+    public int getAccountId(int row) {
+        return accountIds[check(row)];
+    }
+
+    /**
+     * Gets the amount on deposit of a row scaled by
+     * {@link #getAmountScale()} (e.g. in cents).
+     * @param row the row
+     * @return the scaled amount or zero if the amount is missing
+     * @throws ArithmeticException if the amount has more fraction digits
+     * than the scale or the scaled amount does not fit into a long
+     */
+    public long getScaledAmountOnDeposit(int row) {
+        return toScaled(amounts, amountScales, amountDecimals, check(row),
+                amountScale);
+    }
+
+    /**
+     * Gets the amount on deposit of a row.
+     * @param row the row
+     * @return the amount
+     */
+    public BigDecimal getAmountOnDeposit(int row) {
+        return toDecimal(amounts, amountScales, amountDecimals, check(row),
+                amountScale);
+    }
+
+    /**
+     * Gets the interest of a row scaled by {@link #getInterestScale()}.
+     * @param row the row
+     * @return the scaled interest or zero if the interest is missing
+     * @throws ArithmeticException if the interest has more fraction digits
+     * than the scale or the scaled interest does not fit into a long
+     */
+    public long getScaledInterest(int row) {
+        return toScaled(interests, interestScales, interestDecimals,
+                check(row), interestScale);
+    }
+
+    /**
+     * Gets the interest of a row.
+     * @param row the row
+     * @return the interest
+     */
+    public BigDecimal getInterest(int row) {
+        return toDecimal(interests, interestScales, interestDecimals,
+                check(row), interestScale);
+    }
+
+    /**
+     * Gets the time constraint of a row.
+     * @param row the row
+     * @return the time constraint
+     */
+    public long getTimeConstraint(int row) {
+        return timeConstraints[check(row)];
+    }
+
+    /**
+     * Gets the type of a row.
+     * @param row the row
+     * @return the type or null
+     */
+    public Type getType(int row) {
+        int ordinal = types[check(row)];
+
+        return (ordinal == 0) ? null : TYPES[ordinal - 1];
+    }
+
+    /**
+     * Gets the country of a row.
+     * @param row the row
+     * @return the country or null
+     */
+    public ISO3166CountryCode getCountry(int row) {
+        int ordinal = countries[check(row)];
+
+        return (ordinal == 0) ? null : COUNTRIES[ordinal - 1];
+    }
+
+    /**
+     * Gets the bank name of a row.
+     * @param row the row
+     * @return the bank name or null
+     */
+    public String getName(int row) {
+        int code = names[check(row)];
+
+        return (code < 0) ? null : nameDictionary.get(code);
+    }
+
+    /**
+     * Create a {@code Deposit} object with the values of a row.
+     * @param row the row
+     * @return a new deposit
+     */
+    public Deposit toDeposit(int row) {
+        Deposit d = new Deposit();
+
+        d.setId(getId(row));
+        d.setDepositor(getDepositor(row));
+        d.setAccountId(getAccountId(row));
+        d.setAmountOnDeposit(getAmountOnDeposit(row));
+        d.setInterest(getInterest(row));
+        d.setTimeConstraint(getTimeConstraint(row));
+        d.setType(getType(row));
+        d.setCountry(getCountry(row));
+        d.setName(getName(row));
+        return d;
+    }
+
+    /**
+     * Reduce the capacity of the columns to the number of rows.
+     */
+    public void trimToSize() {
+        resize(Math.max(size, 1));
+    }
+
+    /**
+     * Write the values of a deposit to a row.
+     * @param row the row
+     * @param d the deposit
+     */
+    private void write(int row, Deposit d) {
+        ids[row] = d.getId();
+        depositors[row] = d.getDepositor();
+        accountIds[row] = d.getAccountId();
+        writeAmount(row, d.getAmountOnDeposit());
+        writeInterest(row, d.getInterest());
+        timeConstraints[row] = d.getTimeConstraint();
+        writeType(row, d.getType());
+        writeCountry(row, d.getCountry());
+        writeName(row, d.getName());
+    }
+
+    /**
+     * Write an amount to a row.
+     * @param row the row
+     * @param amount the amount or null
+     */
+    private void writeAmount(int row, BigDecimal amount) {
+        amountDecimals = writeDecimal(amounts, amountScales, amountDecimals,
+                row, amount, amountScale);
+    }
+
+    /**
+     * Write an interest to a row.
+     * @param row the row
+     * @param interest the interest or null
+     */
+    private void writeInterest(int row, BigDecimal interest) {
+        interestDecimals = writeDecimal(interests, interestScales,
+                interestDecimals, row, interest, interestScale);
+    }
+
+    /**
+     * Write a type to a row.
+     * @param row the row
+     * @param type the type or null
+     */
+    private void writeType(int row, Type type) {
+        types[row] = (byte) ((type == null) ? 0 : type.ordinal() + 1);
+    }
+
+    /**
+     * Write a country to a row.
+     * @param row the row
+     * @param country the country or null
+     */
+    private void writeCountry(int row, ISO3166CountryCode country) {
+        countries[row] = (short) ((country == null) ? 0
+                : country.ordinal() + 1);
+    }
+
+    /**
+     * Write a bank name to a row, adding it to the dictionary if needed.
+     * @param row the row
+     * @param name the bank name or null
+     */
+    private void writeName(int row, String name) {
+        if (name == null) {
+            names[row] = -1;
+            return;
+        }
+
+        Integer code = nameCodes.get(name);
+
+        if (code == null) {
+            code = nameDictionary.size();
+            nameDictionary.add(name);
+            nameCodes.put(name, code);
+        }
+
+        names[row] = code;
+    }
+
+    /**
+     * Write a decimal to a row of a scaled column. A decimal that has more
+     * fraction digits than the column, does not fit into a long or has a
+     * scale that does not fit into a byte is written to the decimal column.
+     * @param scaled the scaled values
+     * @param scales the scales of the added values
+     * @param decimals the decimal column or null if it has not been needed
+     * @param row the row
+     * @param value the decimal or null
+     * @param scale the scale of the column
+     * @return the decimal column or null if it is still not needed
+     */
+    private BigDecimal[] writeDecimal(long[] scaled, byte[] scales,
+                                      BigDecimal[] decimals, int row,
+                                      BigDecimal value, int scale) {
+        if (decimals != null) {
+            decimals[row] = null;
+        }
+
+        scaled[row] = 0;
+
+        if (value == null) {
+            scales[row] = NULL_SCALE;
+            return decimals;
+        }
+
+        if ((value.scale() >= 0) && (value.scale() <= Byte.MAX_VALUE)) {
+            try {
+                scaled[row] = value.setScale(scale).unscaledValue()
+                        .longValueExact();
+                scales[row] = (byte) value.scale();
+                return decimals;
+            } catch (ArithmeticException e) {
+                // the value does not fit, so it is kept as is
+            }
+        }
+
+        if (decimals == null) {
+            decimals = new BigDecimal[ids.length];
+        }
+
+        decimals[row] = value;
+        scales[row] = DECIMAL_SCALE;
+        return decimals;
+    }
+
+    /**
+     * Read a row of a scaled column as a decimal.
+     * @param scaled the scaled values
+     * @param scales the scales of the added values
+     * @param decimals the decimal column or null
+     * @param row the row
+     * @param scale the scale of the column
+     * @return the decimal or null
+     */
+    private static BigDecimal toDecimal(long[] scaled, byte[] scales,
+                                        BigDecimal[] decimals, int row,
+                                        int scale) {
+        switch (scales[row]) {
+        case NULL_SCALE:
+            return null;
+        case DECIMAL_SCALE:
+            return decimals[row];
+        default:
+            return BigDecimal.valueOf(scaled[row], scale)
+                    .setScale(scales[row]);
+        }
+    }
+
+    /**
+     * Read a row of a scaled column as a scaled long.
+     * @param scaled the scaled values
+     * @param scales the scales of the added values
+     * @param decimals the decimal column or null
+     * @param row the row
+     * @param scale the scale of the column
+     * @return the scaled value or zero if the value is missing
+     * @throws ArithmeticException if the value can not be scaled to a long
+     */
+    private static long toScaled(long[] scaled, byte[] scales,
+                                 BigDecimal[] decimals, int row, int scale) {
+        if (scales[row] != DECIMAL_SCALE) {
+            return scaled[row];
+        }
+
+        return decimals[row].setScale(scale).unscaledValue()
+                .longValueExact();
+    }
+
+    /**
+     * Checks whether all amounts on deposit are present and stored as
+     * scaled longs, so that they can be compared by their scaled values.
+     * @return true if all amounts are scaled
+     */
+    boolean hasScaledAmounts() {
+        for (int i = 0; i < size; i++) {
+            if (amountScales[i] < 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Check that a row exists.
+     * @param row the row
+     * @return the row
+     * @throws IndexOutOfBoundsException if there is no such row
+     */
+    private int check(int row) {
+        if ((row < 0) || (row >= size)) {
+            throw new IndexOutOfBoundsException("Row: " + row
+                    + ", size: " + size);
+        }
+
+        return row;
+    }
+
+    /**
+     * Allocate empty columns.
+     * @param capacity the number of rows
+     */
+    private void allocate(int capacity) {
+        ids = new String[capacity];
+        depositors = new String[capacity];
+        accountIds = new int[capacity];
+        amounts = new long[capacity];
+        amountScales = new byte[capacity];
+        amountDecimals = null;
+        interests = new long[capacity];
+        interestScales = new byte[capacity];
+        interestDecimals = null;
+        timeConstraints = new long[capacity];
+        types = new byte[capacity];
+        countries = new short[capacity];
+        names = new int[capacity];
+    }
+
+    /**
+     * Change the capacity of the columns.
+     * @param capacity the number of rows
+     */
+    private void resize(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        depositors = Arrays.copyOf(depositors, capacity);
+        accountIds = Arrays.copyOf(accountIds, capacity);
+        amounts = Arrays.copyOf(amounts, capacity);
+        amountScales = Arrays.copyOf(amountScales, capacity);
+        amountDecimals = copyOf(amountDecimals, capacity);
+        interests = Arrays.copyOf(interests, capacity);
+        interestScales = Arrays.copyOf(interestScales, capacity);
+        interestDecimals = copyOf(interestDecimals, capacity);
+        timeConstraints = Arrays.copyOf(timeConstraints, capacity);
+        types = Arrays.copyOf(types, capacity);
+        countries = Arrays.copyOf(countries, capacity);
+        names = Arrays.copyOf(names, capacity);
+    }
+
+    /**
+     * Move rows within the columns.
+     * @param from the first row to move
+     * @param to the new position of the first row
+     * @param count the number of rows
+     */
+    private void move(int from, int to, int count) {
+        System.arraycopy(ids, from, ids, to, count);
+        System.arraycopy(depositors, from, depositors, to, count);
+        System.arraycopy(accountIds, from, accountIds, to, count);
+        System.arraycopy(amounts, from, amounts, to, count);
+        System.arraycopy(amountScales, from, amountScales, to, count);
+        move(amountDecimals, from, to, count);
+        System.arraycopy(interests, from, interests, to, count);
+        System.arraycopy(interestScales, from, interestScales, to, count);
+        move(interestDecimals, from, to, count);
+        System.arraycopy(timeConstraints, from, timeConstraints, to, count);
+        System.arraycopy(types, from, types, to, count);
+        System.arraycopy(countries, from, countries, to, count);
+        System.arraycopy(names, from, names, to, count);
+    }
+
+    /**
+     * Clear rows of the decimal columns, so that the decimals of removed
+     * rows can be collected.
+     * @param from the first row
+     * @param to the end of the rows (exclusive)
+     */
+    private void clearDecimals(int from, int to) {
+        if (amountDecimals != null) {
+            Arrays.fill(amountDecimals, from, to, null);
+        }
+
+        if (interestDecimals != null) {
+            Arrays.fill(interestDecimals, from, to, null);
+        }
+    }
+
+    /**
+     * Copy a decimal column with another capacity.
+     * @param decimals the decimal column or null
+     * @param capacity the number of rows
+     * @return the copy or null if there is no column
+     */
+    private static BigDecimal[] copyOf(BigDecimal[] decimals, int capacity) {
+        return (decimals == null) ? null : Arrays.copyOf(decimals, capacity);
+    }
+
+    /**
+     * Move rows within a decimal column.
+     * @param decimals the decimal column or null
+     * @param from the first row to move
+     * @param to the new position of the first row
+     * @param count the number of rows
+     */
+    private static void move(BigDecimal[] decimals, int from, int to,
+                             int count) {
+        if (decimals != null) {
+            System.arraycopy(decimals, from, decimals, to, count);
+        }
+    }
+
+    /**
+     * Reorder the rows.
+     * @param order the old row of every new row
+     */
+    void permute(int[] order) {
+        ((ColumnList) deposit).permute(order);
+    }
+
+    /**
+     * Reorder the rows in the columns.
+     * @param order the old row of every new row
+     */
+    private void permuteColumns(int[] order) {
+        String[] oldIds = ids;
+        String[] oldDepositors = depositors;
+        int[] oldAccountIds = accountIds;
+        long[] oldAmounts = amounts;
+        byte[] oldAmountScales = amountScales;
+        BigDecimal[] oldAmountDecimals = amountDecimals;
+        long[] oldInterests = interests;
+        byte[] oldInterestScales = interestScales;
+        BigDecimal[] oldInterestDecimals = interestDecimals;
+        long[] oldTimeConstraints = timeConstraints;
+        byte[] oldTypes = types;
+        short[] oldCountries = countries;
+        int[] oldNames = names;
+
+        allocate(oldIds.length);
+        amountDecimals = copyOf(oldAmountDecimals, oldIds.length);
+        interestDecimals = copyOf(oldInterestDecimals, oldIds.length);
+
+        for (int i = 0; i < size; i++) {
+            int j = order[i];
+
+            ids[i] = oldIds[j];
+            depositors[i] = oldDepositors[j];
+            accountIds[i] = oldAccountIds[j];
+            amounts[i] = oldAmounts[j];
+            amountScales[i] = oldAmountScales[j];
+            interests[i] = oldInterests[j];
+            interestScales[i] = oldInterestScales[j];
+
+            if (oldAmountDecimals != null) {
+                amountDecimals[i] = oldAmountDecimals[j];
+            }
+
+            if (oldInterestDecimals != null) {
+                interestDecimals[i] = oldInterestDecimals[j];
+            }
+
+            timeConstraints[i] = oldTimeConstraints[j];
+            types[i] = oldTypes[j];
+            countries[i] = oldCountries[j];
+            names[i] = oldNames[j];
+        }
+    }
+
+    /**
+     * The list of row views.
+     */
+    private final class ColumnList extends AbstractList<Deposit>
+            implements RandomAccess {
+
+        /* (non-Javadoc)
+         * @see java.util.AbstractList#get(int)
+         */
+        @Override
+        public Deposit get(int index) {
+            return new DepositRow(check(index));
+        }
+
+        /* (non-Javadoc)
+         * @see java.util.AbstractCollection#size()
+         */
+        @Override
+        public int size() {
+            return size;
+        }
+
+        /* (non-Javadoc)
+         * @see java.util.AbstractList#add(int, java.lang.Object)
+         */
+        @Override
+        public void add(int index, Deposit d) {
+            if ((index < 0) || (index > size)) {
+                throw new IndexOutOfBoundsException("Index: " + index
+                        + ", size: " + size);
+            }
+
+            if (size == ids.length) {
+                resize(size + (size >> 1) + 1);
+            }
+
+            move(index, index + 1, size - index);
+            size++;
+            write(index, d);
+            modCount++;
+        }
+
+        /* (non-Javadoc)
+         * @see java.util.AbstractList#set(int, java.lang.Object)
+         */
+        @Override
+        public Deposit set(int index, Deposit d) {
+            Deposit old = toDeposit(index);
+
+            write(index, d);
+            return old;
+        }
+
+        /* (non-Javadoc)
+         * @see java.util.AbstractList#remove(int)
+         */
+        @Override
+        public Deposit remove(int index) {
+            Deposit old = toDeposit(index);
+
+            move(index + 1, index, size - index - 1);
+            size--;
+            ids[size] = null;
+            depositors[size] = null;
+            clearDecimals(size, size + 1);
+            modCount++;
+            return old;
+        }
+
+        /* (non-Javadoc)
+         * @see java.util.AbstractList#clear()
+         */
+        @Override
+        public void clear() {
+            Arrays.fill(ids, 0, size, null);
+            Arrays.fill(depositors, 0, size, null);
+            clearDecimals(0, size);
+            size = 0;
+            modCount++;
+        }
+
+        /* (non-Javadoc)
+         * @see java.util.AbstractCollection#toArray()
+         */
+        @Override
+        public Object[] toArray() {
+            Object[] copies = new Object[size];
+
+            for (int i = 0; i < size; i++) {
+                copies[i] = toDeposit(i);
+            }
+
+            return copies;
+        }
+
+        /* (non-Javadoc)
+         * @see java.util.List#sort(java.util.Comparator)
+         */
+        @Override
+        public void sort(Comparator<? super Deposit> c) {
+            // sorts views of the unchanged columns, then moves rows once
+            DepositRow[] rows = new DepositRow[size];
+
+            for (int i = 0; i < size; i++) {
+                rows[i] = new DepositRow(i);
+            }
+
+            Arrays.sort(rows, c);
+
+            int[] order = new int[size];
+
+            for (int i = 0; i < size; i++) {
+                order[i] = rows[i].row;
+            }
+
+            permute(order);
+        }
+
+        /**
+         * Reorder the rows.
+         * @param order the old row of every new row
+         */
+        void permute(int[] order) {
+            permuteColumns(order);
+            modCount++;
+        }
+    }
+
+    /**
+     * A view of a row as a deposit.
+     */
+    private final class DepositRow extends Deposit {
+
+        /** The row. */
+        private final int row;
+
+        /**
+         * Instantiates a new row view.
+         * @param row the row
+         */
+        DepositRow(int row) {
+            this.row = row;
+        }
+
+        /* (non-Javadoc)
+         * @see deposit.Deposit#getDepositor()
+         */
+        @Override
+        public String getDepositor() {
+            return ColumnarDepositsDB.this.getDepositor(row);
+        }
+
+        /* (non-Javadoc)
+         * @see deposit.Deposit#setDepositor(java.lang.String)
+         */
+        @Override
+        public void setDepositor(String value) {
+            depositors[check(row)] = value;
+        }
+
+        /* (non-Javadoc)
+         * @see deposit.Deposit#getAccountId()
+         */
+        @Override
+        public int getAccountId() {
+            return ColumnarDepositsDB.this.getAccountId(row);
+        }
+
+        /* (non-Javadoc)
+         * @see deposit.Deposit#setAccountId(int)
+         */
+        @Override
+        public void setAccountId(int value) {
+            accountIds[check(row)] = value;
+        }
+
+        /* (non-Javadoc)
+         * @see deposit.Deposit#getAmountOnDeposit()
+         */
+        @Override
+        public BigDecimal getAmountOnDeposit() {
+            return ColumnarDepositsDB.this.getAmountOnDeposit(row);
+        }
+
+        /* (non-Javadoc)
+         * @see deposit.Deposit#setAmountOnDeposit(java.math.BigDecimal)
+         */
+        @Override
+        public void setAmountOnDeposit(BigDecimal value) {
+            writeAmount(check(row), value);
+        }
+
+        /* (non-Javadoc)
+         * @see deposit.Deposit#getInterest()
+         */
+        @Override
+        public BigDecimal getInterest() {
+            return ColumnarDepositsDB.this.getInterest(row);
+        }
+
+        /* (non-Javadoc)
+         * @see deposit.Deposit#setInterest(java.math.BigDecimal)
+         */
+        @Override
+        public void setInterest(BigDecimal value) {
+            writeInterest(check(row), value);
+        }
+
+        /* (non-Javadoc)
+         * @see deposit.Deposit#getTimeConstraint()
+         */
+        @Override
+        public long getTimeConstraint() {
+            return ColumnarDepositsDB.this.getTimeConstraint(row);
+        }
+
+        /* (non-Javadoc)
+         * @see deposit.Deposit#setTimeConstraint(long)
+         */
+        @Override
+        public void setTimeConstraint(long value) {
+            timeConstraints[check(row)] = value;
+        }
+
+        /* (non-Javadoc)
+         * @see deposit.Deposit#getId()
+         */
+        @Override
+        public String getId() {
+            return ColumnarDepositsDB.this.getId(row);
+        }
+
+        /* (non-Javadoc)
+         * @see deposit.Deposit#setId(java.lang.String)
+         */
+        @Override
+        public void setId(String value) {
+            ids[check(row)] = value;
+        }
+
+        /* (non-Javadoc)
+         * @see deposit.Deposit#getType()
+         */
+        @Override
+        public Type getType() {
+            return ColumnarDepositsDB.this.getType(row);
+        }
+
+        /* (non-Javadoc)
+         * @see deposit.Deposit#setType(deposit.Type)
+         */
+        @Override
+        public void setType(Type value) {
+            writeType(check(row), value);
+        }
+
+        /* (non-Javadoc)
+         * @see deposit.Deposit#getName()
+         */
+        @Override
+        public String getName() {
+            return ColumnarDepositsDB.this.getName(row);
+        }
+
+        /* (non-Javadoc)
+         * @see deposit.Deposit#setName(java.lang.String)
+         */
+        @Override
+        public void setName(String value) {
+            writeName(check(row), value);
+        }
+
+        /* (non-Javadoc)
+         * @see deposit.Deposit#getCountry()
+         */
+        @Override
+        public ISO3166CountryCode getCountry() {
+            return ColumnarDepositsDB.this.getCountry(row);
+        }
+
+        /* (non-Javadoc)
+         * @see deposit.Deposit#setCountry(deposit.ISO3166CountryCode)
+         */
+        @Override
+        public void setCountry(ISO3166CountryCode value) {
+            writeCountry(check(row), value);
+        }
+
+        /* (non-Javadoc)
+         * @see deposit.Deposit#toString()
+         */
+        @Override
+        public String toString() {
+            return toDeposit(row).toString();
+        }
+    }
+}
@@ -0,0 +1,530 @@
+package depositstore;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collector;
+
+import deposit.Deposit;
+import deposit.ISO3166CountryCode;
+import deposit.Type;
+import depositparser.DepositField;
+
+/**
+ * A consumer of deposits that sums amounts and interests and counts
+ * deposits in total and grouped by type, by country and by bank name. It
+ * can be passed to a streaming parser, so that the totals are computed
+ * without keeping the deposits; the parser only needs to read
+ * {@link #FIELDS}.
+ * <p>
+ * Sums are exact. Amounts and interests are added as {@code long} values
+ * scaled to a fixed number of fraction digits; a value with more fraction
+ * digits or a sum that does not fit into a {@code long} is added as a
+ * decimal instead. Groups of types and countries are arrays indexed by
+ * ordinal. A deposit without a type, a country or a bank name is only
+ * counted in the groups it has a key for and in the total.
+ * <p>
+ * An aggregator is not thread-safe. To aggregate concurrently, every
+ * thread (or file) gets an aggregator of its own, and the aggregators are
+ * merged (see {@link #merge(DepositAggregator)} and {@link #collector()}).
+ */
+public class DepositAggregator implements Consumer<Deposit> {
+
+    /** The default number of fraction digits of scaled sums. */
+    public static final int DEFAULT_SCALE = 2;
+
+    /** The fields that an aggregator reads. */
+    public static final Set<DepositField> FIELDS = Collections.unmodifiableSet(
+            EnumSet.of(DepositField.TYPE, DepositField.NAME,
+                    DepositField.COUNTRY, DepositField.AMOUNT_ON_DEPOSIT,
+                    DepositField.INTEREST));
+
+    /** The types by ordinal. */
+    private static final Type[] TYPES = Type.values();
+
+    /** The countries by ordinal. */
+    private static final ISO3166CountryCode[] COUNTRIES =
+            ISO3166CountryCode.values();
+
+    /** The powers of ten that fit into a long. */
+    private static final long[] POWERS_OF_TEN = new long[19];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = 10 * POWERS_OF_TEN[i - 1];
+        }
+    }
+
+    /** The number of fraction digits of scaled amounts. */
+    private final int amountScale;
+
+    /** The number of fraction digits of scaled interests. */
+    private final int interestScale;
+
+    /** The totals of all deposits. */
+    private final Totals total;
+
+    /** The totals by type ordinal (null for no deposits). */
+    private final Totals[] byType = new Totals[TYPES.length];
+
+    /** The totals by country ordinal (null for no deposits). */
+    private final Totals[] byCountry = new Totals[COUNTRIES.length];
+
+    /** The totals by bank name. */
+    private final Map<String, Totals> byName = new HashMap<>();
+
+    /**
+     * Instantiates a new aggregator that scales amounts and interests to
+     * two fraction digits.
+     */
+    public DepositAggregator() {
+        this(DEFAULT_SCALE, DEFAULT_SCALE);
+    }
+
+    /**
+     * Instantiates a new aggregator.
+     * @param amountScale the number of fraction digits of scaled amounts
+     * @param interestScale the number of fraction digits of scaled
+     * interests
+     * @throws IllegalArgumentException if a scale is negative or greater
+     * than 18
+     */
+    public DepositAggregator(int amountScale, int interestScale) {
+        if ((amountScale < 0) || (amountScale >= POWERS_OF_TEN.length)
+                || (interestScale < 0)
+                || (interestScale >= POWERS_OF_TEN.length)) {
+            throw new IllegalArgumentException("Invalid scale");
+        }
+
+        this.amountScale = amountScale;
+        this.interestScale = interestScale;
+        this.total = new Totals(this);
+    }
+
+    /**
+     * Creates a collector of deposits into an aggregator with the default
+     * scales, e.g. for parallel streams.
+     * @return the collector
+     */
+    public static Collector<Deposit, ?, DepositAggregator> collector() {
+        return Collector.of(DepositAggregator::new, DepositAggregator::accept,
+                DepositAggregator::merge,
+                Collector.Characteristics.IDENTITY_FINISH,
+                Collector.Characteristics.UNORDERED);
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.function.Consumer#accept(java.lang.Object)
+     */
+    @Override
+    public void accept(Deposit d) {
+        long amount = scaled(d.getAmountOnDeposit(), amountScale);
+        long interest = scaled(d.getInterest(), interestScale);
+
+        total.add(d, amount, interest);
+
+        if (d.getType() != null) {
+            group(byType, d.getType().ordinal()).add(d, amount, interest);
+        }
+
+        if (d.getCountry() != null) {
+            group(byCountry, d.getCountry().ordinal()).add(d, amount,
+                    interest);
+        }
+
+        if (d.getName() != null) {
+            Totals totals = byName.get(d.getName());
+
+            if (totals == null) {
+                totals = new Totals(this);
+                byName.put(d.getName(), totals);
+            }
+
+            totals.add(d, amount, interest);
+        }
+    }
+
+    /**
+     * Adds the totals of another aggregator to this one. The other
+     * aggregator is not changed.
+     * @param other an aggregator with the same scales
+     * @return this aggregator
+     * @throws IllegalArgumentException if the scales differ
+     */
+    public DepositAggregator merge(DepositAggregator other) {
+        if ((other.amountScale != amountScale)
+                || (other.interestScale != interestScale)) {
+            throw new IllegalArgumentException("Different scales");
+        }
+
+        total.merge(other.total);
+
+        for (int i = 0; i < byType.length; i++) {
+            if (other.byType[i] != null) {
+                group(byType, i).merge(other.byType[i]);
+            }
+        }
+
+        for (int i = 0; i < byCountry.length; i++) {
+            if (other.byCountry[i] != null) {
+                group(byCountry, i).merge(other.byCountry[i]);
+            }
+        }
+
+        for (Map.Entry<String, Totals> e : other.byName.entrySet()) {
+            byName.computeIfAbsent(e.getKey(), name -> new Totals(this))
+                    .merge(e.getValue());
+        }
+
+        return this;
+    }
+
+    /**
+     * Gets the number of fraction digits of scaled amounts.
+     * @return the amount scale
+     */
+    public int getAmountScale() {
+        return amountScale;
+    }
+
+    /**
+     * Gets the number of fraction digits of scaled interests.
+     * @return the interest scale
+     */
+    public int getInterestScale() {
+        return interestScale;
+    }
+
+    /**
+     * Gets the totals of all deposits.
+     * @return the totals
+     */
+    public Totals getTotal() {
+        return total;
+    }
+
+    /**
+     * Gets the totals by type.
+     * @return a new map of the types with deposits to their totals
+     */
+    public Map<Type, Totals> getByType() {
+        Map<Type, Totals> result = new EnumMap<>(Type.class);
+
+        for (int i = 0; i < byType.length; i++) {
+            if (byType[i] != null) {
+                result.put(TYPES[i], byType[i]);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Gets the totals by country.
+     * @return a new map of the countries with deposits to their totals
+     */
+    public Map<ISO3166CountryCode, Totals> getByCountry() {
+        Map<ISO3166CountryCode, Totals> result =
+                new EnumMap<>(ISO3166CountryCode.class);
+
+        for (int i = 0; i < byCountry.length; i++) {
+            if (byCountry[i] != null) {
+                result.put(COUNTRIES[i], byCountry[i]);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Gets the totals by bank name.
+     * @return a new map of bank names to their totals
+     */
+    public Map<String, Totals> getByName() {
+        return new HashMap<>(byName);
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "DepositAggregator[total=" + total + ", types="
+                + getByType().size() + ", countries="
+                + getByCountry().size() + ", banks=" + byName.size() + "]";
+    }
+
+    /**
+     * Gets the totals of a group, creating them if needed.
+     * @param groups the totals by ordinal
+     * @param ordinal the ordinal of the group
+     * @return the totals
+     */
+    private Totals group(Totals[] groups, int ordinal) {
+        Totals totals = groups[ordinal];
+
+        if (totals == null) {
+            totals = new Totals(this);
+            groups[ordinal] = totals;
+        }
+
+        return totals;
+    }
+
+    /**
+     * Converts a decimal to a long scaled to a number of fraction digits.
+     * @param value the decimal or null
+     * @param scale the number of fraction digits
+     * @return the scaled value, zero for null or {@link Long#MIN_VALUE} if
+     * the value has more fraction digits or does not fit into a long (a
+     * value that is {@code Long.MIN_VALUE} when scaled is added as a decimal
+     * too)
+     */
+    private static long scaled(BigDecimal value, int scale) {
+        if (value == null) {
+            return 0;
+        }
+
+        int valueScale = value.scale();
+
+        if ((valueScale > scale)
+                || (scale - valueScale >= POWERS_OF_TEN.length)) {
+            return Long.MIN_VALUE;
+        }
+
+        try {
+            // the unscaled value without creating a BigInteger
+            long unscaled = value.scaleByPowerOfTen(valueScale)
+                    .longValueExact();
+
+            return Math.multiplyExact(unscaled,
+                    POWERS_OF_TEN[scale - valueScale]);
+        } catch (ArithmeticException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    /**
+     * The count and the sums of amounts and interests of a group of
+     * deposits. The totals change as the aggregator accepts deposits.
+     */
+    public static final class Totals {
+
+        /** The context of averages. */
+        private static final MathContext AVERAGE = MathContext.DECIMAL64;
+
+        /** The aggregator that keeps the totals. */
+        private final DepositAggregator aggregator;
+
+        /** The number of deposits. */
+        private long count;
+
+        /** The number of deposits with an amount. */
+        private long amountCount;
+
+        /** The number of deposits with an interest. */
+        private long interestCount;
+
+        /** The sum of scaled amounts. */
+        private long scaledAmount;
+
+        /** The sum of the amounts that could not be scaled or null. */
+        private BigDecimal amountRest;
+
+        /** The sum of scaled interests. */
+        private long scaledInterest;
+
+        /** The sum of the interests that could not be scaled or null. */
+        private BigDecimal interestRest;
+
+        /**
+         * Instantiates new totals.
+         * @param aggregator the aggregator that keeps the totals
+         */
+        private Totals(DepositAggregator aggregator) {
+            this.aggregator = aggregator;
+        }
+
+        /**
+         * Gets the number of deposits.
+         * @return the count
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Gets the sum of the amounts on deposit.
+         * @return the sum (zero if there are no amounts)
+         */
+        public BigDecimal getAmountSum() {
+            return sum(scaledAmount, aggregator.amountScale, amountRest);
+        }
+
+        /**
+         * Gets the average amount on deposit of the deposits with an amount.
+         * @return the average (with 16 significant digits) or null if there
+         * are no amounts
+         */
+        public BigDecimal getAverageAmount() {
+            return average(getAmountSum(), amountCount);
+        }
+
+        /**
+         * Gets the sum of the interests.
+         * @return the sum (zero if there are no interests)
+         */
+        public BigDecimal getInterestSum() {
+            return sum(scaledInterest, aggregator.interestScale, interestRest);
+        }
+
+        /**
+         * Gets the average interest of the deposits with an interest.
+         * @return the average (with 16 significant digits) or null if there
+         * are no interests
+         */
+        public BigDecimal getAverageInterest() {
+            return average(getInterestSum(), interestCount);
+        }
+
+        /* (non-Javadoc)
+         * @see java.lang.Object#toString()
+         */
+        @Override
+        public String toString() {
+            return "[count=" + count + ", amount=" + getAmountSum()
+                    + ", average interest=" + getAverageInterest() + "]";
+        }
+
+        /**
+         * Adds a deposit.
+         * @param d the deposit
+         * @param amount the scaled amount (see
+         * {@link DepositAggregator#scaled(BigDecimal, int)})
+         * @param interest the scaled interest
+         */
+        private void add(Deposit d, long amount, long interest) {
+            count++;
+
+            if (d.getAmountOnDeposit() != null) {
+                amountCount++;
+
+                if ((amount == Long.MIN_VALUE) || !addAmount(amount)) {
+                    amountRest = add(amountRest, d.getAmountOnDeposit());
+                }
+            }
+
+            if (d.getInterest() != null) {
+                interestCount++;
+
+                if ((interest == Long.MIN_VALUE) || !addInterest(interest)) {
+                    interestRest = add(interestRest, d.getInterest());
+                }
+            }
+        }
+
+        /**
+         * Adds other totals of the same scales.
+         * @param other the other totals
+         */
+        private void merge(Totals other) {
+            count += other.count;
+            amountCount += other.amountCount;
+            interestCount += other.interestCount;
+
+            if (!addAmount(other.scaledAmount)) {
+                amountRest = add(amountRest, BigDecimal.valueOf(
+                        other.scaledAmount, aggregator.amountScale));
+            }
+
+            if (!addInterest(other.scaledInterest)) {
+                interestRest = add(interestRest, BigDecimal.valueOf(
+                        other.scaledInterest, aggregator.interestScale));
+            }
+
+            amountRest = add(amountRest, other.amountRest);
+            interestRest = add(interestRest, other.interestRest);
+        }
+
+        /**
+         * Adds a scaled amount to the sum unless it overflows.
+         * @param amount the scaled amount
+         * @return false if the sum would overflow
+         */
+        private boolean addAmount(long amount) {
+            long sum = scaledAmount + amount;
+
+            // the sum overflows if both operands differ from it in sign
+            if (((scaledAmount ^ sum) & (amount ^ sum)) < 0) {
+                return false;
+            }
+
+            scaledAmount = sum;
+            return true;
+        }
+
+        /**
+         * Adds a scaled interest to the sum unless it overflows.
+         * @param interest the scaled interest
+         * @return false if the sum would overflow
+         */
+        private boolean addInterest(long interest) {
+            long sum = scaledInterest + interest;
+
+            if (((scaledInterest ^ sum) & (interest ^ sum)) < 0) {
+                return false;
+            }
+
+            scaledInterest = sum;
+            return true;
+        }
+
+        /**
+         * Adds decimals that may be null.
+         * @param a a decimal or null
+         * @param b a decimal or null
+         * @return the sum or null if both are null
+         */
+        private static BigDecimal add(BigDecimal a, BigDecimal b) {
+            if ((a == null) || (b == null)) {
+                return (a == null) ? b : a;
+            }
+
+            return a.add(b);
+        }
+
+        /**
+         * Gets an exact sum.
+         * @param scaled the sum of scaled values
+         * @param scale the number of fraction digits
+         * @param rest the sum of the values that could not be scaled or
+         * null
+         * @return the sum
+         */
+        private static BigDecimal sum(long scaled, int scale,
+                                      BigDecimal rest) {
+            BigDecimal sum = BigDecimal.valueOf(scaled, scale);
+
+            return (rest == null) ? sum : sum.add(rest);
+        }
+
+        /**
+         * Gets an average.
+         * @param sum the sum
+         * @param count the number of values
+         * @return the average or null if there are no values
+         */
+        private static BigDecimal average(BigDecimal sum, long count) {
+            return (count == 0) ? null
+                    : sum.divide(BigDecimal.valueOf(count), AVERAGE);
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package depositstore;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+import deposit.Deposit;
+import deposit.DepositsDB;
+
+/**
+ * An ordering of deposits by one or more fields, each of them ascending or
+ * descending, e.g. by type, then by amount descending, then by depositor.
+ * Orders are immutable; {@code thenBy} methods return new orders. Missing
+ * (null) values are ordered last, both in ascending and descending order.
+ * <p>
+ * Besides sorting a {@code DepositsDB}, an order can select the first
+ * deposits of a stream of deposits (see {@link #top(int)}), so that only
+ * the selected deposits are kept in memory.
+ */
+public final class DepositOrder implements Comparator<Deposit> {
+
+    /**
+     * A field of deposits to order by.
+     */
+    public enum Field {
+
+        /** The depositor's name. */
+        DEPOSITOR(Deposit::getDepositor),
+
+        /** The account id. */
+        ACCOUNT_ID(Comparator.comparingInt(Deposit::getAccountId)),
+
+        /** The amount on deposit. */
+        AMOUNT(Deposit::getAmountOnDeposit),
+
+        /** The interest. */
+        INTEREST(Deposit::getInterest),
+
+        /** The time constraint. */
+        TIME(Comparator.comparingLong(Deposit::getTimeConstraint)),
+
+        /** The deposit id. */
+        ID(Deposit::getId),
+
+        /** The deposit type. */
+        TYPE(Deposit::getType),
+
+        /** The bank name. */
+        NAME(Deposit::getName),
+
+        /** The country. */
+        COUNTRY(Deposit::getCountry);
+
+        /** The ascending comparator. */
+        private final Comparator<Deposit> ascending;
+
+        /** The descending comparator. */
+        private final Comparator<Deposit> descending;
+
+        /**
+         * Instantiates a new field of a primitive value.
+         * @param comparator the ascending comparator
+         */
+        Field(Comparator<Deposit> comparator) {
+            this.ascending = comparator;
+            this.descending = comparator.reversed();
+        }
+
+        /**
+         * Instantiates a new field of a nullable value. Missing values are
+         * ordered last in both directions, so the descending comparator is
+         * not the reversed ascending one.
+         * @param getter the field getter
+         * @param <T> the type of field values
+         */
+        <T extends Comparable<? super T>> Field(Function<Deposit, T> getter) {
+            this.ascending = Comparator.comparing(getter,
+                    Comparator.nullsLast(Comparator.naturalOrder()));
+            this.descending = Comparator.comparing(getter,
+                    Comparator.nullsLast(Comparator.reverseOrder()));
+        }
+
+        /**
+         * Gets the comparator of the field.
+         * @param descending whether the order is descending
+         * @return the comparator
+         */
+        Comparator<Deposit> comparator(boolean descending) {
+            return descending ? this.descending : ascending;
+        }
+    }
+
+    /** The fields in the order of significance. */
+    private final List<Field> fields;
+
+    /** Whether each field is descending. */
+    private final List<Boolean> descending;
+
+    /** The comparator of all fields. */
+    private final Comparator<Deposit> comparator;
+
+    /**
+     * Instantiates a new order.
+     * @param fields the fields
+     * @param descending whether each field is descending
+     */
+    private DepositOrder(List<Field> fields, List<Boolean> descending) {
+        this.fields = fields;
+        this.descending = descending;
+
+        Comparator<Deposit> c = null;
+
+        for (int i = 0; i < fields.size(); i++) {
+            Comparator<Deposit> next =
+                    fields.get(i).comparator(descending.get(i));
+
+            c = (c == null) ? next : c.thenComparing(next);
+        }
+
+        this.comparator = c;
+    }
+
+    /**
+     * Create an ascending order by a field.
+     * @param field the field
+     * @return the order
+     */
+    public static DepositOrder by(Field field) {
+        return new DepositOrder(Collections.singletonList(field),
+                Collections.singletonList(false));
+    }
+
+    /**
+     * Create a descending order by a field.
+     * @param field the field
+     * @return the order
+     */
+    public static DepositOrder byDescending(Field field) {
+        return new DepositOrder(Collections.singletonList(field),
+                Collections.singletonList(true));
+    }
+
+    /**
+     * Create an order that orders deposits equal in this order by a field
+     * ascending.
+     * @param field the field
+     * @return the new order
+     */
+    public DepositOrder thenBy(Field field) {
+        return then(field, false);
+    }
+
+    /**
+     * Create an order that orders deposits equal in this order by a field
+     * descending.
+     * @param field the field
+     * @return the new order
+     */
+    public DepositOrder thenByDescending(Field field) {
+        return then(field, true);
+    }
+
+    /**
+     * Create an order with one more field.
+     * @param field the field
+     * @param descending whether the field is descending
+     * @return the new order
+     */
+    private DepositOrder then(Field field, boolean descending) {
+        List<Field> newFields = new ArrayList<>(fields);
+        List<Boolean> newDescending = new ArrayList<>(this.descending);
+
+        newFields.add(field);
+        newDescending.add(descending);
+        return new DepositOrder(Collections.unmodifiableList(newFields),
+                Collections.unmodifiableList(newDescending));
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.Comparator#compare(java.lang.Object, java.lang.Object)
+     */
+    @Override
+    public int compare(Deposit a, Deposit b) {
+        return comparator.compare(a, b);
+    }
+
+    /**
+     * Sort deposits in this order. The sort is stable. Orders by a single
+     * ascending field supported by {@link DepositSorter} use it.
+     * @param depositsDB the deposits
+     */
+    public void sort(DepositsDB depositsDB) {
+        DepositSorter.Key key = sorterKey();
+
+        if (key != null) {
+            DepositSorter.sort(depositsDB, key);
+        } else {
+            depositsDB.getDeposits().sort(this);
+        }
+    }
+
+    /**
+     * Create a consumer that keeps the first {@code k} deposits in this
+     * order.
+     * @param k the number of deposits to keep
+     * @return the consumer
+     */
+    public DepositTopK top(int k) {
+        return new DepositTopK(this, k);
+    }
+
+    /**
+     * Create a consumer that keeps the first {@code k} deposits in this
+     * order within each group, e.g. within each country.
+     * @param k the number of deposits to keep in a group
+     * @param classifier the group of a deposit
+     * @param <G> the type of groups
+     * @return the consumer
+     */
+    public <G> GroupedDepositTopK<G> topPerGroup(
+            int k, Function<? super Deposit, ? extends G> classifier) {
+        return new GroupedDepositTopK<>(this, k, classifier);
+    }
+
+    /**
+     * Get the sorter key for an order by a single ascending field.
+     * @return the key or null
+     */
+    private DepositSorter.Key sorterKey() {
+        if ((fields.size() != 1) || descending.get(0)) {
+            return null;
+        }
+
+        switch (fields.get(0)) {
+        case DEPOSITOR:
+            return DepositSorter.Key.DEPOSITOR;
+        case AMOUNT:
+            return DepositSorter.Key.AMOUNT;
+        case TIME:
+            return DepositSorter.Key.TIME;
+        default:
+            return null;
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+
+        for (int i = 0; i < fields.size(); i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+
+            sb.append(fields.get(i)).append(descending.get(i) ? " desc" : "");
+        }
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,629 @@
+package depositstore;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.zip.CRC32;
+
+import deposit.Deposit;
+import deposit.DepositsDB;
+import deposit.ISO3166CountryCode;
+import deposit.Type;
+
+/**
+ * A binary snapshot of a {@code DepositsDB} that can be loaded much faster
+ * than the XML file it has been parsed from.
+ * <p>
+ * A snapshot consists of a header, fixed-width columns of deposit fields
+ * and a table of distinct strings. The header holds the number of deposits,
+ * the modification time and length of the source XML file and a CRC-32
+ * checksum of the rest of the snapshot. Decimals are stored as unscaled
+ * {@code long} values and scales, types and countries as ordinals.
+ * <p>
+ * A snapshot is loaded by mapping the file into memory. Deposits and
+ * strings are created from the mapped columns when they are first
+ * accessed.
+ */
+public final class DepositSnapshot {
+
+    /** The magic number ("DEPS"). */
+    private static final int MAGIC = 0x44455053;
+
+    /** The format version. */
+    private static final int VERSION = 1;
+
+    /** The size of the header. */
+    private static final int HEADER_SIZE = 40;
+
+    /** The size of a row in the columns. */
+    private static final int ROW_SIZE = 3 * 8 + 4 * 4 + 2 + 3;
+
+    /** The types by ordinal. */
+    private static final Type[] TYPES = Type.values();
+
+    /** The countries by ordinal. */
+    private static final ISO3166CountryCode[] COUNTRIES =
+            ISO3166CountryCode.values();
+
+    private DepositSnapshot() {}
+
+    /**
+     * Write a snapshot of deposits parsed from an XML file. The snapshot is
+     * written to a temporary file first and then moved to its place. The
+     * modification time and the length of the XML file must be taken before
+     * it is parsed: if the file has changed since then, the deposits may
+     * not match it, and no snapshot is written.
+     * @param depositsDB the deposits
+     * @param snapshot the snapshot file
+     * @param source the XML file or null
+     * @param sourceModified the modification time of the XML file before
+     * it has been parsed
+     * @param sourceLength the length of the XML file before it has been
+     * parsed
+     * @return true if the snapshot has been written, false if the XML file
+     * has changed
+     * @throws IOException if the snapshot could not be written
+     */
+    public static boolean write(DepositsDB depositsDB, File snapshot,
+                                File source, long sourceModified,
+                                long sourceLength) throws IOException {
+        if ((source != null) && ((source.lastModified() != sourceModified)
+                || (source.length() != sourceLength))) {
+            return false;
+        }
+
+        List<Deposit> deposits = depositsDB.getDeposits();
+        int n = deposits.size();
+        Map<String, Integer> codes = new HashMap<>();
+        List<byte[]> strings = new ArrayList<>();
+        long stringBytes = 0;
+        int[] stringRefs = new int[3 * n];
+
+        for (int i = 0; i < n; i++) {
+            Deposit d = deposits.get(i);
+            String[] values = {d.getId(), d.getDepositor(), d.getName()};
+
+            for (int j = 0; j < values.length; j++) {
+                if (values[j] == null) {
+                    stringRefs[j * n + i] = -1;
+                    continue;
+                }
+
+                Integer code = codes.get(values[j]);
+
+                if (code == null) {
+                    byte[] bytes = values[j].getBytes(StandardCharsets.UTF_8);
+
+                    code = strings.size();
+                    codes.put(values[j], code);
+                    strings.add(bytes);
+                    stringBytes += bytes.length;
+                }
+
+                stringRefs[j * n + i] = code;
+            }
+        }
+
+        Layout layout = new Layout(n, strings.size());
+        long size = layout.stringData + stringBytes;
+
+        if ((size > Integer.MAX_VALUE) || (stringBytes > Integer.MAX_VALUE)) {
+            throw new IOException("Too many deposits for a snapshot");
+        }
+
+        Path target = snapshot.toPath();
+        Path temp = Files.createTempFile(target.toAbsolutePath().getParent(),
+                snapshot.getName(), ".tmp");
+
+        try {
+            try (FileChannel channel = FileChannel.open(temp,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                MappedByteBuffer buffer = channel.map(
+                        FileChannel.MapMode.READ_WRITE, 0, size);
+
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+                writeColumns(buffer, layout, deposits, stringRefs);
+                writeStrings(buffer, layout, strings);
+
+                CRC32 crc = new CRC32();
+                ByteBuffer body = buffer.duplicate();
+
+                body.position(HEADER_SIZE);
+                crc.update(body);
+
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, VERSION);
+                buffer.putInt(8, n);
+                buffer.putInt(12, strings.size());
+                buffer.putLong(16, (source == null) ? 0 : sourceModified);
+                buffer.putLong(24, (source == null) ? 0 : sourceLength);
+                buffer.putLong(32, crc.getValue());
+                buffer.force();
+            }
+
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+
+        return true;
+    }
+
+    /**
+     * Check whether a snapshot exists and has been written for the current
+     * version of an XML file. Only the header is read; the checksum is
+     * verified by {@link #load(File)}.
+     * @param snapshot the snapshot file
+     * @param source the XML file
+     * @return true if the snapshot is up to date
+     */
+    public static boolean isFresh(File snapshot, File source) {
+        if (!snapshot.isFile()) {
+            return false;
+        }
+
+        try (FileChannel channel = FileChannel.open(snapshot.toPath(),
+                StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+
+            while (header.hasRemaining() && (channel.read(header) >= 0)) {
+                // reads the whole header
+            }
+
+            return !header.hasRemaining()
+                    && (header.getInt(0) == MAGIC)
+                    && (header.getInt(4) == VERSION)
+                    && (header.getLong(16) == source.lastModified())
+                    && (header.getLong(24) == source.length());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Load a snapshot. The returned deposits db creates deposits from the
+     * mapped file when they are first accessed; its list can be modified
+     * like any other list of deposits.
+     * @param snapshot the snapshot file
+     * @return the deposits
+     * @throws IOException if the snapshot could not be read or is corrupt
+     */
+    public static DepositsDB load(File snapshot) throws IOException {
+        ByteBuffer buffer;
+
+        try (FileChannel channel = FileChannel.open(snapshot.toPath(),
+                StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("Not a deposits snapshot: " + snapshot);
+            }
+
+            // the mapping stays valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        if ((buffer.getInt(0) != MAGIC) || (buffer.getInt(4) != VERSION)) {
+            throw new IOException("Not a deposits snapshot: " + snapshot);
+        }
+
+        int n = buffer.getInt(8);
+        int stringCount = buffer.getInt(12);
+        Layout layout;
+
+        try {
+            layout = new Layout(n, stringCount);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Corrupt deposits snapshot: " + snapshot, e);
+        }
+
+        if (layout.stringData > buffer.capacity()) {
+            throw new IOException("Corrupt deposits snapshot: " + snapshot);
+        }
+
+        CRC32 crc = new CRC32();
+        ByteBuffer body = buffer.duplicate();
+
+        body.position(HEADER_SIZE);
+        crc.update(body);
+
+        if (crc.getValue() != buffer.getLong(32)) {
+            throw new IOException("Corrupt deposits snapshot: " + snapshot);
+        }
+
+        SnapshotDepositsDB depositsDB = new SnapshotDepositsDB();
+
+        depositsDB.load(buffer, layout);
+        return depositsDB;
+    }
+
+    /**
+     * Write the deposit columns.
+     * @param buffer the snapshot buffer
+     * @param layout the snapshot layout
+     * @param deposits the deposits
+     * @param stringRefs the string codes of ids, depositors and names
+     */
+    private static void writeColumns(ByteBuffer buffer, Layout layout,
+                                     List<Deposit> deposits,
+                                     int[] stringRefs) {
+        int n = deposits.size();
+
+        for (int i = 0; i < n; i++) {
+            Deposit d = deposits.get(i);
+
+            buffer.putLong(layout.times + 8 * i, d.getTimeConstraint());
+            writeDecimal(buffer, layout.amounts + 8 * i,
+                    layout.amountScales + i, d.getAmountOnDeposit());
+            writeDecimal(buffer, layout.interests + 8 * i,
+                    layout.interestScales + i, d.getInterest());
+            buffer.putInt(layout.accountIds + 4 * i, d.getAccountId());
+            buffer.putInt(layout.ids + 4 * i, stringRefs[i]);
+            buffer.putInt(layout.depositors + 4 * i, stringRefs[n + i]);
+            buffer.putInt(layout.names + 4 * i, stringRefs[2 * n + i]);
+            buffer.putShort(layout.countries + 2 * i, (short) ((d.getCountry()
+                    == null) ? 0 : d.getCountry().ordinal() + 1));
+            buffer.put(layout.types + i, (byte) ((d.getType() == null) ? 0
+                    : d.getType().ordinal() + 1));
+        }
+    }
+
+    /**
+     * Write a decimal as an unscaled long and a scale.
+     * @param buffer the snapshot buffer
+     * @param valueOffset the offset of the unscaled value
+     * @param scaleOffset the offset of the scale
+     * @param value the decimal or null
+     */
+    private static void writeDecimal(ByteBuffer buffer, int valueOffset,
+                                     int scaleOffset, BigDecimal value) {
+        if (value == null) {
+            buffer.put(scaleOffset, Byte.MIN_VALUE);
+            return;
+        }
+
+        BigDecimal stored = value;
+
+        // the smallest scale marks missing values
+        if ((stored.scale() <= Byte.MIN_VALUE)
+                || (stored.scale() > Byte.MAX_VALUE)) {
+            stored = stored.stripTrailingZeros();
+            stored = stored.setScale(Math.max(0, stored.scale()));
+        }
+
+        BigInteger unscaled = stored.unscaledValue();
+
+        if ((unscaled.bitLength() > 63) || (stored.scale() > Byte.MAX_VALUE)) {
+            throw new IllegalArgumentException("Cannot store " + value
+                    + " in a snapshot");
+        }
+
+        buffer.putLong(valueOffset, unscaled.longValue());
+        buffer.put(scaleOffset, (byte) stored.scale());
+    }
+
+    /**
+     * Write the string table.
+     * @param buffer the snapshot buffer
+     * @param layout the snapshot layout
+     * @param strings the UTF-8 bytes of strings
+     */
+    private static void writeStrings(ByteBuffer buffer, Layout layout,
+                                     List<byte[]> strings) {
+        int offset = 0;
+
+        buffer.position(layout.stringData);
+
+        for (int i = 0; i < strings.size(); i++) {
+            buffer.putInt(layout.stringOffsets + 4 * i, offset);
+            buffer.put(strings.get(i));
+            offset += strings.get(i).length;
+        }
+
+        buffer.putInt(layout.stringOffsets + 4 * strings.size(), offset);
+    }
+
+    /**
+     * Offsets of the sections of a snapshot. Columns are ordered by the
+     * width of their values, so that all values are aligned.
+     */
+    private static final class Layout {
+
+        /** The time constraints column. */
+        private final int times;
+
+        /** The unscaled amounts column. */
+        private final int amounts;
+
+        /** The unscaled interests column. */
+        private final int interests;
+
+        /** The account ids column. */
+        private final int accountIds;
+
+        /** The id string codes column. */
+        private final int ids;
+
+        /** The depositor string codes column. */
+        private final int depositors;
+
+        /** The bank name string codes column. */
+        private final int names;
+
+        /** The country ordinals column. */
+        private final int countries;
+
+        /** The type ordinals column. */
+        private final int types;
+
+        /** The amount scales column. */
+        private final int amountScales;
+
+        /** The interest scales column. */
+        private final int interestScales;
+
+        /** The string offsets. */
+        private final int stringOffsets;
+
+        /** The string bytes. */
+        private final int stringData;
+
+        /**
+         * Instantiates a new layout.
+         * @param n the number of deposits
+         * @param stringCount the number of strings
+         */
+        Layout(int n, int stringCount) {
+            if ((n < 0) || (stringCount < 0)) {
+                throw new IllegalArgumentException("Negative size");
+            }
+
+            long end = HEADER_SIZE + (long) ROW_SIZE * n
+                    + 4L * (stringCount + 1);
+
+            if (end > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException(
+                        "Too many deposits for a snapshot");
+            }
+
+            times = HEADER_SIZE;
+            amounts = times + 8 * n;
+            interests = amounts + 8 * n;
+            accountIds = interests + 8 * n;
+            ids = accountIds + 4 * n;
+            depositors = ids + 4 * n;
+            names = depositors + 4 * n;
+            countries = names + 4 * n;
+            types = countries + 2 * n;
+            amountScales = types + n;
+            interestScales = amountScales + n;
+            stringOffsets = interestScales + n;
+            stringData = stringOffsets + 4 * (stringCount + 1);
+        }
+    }
+
+    /**
+     * A deposits db loaded from a snapshot.
+     */
+    private static final class SnapshotDepositsDB extends DepositsDB {
+
+        /** The snapshot buffer. */
+        private ByteBuffer buffer;
+
+        /** The snapshot layout. */
+        private Layout layout;
+
+        /** The decoded strings. */
+        private String[] strings;
+
+        /**
+         * Set the snapshot to load deposits from.
+         * @param buffer the snapshot buffer
+         * @param layout the snapshot layout
+         */
+        void load(ByteBuffer buffer, Layout layout) {
+            int n = buffer.getInt(8);
+
+            this.buffer = buffer;
+            this.layout = layout;
+            this.strings = new String[buffer.getInt(12)];
+            deposit = new LazyList(n);
+        }
+
+        /**
+         * Create a deposit from a row of the snapshot.
+         * @param row the row
+         * @return the deposit
+         */
+        Deposit materialize(int row) {
+            Deposit d = new Deposit();
+
+            d.setTimeConstraint(buffer.getLong(layout.times + 8 * row));
+            d.setAmountOnDeposit(readDecimal(layout.amounts + 8 * row,
+                    layout.amountScales + row));
+            d.setInterest(readDecimal(layout.interests + 8 * row,
+                    layout.interestScales + row));
+            d.setAccountId(buffer.getInt(layout.accountIds + 4 * row));
+            d.setId(string(buffer.getInt(layout.ids + 4 * row)));
+            d.setDepositor(string(buffer.getInt(layout.depositors + 4 * row)));
+            d.setName(string(buffer.getInt(layout.names + 4 * row)));
+
+            int country = buffer.getShort(layout.countries + 2 * row);
+            int type = buffer.get(layout.types + row);
+
+            d.setCountry((country == 0) ? null : COUNTRIES[country - 1]);
+            d.setType((type == 0) ? null : TYPES[type - 1]);
+            return d;
+        }
+
+        /**
+         * Read a decimal.
+         * @param valueOffset the offset of the unscaled value
+         * @param scaleOffset the offset of the scale
+         * @return the decimal or null
+         */
+        private BigDecimal readDecimal(int valueOffset, int scaleOffset) {
+            byte scale = buffer.get(scaleOffset);
+
+            return (scale == Byte.MIN_VALUE) ? null
+                    : BigDecimal.valueOf(buffer.getLong(valueOffset), scale);
+        }
+
+        /**
+         * Get a string of the string table, decoding it on first use.
+         * @param code the string code or -1
+         * @return the string or null
+         */
+        private String string(int code) {
+            if (code < 0) {
+                return null;
+            }
+
+            if (strings[code] == null) {
+                int start = buffer.getInt(layout.stringOffsets + 4 * code);
+                int end = buffer.getInt(layout.stringOffsets + 4 * code + 4);
+                byte[] bytes = new byte[end - start];
+                ByteBuffer data = buffer.duplicate();
+
+                data.position(layout.stringData + start);
+                data.get(bytes);
+                strings[code] = new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            return strings[code];
+        }
+
+        /**
+         * A list of deposits that creates deposits of snapshot rows on first
+         * access.
+         */
+        private final class LazyList extends AbstractList<Deposit>
+                implements RandomAccess {
+
+            /** The deposits, or null for rows not accessed yet. */
+            private Deposit[] deposits;
+
+            /** The snapshot rows of the deposits. */
+            private int[] rows;
+
+            /** The number of deposits. */
+            private int size;
+
+            /**
+             * Instantiates a new list of all rows of the snapshot.
+             * @param n the number of rows
+             */
+            LazyList(int n) {
+                deposits = new Deposit[n];
+                rows = new int[n];
+                size = n;
+
+                for (int i = 0; i < n; i++) {
+                    rows[i] = i;
+                }
+            }
+
+            /* (non-Javadoc)
+             * @see java.util.AbstractList#get(int)
+             */
+            @Override
+            public Deposit get(int index) {
+                checkIndex(index, size);
+
+                if (deposits[index] == null) {
+                    deposits[index] = materialize(rows[index]);
+                }
+
+                return deposits[index];
+            }
+
+            /* (non-Javadoc)
+             * @see java.util.AbstractCollection#size()
+             */
+            @Override
+            public int size() {
+                return size;
+            }
+
+            /* (non-Javadoc)
+             * @see java.util.AbstractList#set(int, java.lang.Object)
+             */
+            @Override
+            public Deposit set(int index, Deposit d) {
+                Deposit old = get(index);
+
+                deposits[index] = d;
+                return old;
+            }
+
+            /* (non-Javadoc)
+             * @see java.util.AbstractList#add(int, java.lang.Object)
+             */
+            @Override
+            public void add(int index, Deposit d) {
+                checkIndex(index, size + 1);
+
+                if (size == deposits.length) {
+                    int capacity = size + (size >> 1) + 1;
+
+                    deposits = Arrays.copyOf(deposits, capacity);
+                    rows = Arrays.copyOf(rows, capacity);
+                }
+
+                System.arraycopy(deposits, index, deposits, index + 1,
+                        size - index);
+                System.arraycopy(rows, index, rows, index + 1, size - index);
+                deposits[index] = d;
+                size++;
+                modCount++;
+            }
+
+            /* (non-Javadoc)
+             * @see java.util.AbstractList#remove(int)
+             */
+            @Override
+            public Deposit remove(int index) {
+                Deposit old = get(index);
+
+                System.arraycopy(deposits, index + 1, deposits, index,
+                        size - index - 1);
+                System.arraycopy(rows, index + 1, rows, index,
+                        size - index - 1);
+                deposits[--size] = null;
+                modCount++;
+                return old;
+            }
+
+            /**
+             * Check an index.
+             * @param index the index
+             * @param limit the exclusive upper bound
+             */
+            private void checkIndex(int index, int limit) {
+                if ((index < 0) || (index >= limit)) {
+                    throw new IndexOutOfBoundsException("Index: " + index
+                            + ", size: " + size);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,489 @@
+package depositstore;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntFunction;
+import java.util.function.IntToLongFunction;
+
+import deposit.Deposit;
+import deposit.DepositsDB;
+
+/**
+ * A sorter of deposits by a single key. Instead of comparing deposits, it
+ * extracts the keys into primitive arrays, sorts a permutation of row
+ * numbers and then reorders the deposits once. Numeric keys are packed
+ * together with row numbers into {@code long} values where possible and
+ * sorted by {@link Arrays#sort(long[])}. Depositors are replaced by ranks
+ * of their names among the distinct names, which are sorted only once.
+ * <p>
+ * The sort is stable, and the order is the same as with comparators of
+ * {@code String}, {@code BigDecimal} and {@code long} keys, with missing
+ * depositors and amounts ordered last. Columnar and indexed stores are
+ * reordered without copying deposits.
+ */
+public final class DepositSorter {
+
+    /** The number of rows sorted by insertion sort. */
+    private static final int INSERTION_SORT_THRESHOLD = 32;
+
+    /** The number of rows below which parallel sorting is sequential. */
+    private static final int PARALLEL_THRESHOLD = 1 << 13;
+
+    /**
+     * A sorting key.
+     */
+    public enum Key {
+
+        /** The depositor's name. */
+        DEPOSITOR,
+
+        /** The amount on deposit. */
+        AMOUNT,
+
+        /** The time constraint. */
+        TIME
+    }
+
+    private DepositSorter() {}
+
+    /**
+     * Sort deposits.
+     * @param depositsDB the deposits
+     * @param key the sorting key
+     */
+    public static void sort(DepositsDB depositsDB, Key key) {
+        sort(depositsDB, key, false);
+    }
+
+    /**
+     * Sort deposits using all processors of the common fork join pool. This
+     * is faster than {@link #sort(DepositsDB, Key)} for large lists.
+     * @param depositsDB the deposits
+     * @param key the sorting key
+     */
+    public static void parallelSort(DepositsDB depositsDB, Key key) {
+        sort(depositsDB, key, true);
+    }
+
+    /**
+     * Sort deposits.
+     * @param depositsDB the deposits
+     * @param key the sorting key
+     * @param parallel whether to sort in parallel
+     */
+    private static void sort(DepositsDB depositsDB, Key key,
+                             boolean parallel) {
+        if (depositsDB instanceof ColumnarDepositsDB) {
+            ColumnarDepositsDB columns = (ColumnarDepositsDB) depositsDB;
+
+            columns.permute(sortColumns(columns, key, parallel));
+            return;
+        }
+
+        List<Deposit> list = depositsDB.getDeposits();
+        Deposit[] deposits = list.toArray(new Deposit[list.size()]);
+        int[] order = sortDeposits(deposits, key, parallel);
+
+        if (depositsDB instanceof IndexedDepositsDB) {
+            ((IndexedDepositsDB) depositsDB).permute(order);
+            return;
+        }
+
+        ListIterator<Deposit> it = list.listIterator();
+
+        for (int row : order) {
+            it.next();
+            it.set(deposits[row]);
+        }
+    }
+
+    /**
+     * Sort rows of a columnar store.
+     * @param columns the store
+     * @param key the sorting key
+     * @param parallel whether to sort in parallel
+     * @return the old row of every new row
+     */
+    private static int[] sortColumns(ColumnarDepositsDB columns, Key key,
+                                     boolean parallel) {
+        int n = columns.size();
+
+        switch (key) {
+        case DEPOSITOR:
+            return sortStrings(n, columns::getDepositor, parallel);
+        case AMOUNT:
+            if (columns.hasScaledAmounts()) {
+                // all amounts have the same scale
+                return sortLongs(n, columns::getScaledAmountOnDeposit,
+                        parallel);
+            }
+
+            return sortDecimals(n, columns::getAmountOnDeposit, parallel);
+        case TIME:
+            return sortLongs(n, columns::getTimeConstraint, parallel);
+        default:
+            throw new IllegalArgumentException("Invalid sorting key");
+        }
+    }
+
+    /**
+     * Sort deposit objects.
+     * @param deposits the deposits
+     * @param key the sorting key
+     * @param parallel whether to sort in parallel
+     * @return the old position of every new position
+     */
+    private static int[] sortDeposits(Deposit[] deposits, Key key,
+                                      boolean parallel) {
+        int n = deposits.length;
+
+        switch (key) {
+        case DEPOSITOR:
+            return sortStrings(n, i -> deposits[i].getDepositor(), parallel);
+        case AMOUNT:
+            long[] amounts = scaledAmounts(deposits);
+
+            if (amounts != null) {
+                return sortLongs(n, i -> amounts[i], parallel);
+            }
+
+            return sortDecimals(n, i -> deposits[i].getAmountOnDeposit(),
+                    parallel);
+        case TIME:
+            return sortLongs(n, i -> deposits[i].getTimeConstraint(),
+                    parallel);
+        default:
+            throw new IllegalArgumentException("Invalid sorting key");
+        }
+    }
+
+    /**
+     * Convert amounts on deposit to longs with the largest scale of all
+     * amounts.
+     * @param deposits the deposits
+     * @return the scaled amounts or null if some of them are missing or do
+     * not fit into a long
+     */
+    private static long[] scaledAmounts(Deposit[] deposits) {
+        int scale = 0;
+
+        for (Deposit d : deposits) {
+            if (d.getAmountOnDeposit() == null) {
+                return null;
+            }
+
+            scale = Math.max(scale, d.getAmountOnDeposit().scale());
+        }
+
+        long[] amounts = new long[deposits.length];
+
+        for (int i = 0; i < deposits.length; i++) {
+            BigInteger unscaled = deposits[i].getAmountOnDeposit()
+                    .setScale(scale).unscaledValue();
+
+            if (unscaled.bitLength() > 63) {
+                return null;
+            }
+
+            amounts[i] = unscaled.longValue();
+        }
+
+        return amounts;
+    }
+
+    /**
+     * Sort rows by decimal keys. Null keys are ordered last.
+     * @param n the number of rows
+     * @param keyOf the key of a row
+     * @param parallel whether to sort in parallel
+     * @return the old row of every new row
+     */
+    private static int[] sortDecimals(int n, IntFunction<BigDecimal> keyOf,
+                                      boolean parallel) {
+        BigDecimal[] keys = new BigDecimal[n];
+
+        for (int i = 0; i < n; i++) {
+            keys[i] = keyOf.apply(i);
+        }
+
+        Comparator<BigDecimal> c =
+                Comparator.nullsLast(Comparator.naturalOrder());
+
+        return sortRows(n, (a, b) -> c.compare(keys[a], keys[b]), parallel);
+    }
+
+    /**
+     * Sort rows by string keys. Distinct keys are sorted once, and rows are
+     * sorted by the ranks of their keys. Null keys are ordered last.
+     * @param n the number of rows
+     * @param keyOf the key of a row
+     * @param parallel whether to sort in parallel
+     * @return the old row of every new row
+     */
+    private static int[] sortStrings(int n, IntFunction<String> keyOf,
+                                     boolean parallel) {
+        String[] keys = new String[n];
+        Map<String, Integer> ranks = new HashMap<>();
+
+        for (int i = 0; i < n; i++) {
+            keys[i] = keyOf.apply(i);
+
+            if (keys[i] != null) {
+                ranks.put(keys[i], 0);
+            }
+        }
+
+        String[] distinct = ranks.keySet().toArray(new String[ranks.size()]);
+
+        if (parallel) {
+            Arrays.parallelSort(distinct);
+        } else {
+            Arrays.sort(distinct);
+        }
+
+        for (int rank = 0; rank < distinct.length; rank++) {
+            ranks.put(distinct[rank], rank);
+        }
+
+        int[] rowRanks = new int[n];
+
+        for (int i = 0; i < n; i++) {
+            // missing keys are ordered last
+            rowRanks[i] = (keys[i] == null) ? distinct.length
+                    : ranks.get(keys[i]);
+        }
+
+        return sortLongs(n, i -> rowRanks[i], parallel);
+    }
+
+    /**
+     * Sort rows by long keys.
+     * @param n the number of rows
+     * @param keyOf the key of a row
+     * @param parallel whether to sort in parallel
+     * @return the old row of every new row
+     */
+    private static int[] sortLongs(int n, IntToLongFunction keyOf,
+                                   boolean parallel) {
+        long[] keys = new long[n];
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+
+        for (int i = 0; i < n; i++) {
+            keys[i] = keyOf.applyAsLong(i);
+            min = Math.min(min, keys[i]);
+            max = Math.max(max, keys[i]);
+        }
+
+        int shift = 32 - Integer.numberOfLeadingZeros(Math.max(n - 1, 1));
+
+        // (key - min) and the row share a long if the key range is small
+        if ((n == 0) || (max - min < 0)
+                || ((max - min) >>> (63 - shift) != 0)) {
+            return sortRows(n, (a, b) -> Long.compare(keys[a], keys[b]),
+                    parallel);
+        }
+
+        long[] packed = new long[n];
+
+        for (int i = 0; i < n; i++) {
+            packed[i] = ((keys[i] - min) << shift) | i;
+        }
+
+        if (parallel) {
+            Arrays.parallelSort(packed);
+        } else {
+            Arrays.sort(packed);
+        }
+
+        int[] order = new int[n];
+        long mask = (1L << shift) - 1;
+
+        for (int i = 0; i < n; i++) {
+            order[i] = (int) (packed[i] & mask);
+        }
+
+        return order;
+    }
+
+    /**
+     * Sort rows by a comparator using a stable merge sort.
+     * @param n the number of rows
+     * @param comparator the comparator of rows
+     * @param parallel whether to sort in parallel
+     * @return the old row of every new row
+     */
+    private static int[] sortRows(int n, RowComparator comparator,
+                                  boolean parallel) {
+        int[] order = new int[n];
+        int[] buffer = new int[n];
+
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+
+        if (parallel && (n >= PARALLEL_THRESHOLD)) {
+            ForkJoinPool.commonPool().invoke(
+                    new MergeSortTask(order, buffer, 0, n, comparator));
+        } else {
+            mergeSort(order, buffer, 0, n, comparator);
+        }
+
+        return order;
+    }
+
+    /**
+     * Sort a range of rows.
+     * @param rows the rows
+     * @param buffer a buffer of the same length
+     * @param from the range start
+     * @param to the range end (exclusive)
+     * @param comparator the comparator of rows
+     */
+    private static void mergeSort(int[] rows, int[] buffer, int from, int to,
+                                  RowComparator comparator) {
+        if (to - from <= INSERTION_SORT_THRESHOLD) {
+            insertionSort(rows, from, to, comparator);
+            return;
+        }
+
+        int mid = (from + to) >>> 1;
+
+        mergeSort(rows, buffer, from, mid, comparator);
+        mergeSort(rows, buffer, mid, to, comparator);
+        merge(rows, buffer, from, mid, to, comparator);
+    }
+
+    /**
+     * Sort a short range of rows.
+     * @param rows the rows
+     * @param from the range start
+     * @param to the range end (exclusive)
+     * @param comparator the comparator of rows
+     */
+    private static void insertionSort(int[] rows, int from, int to,
+                                      RowComparator comparator) {
+        for (int i = from + 1; i < to; i++) {
+            int row = rows[i];
+            int j = i;
+
+            while ((j > from) && (comparator.compare(rows[j - 1], row) > 0)) {
+                rows[j] = rows[j - 1];
+                j--;
+            }
+
+            rows[j] = row;
+        }
+    }
+
+    /**
+     * Merge two adjacent sorted ranges of rows.
+     * @param rows the rows
+     * @param buffer a buffer of the same length
+     * @param from the first range start
+     * @param mid the second range start
+     * @param to the second range end (exclusive)
+     * @param comparator the comparator of rows
+     */
+    private static void merge(int[] rows, int[] buffer, int from, int mid,
+                              int to, RowComparator comparator) {
+        if (comparator.compare(rows[mid - 1], rows[mid]) <= 0) {
+            return;
+        }
+
+        System.arraycopy(rows, from, buffer, from, mid - from);
+
+        int i = from;
+        int j = mid;
+        int k = from;
+
+        while ((i < mid) && (j < to)) {
+            // takes the left row on ties to keep the sort stable
+            rows[k++] = (comparator.compare(buffer[i], rows[j]) <= 0)
+                    ? buffer[i++] : rows[j++];
+        }
+
+        System.arraycopy(buffer, i, rows, k, mid - i);
+    }
+
+    /**
+     * A comparator of rows.
+     */
+    @FunctionalInterface
+    private interface RowComparator {
+
+        /**
+         * Compares two rows.
+         * @param a the first row
+         * @param b the second row
+         * @return a negative number, zero or a positive number if the first
+         * row is less than, equal to or greater than the second one
+         */
+        int compare(int a, int b);
+    }
+
+    /**
+     * A task that sorts a range of rows, sorting its halves in parallel.
+     */
+    private static final class MergeSortTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        /** The rows. */
+        private final int[] rows;
+
+        /** The buffer. */
+        private final int[] buffer;
+
+        /** The range start. */
+        private final int from;
+
+        /** The range end (exclusive). */
+        private final int to;
+
+        /** The comparator of rows. */
+        private final RowComparator comparator;
+
+        /**
+         * Instantiates a new merge sort task.
+         * @param rows the rows
+         * @param buffer a buffer of the same length
+         * @param from the range start
+         * @param to the range end (exclusive)
+         * @param comparator the comparator of rows
+         */
+        MergeSortTask(int[] rows, int[] buffer, int from, int to,
+                      RowComparator comparator) {
+            this.rows = rows;
+            this.buffer = buffer;
+            this.from = from;
+            this.to = to;
+            this.comparator = comparator;
+        }
+
+        /* (non-Javadoc)
+         * @see java.util.concurrent.RecursiveAction#compute()
+         */
+        @Override
+        protected void compute() {
+            if (to - from < PARALLEL_THRESHOLD) {
+                mergeSort(rows, buffer, from, to, comparator);
+                return;
+            }
+
+            int mid = (from + to) >>> 1;
+
+            invokeAll(new MergeSortTask(rows, buffer, from, mid, comparator),
+                    new MergeSortTask(rows, buffer, mid, to, comparator));
+            merge(rows, buffer, from, mid, to, comparator);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package depositstore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+
+import deposit.Deposit;
+
+/**
+ * A consumer of deposits that keeps the first {@code k} deposits in an
+ * order. It can be passed to a streaming parser, so that only {@code k}
+ * deposits are kept in memory. Deposits are kept in a bounded heap whose
+ * root is the last kept deposit, so each deposit takes
+ * {@code O(log k)} time.
+ * <p>
+ * The result is the same as the first {@code k} deposits of a stable sort:
+ * of equal deposits, the earlier ones are kept. The consumer is not
+ * thread-safe.
+ */
+public class DepositTopK implements Consumer<Deposit> {
+
+    /** The order. */
+    private final Comparator<? super Deposit> order;
+
+    /** The number of deposits to keep. */
+    private final int k;
+
+    /** The kept deposits as a heap with the last deposit at the root. */
+    private Deposit[] heap;
+
+    /** The arrival numbers of the kept deposits. */
+    private long[] arrivals;
+
+    /** The number of kept deposits. */
+    private int size;
+
+    /** The number of accepted deposits. */
+    private long count;
+
+    /**
+     * Instantiates a new top-k consumer.
+     * @param order the order
+     * @param k the number of deposits to keep
+     */
+    public DepositTopK(Comparator<? super Deposit> order, int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("Negative k: " + k);
+        }
+
+        this.order = order;
+        this.k = k;
+        // the heap grows up to k, so a large k costs nothing up front
+        this.heap = new Deposit[Math.min(k, 16)];
+        this.arrivals = new long[heap.length];
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.function.Consumer#accept(java.lang.Object)
+     */
+    @Override
+    public void accept(Deposit d) {
+        long arrival = count++;
+
+        if (size < k) {
+            if (size == heap.length) {
+                int capacity = (int) Math.min(k, 2L * size);
+
+                heap = Arrays.copyOf(heap, capacity);
+                arrivals = Arrays.copyOf(arrivals, capacity);
+            }
+
+            heap[size] = d;
+            arrivals[size] = arrival;
+            siftUp(size++);
+        } else if ((k > 0) && (order.compare(d, heap[0]) < 0)) {
+            // a deposit equal to the root arrived later, so it is rejected
+            heap[0] = d;
+            arrivals[0] = arrival;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Gets the number of accepted deposits.
+     * @return the number of deposits
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the kept deposits in order.
+     * @return a new list of at most {@code k} deposits
+     */
+    public List<Deposit> getResult() {
+        Integer[] slots = new Integer[size];
+
+        for (int i = 0; i < size; i++) {
+            slots[i] = i;
+        }
+
+        Arrays.sort(slots, this::compareSlots);
+
+        List<Deposit> result = new ArrayList<>(size);
+
+        for (Integer slot : slots) {
+            result.add(heap[slot]);
+        }
+
+        return result;
+    }
+
+    /**
+     * Compare two kept deposits.
+     * @param i the first slot
+     * @param j the second slot
+     * @return a positive number if the first deposit comes later
+     */
+    private int compareSlots(int i, int j) {
+        int c = order.compare(heap[i], heap[j]);
+
+        return (c != 0) ? c : Long.compare(arrivals[i], arrivals[j]);
+    }
+
+    /**
+     * Move a deposit towards the root while it comes later than its parent.
+     * @param i the slot
+     */
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+
+            if (compareSlots(i, parent) <= 0) {
+                return;
+            }
+
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    /**
+     * Move a deposit away from the root while it comes earlier than one of
+     * its children.
+     * @param i the slot
+     */
+    private void siftDown(int i) {
+        while (true) {
+            int child = 2 * i + 1;
+
+            if (child >= size) {
+                return;
+            }
+
+            if ((child + 1 < size) && (compareSlots(child + 1, child) > 0)) {
+                child++;
+            }
+
+            if (compareSlots(i, child) >= 0) {
+                return;
+            }
+
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    /**
+     * Swap two slots.
+     * @param i the first slot
+     * @param j the second slot
+     */
+    private void swap(int i, int j) {
+        Deposit d = heap[i];
+        long arrival = arrivals[i];
+
+        heap[i] = heap[j];
+        arrivals[i] = arrivals[j];
+        heap[j] = d;
+        arrivals[j] = arrival;
+    }
+}
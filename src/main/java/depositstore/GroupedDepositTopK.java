@@ -0,0 +1,74 @@
+package depositstore;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import deposit.Deposit;
+
+/**
+ * A consumer of deposits that keeps the first {@code k} deposits in an
+ * order within each group, e.g. the 100 largest deposits in each country.
+ * It can be passed to a streaming parser, so that at most {@code k}
+ * deposits per group are kept in memory. The consumer is not thread-safe.
+ * @param <G> the type of groups
+ */
+public class GroupedDepositTopK<G> implements Consumer<Deposit> {
+
+    /** The order. */
+    private final Comparator<? super Deposit> order;
+
+    /** The number of deposits to keep in a group. */
+    private final int k;
+
+    /** The group of a deposit. */
+    private final Function<? super Deposit, ? extends G> classifier;
+
+    /** The top-k consumers of groups in the order of first deposits. */
+    private final Map<G, DepositTopK> groups = new LinkedHashMap<>();
+
+    /**
+     * Instantiates a new grouped top-k consumer.
+     * @param order the order
+     * @param k the number of deposits to keep in a group
+     * @param classifier the group of a deposit
+     */
+    public GroupedDepositTopK(Comparator<? super Deposit> order, int k,
+                              Function<? super Deposit, ? extends G>
+                                      classifier) {
+        if (k < 0) {
+            throw new IllegalArgumentException("Negative k: " + k);
+        }
+
+        this.order = order;
+        this.k = k;
+        this.classifier = classifier;
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.function.Consumer#accept(java.lang.Object)
+     */
+    @Override
+    public void accept(Deposit d) {
+        groups.computeIfAbsent(classifier.apply(d),
+                g -> new DepositTopK(order, k)).accept(d);
+    }
+
+    /**
+     * Gets the kept deposits of every group in order.
+     * @return a new map of groups (in the order their first deposits were
+     * accepted) to lists of at most {@code k} deposits
+     */
+    public Map<G, List<Deposit>> getResult() {
+        Map<G, List<Deposit>> result = new LinkedHashMap<>();
+
+        for (Map.Entry<G, DepositTopK> group : groups.entrySet()) {
+            result.put(group.getKey(), group.getValue().getResult());
+        }
+
+        return result;
+    }
+}
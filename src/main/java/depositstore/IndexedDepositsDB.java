@@ -0,0 +1,426 @@
+package depositstore;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+import deposit.Deposit;
+import deposit.DepositsDB;
+import deposit.ISO3166CountryCode;
+import deposit.Type;
+import depositparser.DepositDelta;
+
+/**
+ * A {@code DepositsDB} with indexes for looking deposits up by id, account
+ * id, depositor, type and country. The indexes are updated whenever the
+ * deposits list is modified (e.g. when a parser adds deposits to it), so
+ * lookups by id and account id take constant time.
+ * <p>
+ * Deposits are indexed by the values they have when they are added. A
+ * deposit that is modified afterwards must be set into the list again to
+ * be re-indexed. Deposits are compared by identity, and the same deposit
+ * object should not be added twice. The store is not thread-safe.
+ */
+public class IndexedDepositsDB extends DepositsDB {
+
+    /** Deposits by id. */
+    private final Map<String, Deposit> byId = new HashMap<>();
+
+    /** Deposits by account id. */
+    private final Map<Integer, List<Deposit>> byAccountId = new HashMap<>();
+
+    /** Deposits by depositor (sorted). */
+    private final NavigableMap<String, List<Deposit>> byDepositor =
+            new TreeMap<>();
+
+    /** Deposits by type. */
+    private final Map<Type, Set<Deposit>> byType = new EnumMap<>(Type.class);
+
+    /** Deposits by country. */
+    private final Map<ISO3166CountryCode, Set<Deposit>> byCountry =
+            new EnumMap<>(ISO3166CountryCode.class);
+
+    /**
+     * Instantiates a new empty indexed deposits db.
+     */
+    public IndexedDepositsDB() {
+        deposit = new IndexedList();
+    }
+
+    /**
+     * Instantiates a new indexed deposits db with the deposits of another
+     * deposits db.
+     * @param depositsDB a deposits db
+     */
+    public IndexedDepositsDB(DepositsDB depositsDB) {
+        this();
+        deposit.addAll(depositsDB.getDeposits());
+    }
+
+    /**
+     * Gets the deposit with the given id.
+     * @param id the deposit id
+     * @return the deposit or {@code null} if there is none
+     */
+    public Deposit getById(String id) {
+        return byId.get(id);
+    }
+
+    /**
+     * Gets the deposits with the given account id.
+     * @param accountId the account id
+     * @return an unmodifiable list of deposits
+     */
+    public List<Deposit> getByAccountId(int accountId) {
+        return unmodifiable(byAccountId.get(accountId));
+    }
+
+    /**
+     * Gets the deposits of the given depositor.
+     * @param depositor the depositor
+     * @return an unmodifiable list of deposits
+     */
+    public List<Deposit> getByDepositor(String depositor) {
+        return unmodifiable(byDepositor.get(depositor));
+    }
+
+    /**
+     * Gets the deposits of depositors in the given range, ordered by
+     * depositor.
+     * @param from the first depositor (inclusive)
+     * @param to the last depositor (exclusive)
+     * @return a new list of deposits
+     */
+    public List<Deposit> getByDepositorRange(String from, String to) {
+        List<Deposit> result = new ArrayList<>();
+
+        for (List<Deposit> deposits
+                : byDepositor.subMap(from, true, to, false).values()) {
+            result.addAll(deposits);
+        }
+
+        return result;
+    }
+
+    /**
+     * Gets the deposits of the given type.
+     * @param type the type
+     * @return an unmodifiable set of deposits in the order of addition
+     */
+    public Set<Deposit> getByType(Type type) {
+        return unmodifiable(byType.get(type));
+    }
+
+    /**
+     * Gets the deposits in the given country.
+     * @param country the country
+     * @return an unmodifiable set of deposits in the order of addition
+     */
+    public Set<Deposit> getByCountry(ISO3166CountryCode country) {
+        return unmodifiable(byCountry.get(country));
+    }
+
+    /**
+     * Applies the changes of a deposits file to the store. An updated
+     * deposit is changed in place, so it keeps its position in the list;
+     * added deposits are appended, and removed ones are dropped in a single
+     * pass over the list.
+     * @param deltas the changes, e.g. of an {@code IncrementalDepositParser}
+     */
+    public void apply(Collection<DepositDelta> deltas) {
+        Set<Deposit> removed = Collections.newSetFromMap(
+                new IdentityHashMap<>());
+
+        for (DepositDelta delta : deltas) {
+            Deposit old = byId.get(delta.getId());
+
+            if (delta.getKind() == DepositDelta.Kind.REMOVE) {
+                if (old != null) {
+                    removed.add(old);
+                }
+            } else if (old == null) {
+                deposit.add(delta.getDeposit());
+            } else {
+                unindex(old);
+                copy(delta.getDeposit(), old);
+                index(old);
+            }
+        }
+
+        if (!removed.isEmpty()) {
+            deposit.removeIf(removed::contains);
+        }
+    }
+
+    /**
+     * Reorder the deposits without updating the indexes.
+     * @param order the old position of every new position
+     */
+    void permute(int[] order) {
+        ((IndexedList) deposit).permute(order);
+    }
+
+    /**
+     * Add a deposit to the indexes.
+     * @param d a deposit
+     */
+    private void index(Deposit d) {
+        if (d.getId() != null) {
+            byId.put(d.getId(), d);
+        }
+
+        byAccountId.computeIfAbsent(d.getAccountId(),
+                k -> new ArrayList<>(1)).add(d);
+
+        if (d.getDepositor() != null) {
+            byDepositor.computeIfAbsent(d.getDepositor(),
+                    k -> new ArrayList<>(1)).add(d);
+        }
+
+        if (d.getType() != null) {
+            byType.computeIfAbsent(d.getType(),
+                    k -> new LinkedHashSet<>()).add(d);
+        }
+
+        if (d.getCountry() != null) {
+            byCountry.computeIfAbsent(d.getCountry(),
+                    k -> new LinkedHashSet<>()).add(d);
+        }
+    }
+
+    /**
+     * Remove a deposit from the indexes.
+     * @param d a deposit
+     */
+    private void unindex(Deposit d) {
+        if (d.getId() != null) {
+            byId.remove(d.getId(), d);
+        }
+
+        removeFrom(byAccountId, d.getAccountId(), d);
+
+        if (d.getDepositor() != null) {
+            removeFrom(byDepositor, d.getDepositor(), d);
+        }
+
+        if (d.getType() != null) {
+            removeFrom(byType, d.getType(), d);
+        }
+
+        if (d.getCountry() != null) {
+            removeFrom(byCountry, d.getCountry(), d);
+        }
+    }
+
+    /**
+     * Copy the values of a deposit to another one.
+     * @param from the source deposit
+     * @param to the target deposit
+     */
+    private static void copy(Deposit from, Deposit to) {
+        to.setId(from.getId());
+        to.setDepositor(from.getDepositor());
+        to.setAccountId(from.getAccountId());
+        to.setType(from.getType());
+        to.setName(from.getName());
+        to.setCountry(from.getCountry());
+        to.setAmountOnDeposit(from.getAmountOnDeposit());
+        to.setInterest(from.getInterest());
+        to.setTimeConstraint(from.getTimeConstraint());
+    }
+
+    /**
+     * Remove a deposit from a bucket of an index and remove the bucket if
+     * it becomes empty.
+     * @param index the index
+     * @param key the bucket key
+     * @param d the deposit
+     * @param <K> the type of keys
+     */
+    private static <K> void removeFrom(
+            Map<K, ? extends Collection<Deposit>> index, K key, Deposit d) {
+        Collection<Deposit> bucket = index.get(key);
+
+        if (bucket == null) {
+            return;
+        }
+
+        if (bucket instanceof List) {
+            // buckets are short, and deposits are compared by identity
+            for (int i = 0; i < bucket.size(); i++) {
+                if (((List<Deposit>) bucket).get(i) == d) {
+                    ((List<Deposit>) bucket).remove(i);
+                    break;
+                }
+            }
+        } else {
+            bucket.remove(d);
+        }
+
+        if (bucket.isEmpty()) {
+            index.remove(key);
+        }
+    }
+
+    /**
+     * Wrap a list bucket of an index.
+     * @param bucket the bucket or null
+     * @return an unmodifiable list
+     */
+    private static List<Deposit> unmodifiable(List<Deposit> bucket) {
+        return (bucket == null) ? Collections.emptyList()
+                : Collections.unmodifiableList(bucket);
+    }
+
+    /**
+     * Wrap a set bucket of an index.
+     * @param bucket the bucket or null
+     * @return an unmodifiable set
+     */
+    private static Set<Deposit> unmodifiable(Set<Deposit> bucket) {
+        return (bucket == null) ? Collections.emptySet()
+                : Collections.unmodifiableSet(bucket);
+    }
+
+    /**
+     * A list of deposits that updates the indexes on modification.
+     */
+    private final class IndexedList extends AbstractList<Deposit>
+            implements RandomAccess {
+
+        /** The deposits. */
+        private final ArrayList<Deposit> deposits = new ArrayList<>();
+
+        /* (non-Javadoc)
+         * @see java.util.AbstractList#get(int)
+         */
+        @Override
+        public Deposit get(int index) {
+            return deposits.get(index);
+        }
+
+        /* (non-Javadoc)
+         * @see java.util.AbstractCollection#size()
+         */
+        @Override
+        public int size() {
+            return deposits.size();
+        }
+
+        /* (non-Javadoc)
+         * @see java.util.AbstractList#add(int, java.lang.Object)
+         */
+        @Override
+        public void add(int index, Deposit d) {
+            deposits.add(index, d);
+            index(d);
+            modCount++;
+        }
+
+        /* (non-Javadoc)
+         * @see java.util.AbstractCollection#addAll(java.util.Collection)
+         */
+        @Override
+        public boolean addAll(Collection<? extends Deposit> c) {
+            deposits.ensureCapacity(deposits.size() + c.size());
+            return super.addAll(c);
+        }
+
+        /* (non-Javadoc)
+         * @see java.util.AbstractList#set(int, java.lang.Object)
+         */
+        @Override
+        public Deposit set(int index, Deposit d) {
+            Deposit old = deposits.set(index, d);
+
+            unindex(old);
+            index(d);
+            return old;
+        }
+
+        /* (non-Javadoc)
+         * @see java.util.AbstractList#remove(int)
+         */
+        @Override
+        public Deposit remove(int index) {
+            Deposit old = deposits.remove(index);
+
+            unindex(old);
+            modCount++;
+            return old;
+        }
+
+        /* (non-Javadoc)
+         * @see java.util.Collection#removeIf(java.util.function.Predicate)
+         */
+        @Override
+        public boolean removeIf(Predicate<? super Deposit> filter) {
+            // removes in one pass instead of one shift per deposit
+            boolean removed = deposits.removeIf(d -> {
+                if (!filter.test(d)) {
+                    return false;
+                }
+
+                unindex(d);
+                return true;
+            });
+
+            if (removed) {
+                modCount++;
+            }
+
+            return removed;
+        }
+
+        /* (non-Javadoc)
+         * @see java.util.AbstractList#clear()
+         */
+        @Override
+        public void clear() {
+            deposits.clear();
+            byId.clear();
+            byAccountId.clear();
+            byDepositor.clear();
+            byType.clear();
+            byCountry.clear();
+            modCount++;
+        }
+
+        /* (non-Javadoc)
+         * @see java.util.List#sort(java.util.Comparator)
+         */
+        @Override
+        public void sort(Comparator<? super Deposit> c) {
+            // the indexes do not depend on positions
+            deposits.sort(c);
+            modCount++;
+        }
+
+        /**
+         * Reorder the deposits.
+         * @param order the old position of every new position
+         */
+        void permute(int[] order) {
+            Deposit[] old = deposits.toArray(new Deposit[deposits.size()]);
+
+            for (int i = 0; i < old.length; i++) {
+                deposits.set(i, old[order[i]]);
+            }
+
+            modCount++;
+        }
+    }
+}
@@ -0,0 +1,5 @@
+/**
+ * This package contains in-memory stores of deposits, which extend
+ * {@code DepositsDB} with faster lookups and a more compact layout.
+ */
+package depositstore;
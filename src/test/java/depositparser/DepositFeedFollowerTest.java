@@ -0,0 +1,200 @@
+package depositparser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests following a deposits file that is being written.
+ */
+public class DepositFeedFollowerTest {
+
+    /** The prolog and the root start tag. */
+    private static final String HEADER =
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<deposits xmlns:bank=\"www.example.org/xmlns/bank\""
+            + " xmlns:fin=\"www.example.org/xmlns/financial\">\n";
+
+    /** The root end tag. */
+    private static final String FOOTER = "</deposits>\n";
+
+    /** A folder for the feed. */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /** The feed file. */
+    private File file;
+
+    /** The follower. */
+    private DepositFeedFollower follower;
+
+    /** The ids of the delivered deposits. */
+    private final List<String> ids = new ArrayList<>();
+
+    /**
+     * Create a follower of a file that does not exist yet.
+     */
+    @Before
+    public void setUp() {
+        file = new File(folder.getRoot(), "feed.xml");
+        follower = new DepositFeedFollower(file);
+        follower.subscribe(d -> ids.add(d.getId()));
+    }
+
+    /**
+     * Close the follower.
+     * @throws IOException if the file could not be closed
+     */
+    @After
+    public void tearDown() throws IOException {
+        follower.close();
+    }
+
+    /**
+     * Waits for the file and the root start tag.
+     * @throws IOException if the file could not be written
+     */
+    @Test
+    public void waitsForRootStartTag() throws IOException {
+        assertEquals(0, follower.poll());
+
+        append("<?xml version=\"1.0\"?>\n<depo");
+        assertEquals(0, follower.poll());
+
+        append(HEADER.substring(HEADER.indexOf("sits")) + deposit("a", "1"));
+        assertEquals(1, follower.poll());
+        assertEquals(Arrays.asList("a"), ids);
+    }
+
+    /**
+     * Delivers a deposit once its end tag has been written.
+     * @throws IOException if the file could not be written
+     */
+    @Test
+    public void deliversCompleteDeposits() throws IOException {
+        String b = deposit("b", "2");
+
+        append(HEADER + deposit("a", "1") + b.substring(0, 60));
+        assertEquals(1, follower.poll());
+
+        append(b.substring(60, b.length() - 3));
+        assertEquals(0, follower.poll());
+
+        append(b.substring(b.length() - 3) + deposit("c", "3"));
+        assertEquals(2, follower.poll());
+        assertEquals(Arrays.asList("a", "b", "c"), ids);
+        assertFalse(follower.isFinished());
+    }
+
+    /**
+     * Skips only the deposits that could not be parsed.
+     * @throws IOException if the file could not be written
+     */
+    @Test
+    public void skipsInvalidDeposits() throws IOException {
+        append(HEADER + deposit("a", "1") + deposit("b", "2x")
+                + deposit("c", "3"));
+
+        assertEquals(2, follower.poll());
+        assertEquals(Arrays.asList("a", "c"), ids);
+    }
+
+    /**
+     * Follows a truncated file again from the start.
+     * @throws IOException if the file could not be written
+     */
+    @Test
+    public void followsTruncatedFileFromStart() throws IOException {
+        append(HEADER + deposit("a", "1") + deposit("b", "2"));
+        assertEquals(2, follower.poll());
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(0);
+        }
+
+        append(HEADER + deposit("c", "3"));
+        assertEquals(0, follower.poll());
+        assertEquals(1, follower.poll());
+        assertEquals(Arrays.asList("a", "b", "c"), ids);
+    }
+
+    /**
+     * Finishes when the root end tag has been written.
+     * @throws IOException if the file could not be written
+     */
+    @Test
+    public void finishesAtRootEndTag() throws IOException {
+        append(HEADER + deposit("a", "1"));
+        assertEquals(1, follower.poll());
+
+        append(deposit("b", "2") + FOOTER);
+        assertEquals(1, follower.poll());
+        assertTrue(follower.isFinished());
+
+        append(deposit("c", "3"));
+        assertEquals(0, follower.poll());
+        assertEquals(Arrays.asList("a", "b"), ids);
+    }
+
+    /**
+     * Refuses to start twice.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void refusesToStartTwice() {
+        ScheduledExecutorService executor =
+                Executors.newSingleThreadScheduledExecutor();
+
+        try {
+            follower.start(executor, 1, TimeUnit.HOURS);
+            follower.start(1, TimeUnit.HOURS);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Append text to the feed.
+     * @param text the text
+     * @throws IOException if the file could not be written
+     */
+    private void append(String text) throws IOException {
+        Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Create the text of a deposit element.
+     * @param id the id
+     * @param accountId the account id text
+     * @return the text
+     */
+    private static String deposit(String id, String accountId) {
+        return "\t<deposit id=\"" + id + "\" type=\"call\" bank:name=\"B\""
+                + " country=\"UA\">\n"
+                + "\t\t<depositor>D</depositor>\n"
+                + "\t\t<account-id>" + accountId + "</account-id>\n"
+                + "\t\t<fin:amount-on-deposit>10</fin:amount-on-deposit>\n"
+                + "\t\t<fin:interest>1</fin:interest>\n"
+                + "\t\t<time-constraint>12</time-constraint>\n"
+                + "\t</deposit>\n";
+    }
+}
@@ -0,0 +1,148 @@
+package depositparser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+import deposit.Deposit;
+import deposit.ISO3166CountryCode;
+import deposit.Type;
+
+/**
+ * Tests parsing queries into filters and filtering deposits while they are
+ * parsed.
+ */
+public class DepositFilterTest {
+
+    /**
+     * Parses a conjunction of conditions on attributes and fields.
+     */
+    @Test
+    public void parsesConjunction() {
+        DepositFilter filter = DepositFilter.parse(
+                " country=UA and type=savings AND amount>5000 ");
+
+        assertTrue(filter.test(deposit(Type.SAVINGS, "UA", "5000.01")));
+        assertFalse(filter.test(deposit(Type.SAVINGS, "UA", "5000")));
+        assertFalse(filter.test(deposit(Type.CALL, "UA", "6000")));
+        assertFalse(filter.test(deposit(Type.SAVINGS, "GB", "6000")));
+        assertEquals("country=UA and type=savings AND amount>5000",
+                filter.toString());
+        assertEquals(DepositField.mask(EnumSet.of(DepositField.COUNTRY,
+                DepositField.TYPE, DepositField.AMOUNT_ON_DEPOSIT)),
+                filter.reads());
+    }
+
+    /**
+     * Checks conditions on attributes before the fields are read.
+     */
+    @Test
+    public void separatesAttributesAndFields() {
+        DepositFilter filter = DepositFilter.parse(
+                "bank:name='Big Bank' and depositor=\"A B\"");
+        Deposit d = deposit(Type.CALL, "UA", "1");
+
+        d.setName("Big Bank");
+        assertTrue(filter.testAttributes(d));
+        assertFalse(filter.testFields(d));
+
+        d.setDepositor("A B");
+        assertTrue(filter.test(d));
+    }
+
+    /**
+     * Compares decimals by value and matches missing values only with
+     * {@code !=}.
+     */
+    @Test
+    public void comparesValues() {
+        assertTrue(DepositFilter.parse("amount=5000").test(
+                deposit(Type.CALL, "UA", "5000.00")));
+        assertTrue(DepositFilter.parse("interest<=1.5").test(
+                deposit(Type.CALL, "UA", "1")));
+        assertFalse(DepositFilter.parse("amount=1").test(
+                deposit(Type.CALL, "UA", null)));
+        assertTrue(DepositFilter.parse("amount!=1").test(
+                deposit(Type.CALL, "UA", null)));
+    }
+
+    /**
+     * Rejects invalid queries.
+     */
+    @Test
+    public void rejectsInvalidQueries() {
+        String[] queries = {"", "type=call and", "type=gold", "size=1",
+            "amount>many", "depositor>A", "type=call or time=1",
+            "country = UA time=1"};
+
+        for (String query : queries) {
+            try {
+                DepositFilter.parse(query);
+                fail("Accepted " + query);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    /**
+     * Makes every parser pass the deposits that match the filter.
+     */
+    @Test
+    public void filtersWhileParsing() {
+        File file = new File("xml/deposits.xml");
+        DepositFilter filter = DepositFilter.parse(
+                "country=UA and time-constraint>=12 and amount<2000")
+                .and(DepositFilter.type(Type.CHECKING, Type.CALL));
+        List<String> expected = new ArrayList<>();
+
+        new DepositSAXParser(file).parse(d -> {
+            if (filter.test(d)) {
+                expected.add(d.toString());
+            }
+        });
+
+        assertEquals(1, expected.size());
+
+        for (Map.Entry<String, Function<File, AbstractDepositParser>> e
+                : DepositParsersTest.PARSERS.entrySet()) {
+            AbstractDepositParser parser = e.getValue().apply(file);
+            List<String> deposits = new ArrayList<>();
+
+            parser.setFilter(filter);
+            parser.parse(d -> deposits.add(d.toString()));
+            assertEquals(e.getKey(), expected, deposits);
+        }
+    }
+
+    /**
+     * Create a deposit.
+     * @param type the type
+     * @param country the country code
+     * @param amount the amount or null
+     * @return the deposit
+     */
+    private static Deposit deposit(Type type, String country,
+                                   String amount) {
+        Deposit d = new Deposit();
+
+        d.setId("id");
+        d.setType(type);
+        d.setCountry(ISO3166CountryCode.valueOf(country));
+        d.setAmountOnDeposit((amount == null) ? null
+                : new BigDecimal(amount));
+        d.setInterest(BigDecimal.ONE);
+        return d;
+    }
+}
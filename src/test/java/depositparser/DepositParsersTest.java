@@ -0,0 +1,237 @@
+package depositparser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.math.BigDecimal;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import deposit.Deposit;
+
+/**
+ * Tests that all parsers read the same deposits from the same documents
+ * and report invalid numbers at the same position.
+ */
+public class DepositParsersTest {
+
+    /** The parsers by name. */
+    static final Map<String, Function<File, AbstractDepositParser>>
+            PARSERS = new LinkedHashMap<>();
+
+    static {
+        PARSERS.put("SAX", DepositSAXParser::new);
+        PARSERS.put("DOM", DepositDOMParser::new);
+        PARSERS.put("StAX", DepositStAXParser::new);
+        PARSERS.put("StAX cursor", DepositStAXCursorParser::new);
+        PARSERS.put("parallel", DepositParallelParser::new);
+        PARSERS.put("scanner", DepositScannerParser::new);
+    }
+
+    /** A folder for generated files. */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Parses the sample file.
+     */
+    @Test
+    public void parsesSample() {
+        List<Deposit> deposits = parseAll(new File("xml/deposits.xml"));
+
+        assertEquals(6, deposits.size());
+        assertEquals("Bogdan Repeta", deposits.get(0).getDepositor());
+        assertEquals(new BigDecimal("2000"),
+                deposits.get(0).getAmountOnDeposit());
+    }
+
+    /**
+     * Parses deposits without a bank name or an id.
+     */
+    @Test
+    public void parsesMissingAttributes() {
+        List<Deposit> deposits = parseAll(resource("missing.xml"));
+
+        assertEquals(2, deposits.size());
+        assertNull(deposits.get(0).getName());
+        assertNull(deposits.get(1).getId());
+    }
+
+    /**
+     * Parses text with entities, comments and CDATA sections.
+     */
+    @Test
+    public void parsesEntitiesAndSplitText() {
+        Deposit deposit = parseAll(resource("entities.xml")).get(0);
+
+        assertEquals("A & B", deposit.getName());
+        assertEquals("Bogdan & Repeta", deposit.getDepositor());
+        assertEquals(12, deposit.getAccountId());
+        assertEquals(new BigDecimal("10.5"), deposit.getAmountOnDeposit());
+        assertEquals(BigDecimal.ONE, deposit.getInterest());
+    }
+
+    /**
+     * Parses a file that the parallel parser splits into chunks.
+     * @throws IOException if the file could not be written
+     */
+    @Test
+    public void parsesChunkedFile() throws IOException {
+        assertEquals(10000, parseAll(generate(10000, -1)).size());
+    }
+
+    /**
+     * Reports an invalid number with its line.
+     */
+    @Test
+    public void reportsInvalidNumber() {
+        assertInvalidNumber(resource("badnum.xml"), "12x", 5);
+    }
+
+    /**
+     * Reports an invalid number in a chunk with its line in the file.
+     * @throws IOException if the file could not be written
+     */
+    @Test
+    public void reportsInvalidNumberInChunk() throws IOException {
+        // the header takes two lines and every deposit seven
+        assertInvalidNumber(generate(10000, 7500), "7500x",
+                2 + 7500 * 7 + 3);
+    }
+
+    /**
+     * Parse a file with every parser and check that the deposits are the
+     * same.
+     * @param file the file
+     * @return the deposits
+     */
+    private static List<Deposit> parseAll(File file) {
+        List<Deposit> expected = null;
+
+        for (Map.Entry<String, Function<File, AbstractDepositParser>> e
+                : PARSERS.entrySet()) {
+            List<Deposit> deposits = new ArrayList<>();
+
+            e.getValue().apply(file).parse(deposits::add);
+
+            if (expected == null) {
+                expected = deposits;
+            } else {
+                assertEquals(e.getKey(), strings(expected),
+                        strings(deposits));
+            }
+        }
+
+        return expected;
+    }
+
+    /**
+     * Check that every parser fails on an invalid account id.
+     * @param file the file
+     * @param text the invalid text
+     * @param line the line of the invalid text
+     */
+    private static void assertInvalidNumber(File file, String text,
+                                            int line) {
+        for (Map.Entry<String, Function<File, AbstractDepositParser>> e
+                : PARSERS.entrySet()) {
+            try {
+                e.getValue().apply(file).parse(d -> { });
+                fail(e.getKey() + " accepted " + text);
+            } catch (DepositParserException ex) {
+                assertTrue(e.getKey() + ": " + ex.getMessage(),
+                        ex.getMessage().contains(
+                                "invalid account-id '" + text + "'"));
+
+                // a DOM does not keep the positions of its nodes
+                if (!e.getKey().equals("DOM")) {
+                    assertEquals(e.getKey(), line, ex.getLineNumber());
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the strings of deposits.
+     * @param deposits the deposits
+     * @return the strings
+     */
+    private static List<String> strings(List<Deposit> deposits) {
+        List<String> strings = new ArrayList<>(deposits.size());
+
+        for (Deposit d : deposits) {
+            strings.add(d.toString());
+        }
+
+        return strings;
+    }
+
+    /**
+     * Get a test file.
+     * @param name the file name
+     * @return the file
+     */
+    private static File resource(String name) {
+        try {
+            return new File(DepositParsersTest.class.getResource(name)
+                    .toURI());
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Generate a deposits file.
+     * @param count the number of deposits
+     * @param bad the index of a deposit with an invalid account id or -1
+     * @return the file
+     * @throws IOException if the file could not be written
+     */
+    private File generate(int count, int bad) throws IOException {
+        File file = folder.newFile();
+        String[] types = {"call", "time", "savings", "metals"};
+        String[] countries = {"UA", "GB", "DE", "US"};
+
+        try (PrintWriter out = new PrintWriter(file,
+                StandardCharsets.UTF_8.name())) {
+            out.print("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                    + "<deposits xmlns:bank=\"www.example.org/xmlns/bank\""
+                    + " xmlns:fin=\"www.example.org/xmlns/financial\">\n");
+
+            for (int i = 0; i < count; i++) {
+                out.print("\t<deposit id=\"id" + i + "\" type=\""
+                        + types[i % types.length] + "\" bank:name=\"Bank"
+                        + (i % 7) + "\" country=\""
+                        + countries[i % countries.length] + "\">\n"
+                        + "\t\t<depositor>Name" + (i % 100) + "</depositor>\n"
+                        + "\t\t<account-id>" + i + ((i == bad) ? "x" : "")
+                        + "</account-id>\n"
+                        + "\t\t<fin:amount-on-deposit>" + (i * 7919 % 100000)
+                        + "." + (i % 100) + "</fin:amount-on-deposit>\n"
+                        + "\t\t<fin:interest>" + (i % 13)
+                        + "</fin:interest>\n"
+                        + "\t\t<time-constraint>" + (i % 37)
+                        + "</time-constraint>\n"
+                        + "\t</deposit>\n");
+            }
+
+            out.print("</deposits>\n");
+        }
+
+        return file;
+    }
+}
@@ -0,0 +1,167 @@
+package depositparser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import deposit.Type;
+
+/**
+ * Tests the changes reported by the incremental parser.
+ */
+public class IncrementalDepositParserTest {
+
+    /** The prolog and the root start tag. */
+    private static final String HEADER =
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<deposits xmlns:bank=\"www.example.org/xmlns/bank\""
+            + " xmlns:fin=\"www.example.org/xmlns/financial\">\n";
+
+    /** The root end tag. */
+    private static final String FOOTER = "</deposits>\n";
+
+    /** A folder for the file. */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /** The deposits file. */
+    private File file;
+
+    /** The parser. */
+    private IncrementalDepositParser parser;
+
+    /**
+     * Create a parser of a file in the temporary folder.
+     */
+    @Before
+    public void setUp() {
+        file = new File(folder.getRoot(), "deposits.xml");
+        parser = new IncrementalDepositParser(file);
+    }
+
+    /**
+     * Reports added, updated and removed deposits.
+     * @throws IOException if the file could not be written
+     */
+    @Test
+    public void reportsChanges() throws IOException {
+        write(deposit("a", "call", "1"), deposit("b", "call", "2"),
+                deposit("c", "call", "3"));
+        assertEquals(Arrays.asList("ADD a", "ADD b", "ADD c"),
+                changes(parser.refresh()));
+
+        write(deposit("a", "call", "1"), deposit("b", "call", "20"),
+                deposit("d", "call", "4"));
+        assertEquals(Arrays.asList("UPDATE b", "ADD d", "REMOVE c"),
+                changes(parser.refresh()));
+        assertEquals(Arrays.asList(), changes(parser.refresh()));
+
+        parser.reset();
+        assertEquals(Arrays.asList("ADD a", "ADD b", "ADD d"),
+                changes(parser.refresh()));
+    }
+
+    /**
+     * Matches deposits by their decoded ids.
+     * @throws IOException if the file could not be written
+     */
+    @Test
+    public void decodesIds() throws IOException {
+        write(deposit("a&amp;b", "call", "1"), deposit("&#x41;&#66;", "call",
+                "2"));
+        assertEquals(Arrays.asList("ADD a&b", "ADD AB"),
+                changes(parser.refresh()));
+
+        write(deposit("a&amp;b", "call", "10"));
+        assertEquals(Arrays.asList("UPDATE a&b", "REMOVE AB"),
+                changes(parser.refresh()));
+    }
+
+    /**
+     * Parses changed deposits with the options of the parser.
+     * @throws IOException if the file could not be written
+     */
+    @Test
+    public void appliesOptions() throws IOException {
+        parser.setUnknownValuePolicy(UnknownValuePolicy.SKIP_DEPOSIT);
+        parser.setFilter(DepositFilter.type(Type.CALL));
+        parser.setProjection(EnumSet.of(DepositField.ACCOUNT_ID));
+
+        write(deposit("a", "call", "1"), deposit("b", "time", "2"),
+                deposit("c", "gold", "3"));
+
+        List<DepositDelta> deltas = parser.refresh();
+
+        assertEquals(Arrays.asList("ADD a"), changes(deltas));
+        assertEquals(1, deltas.get(0).getDeposit().getAccountId());
+        assertNull(deltas.get(0).getDeposit().getDepositor());
+
+        write(deposit("a", "time", "1"), deposit("b", "call", "2"),
+                deposit("c", "gold", "3"));
+        assertEquals(Arrays.asList("ADD b", "REMOVE a"),
+                changes(parser.refresh()));
+    }
+
+    /**
+     * Write the deposits file.
+     * @param deposits the texts of the deposit elements
+     * @throws IOException if the file could not be written
+     */
+    private void write(String... deposits) throws IOException {
+        StringBuilder text = new StringBuilder(HEADER);
+
+        for (String deposit : deposits) {
+            text.append(deposit);
+        }
+
+        text.append(FOOTER);
+        Files.write(file.toPath(),
+                text.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Create the text of a deposit element.
+     * @param id the id attribute literal
+     * @param type the type
+     * @param accountId the account id text
+     * @return the text
+     */
+    private static String deposit(String id, String type, String accountId) {
+        return "\t<deposit id=\"" + id + "\" type=\"" + type + "\""
+                + " bank:name=\"B\" country=\"UA\">\n"
+                + "\t\t<depositor>D</depositor>\n"
+                + "\t\t<account-id>" + accountId + "</account-id>\n"
+                + "\t\t<fin:amount-on-deposit>10</fin:amount-on-deposit>\n"
+                + "\t\t<fin:interest>1</fin:interest>\n"
+                + "\t\t<time-constraint>12</time-constraint>\n"
+                + "\t</deposit>\n";
+    }
+
+    /**
+     * Describe changes as their kinds and ids.
+     * @param deltas the changes
+     * @return the descriptions
+     */
+    private static List<String> changes(List<DepositDelta> deltas) {
+        List<String> changes = new ArrayList<>(deltas.size());
+
+        for (DepositDelta delta : deltas) {
+            changes.add(delta.getKind() + " " + delta.getId());
+        }
+
+        return changes;
+    }
+}
@@ -0,0 +1,132 @@
+package depositparser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import deposit.Deposit;
+
+/**
+ * Tests the string pool and the pooling of bank names and depositors by
+ * the parsers.
+ */
+public class StringPoolTest {
+
+    /** A folder for generated files. */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Returns one instance for equal strings and character ranges.
+     */
+    @Test
+    public void sharesInstances() {
+        StringPool pool = new StringPool();
+        String bank = pool.intern(new String("Bank"));
+
+        assertSame(bank, pool.intern(new String("Bank")));
+        assertSame(bank, pool.intern("a Bank".toCharArray(), 2, 6));
+        assertNull(pool.intern(null));
+        assertEquals(3, pool.getLookups());
+        assertEquals(2, pool.getHits());
+
+        pool.resetMetrics();
+        assertEquals(0, pool.getHitRate(), 0);
+    }
+
+    /**
+     * Replaces a pooled string by a new one of the same slot.
+     */
+    @Test
+    public void replacesOnCollision() {
+        StringPool pool = new StringPool(1);
+        String a = pool.intern(new String("A"));
+
+        pool.intern("B");
+
+        String again = pool.intern(new String("A"));
+
+        assertNotSame(a, again);
+        assertSame(again, pool.intern(new String("A")));
+        assertEquals(0.25, pool.getHitRate(), 0);
+    }
+
+    /**
+     * Rounds the capacity up to a power of two.
+     */
+    @Test
+    public void roundsCapacity() {
+        assertEquals(1024, new StringPool().getCapacity());
+        assertEquals(8, new StringPool(5).getCapacity());
+    }
+
+    /**
+     * Refuses a capacity that is not positive.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void refusesInvalidCapacity() {
+        new StringPool(0);
+    }
+
+    /**
+     * Makes every parser share the strings of equal bank names and, with a
+     * depositor pool, of equal depositors.
+     * @throws IOException if the file could not be written
+     */
+    @Test
+    public void poolsParsedStrings() throws IOException {
+        File file = folder.newFile("deposits.xml");
+        StringBuilder text = new StringBuilder(
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<deposits xmlns:bank=\"www.example.org/xmlns/bank\""
+                + " xmlns:fin=\"www.example.org/xmlns/financial\">\n");
+
+        for (int i = 0; i < 3; i++) {
+            text.append("\t<deposit id=\"id").append(i)
+                    .append("\" type=\"call\" bank:name=\"B\" country=\"UA\">"
+                            + "<depositor>D</depositor>"
+                            + "<account-id>1</account-id>"
+                            + "<fin:amount-on-deposit>10"
+                            + "</fin:amount-on-deposit>"
+                            + "<fin:interest>1</fin:interest>"
+                            + "<time-constraint>12</time-constraint>"
+                            + "</deposit>\n");
+        }
+
+        text.append("</deposits>\n");
+        Files.write(file.toPath(),
+                text.toString().getBytes(StandardCharsets.UTF_8));
+
+        for (Map.Entry<String, Function<File, AbstractDepositParser>> e
+                : DepositParsersTest.PARSERS.entrySet()) {
+            AbstractDepositParser parser = e.getValue().apply(file);
+            List<Deposit> deposits = new ArrayList<>();
+
+            parser.setDepositorPool(new StringPool());
+            parser.parse(deposits::add);
+
+            assertEquals(e.getKey(), 3, deposits.size());
+
+            for (Deposit d : deposits) {
+                assertSame(e.getKey(), deposits.get(0).getName(),
+                        d.getName());
+                assertSame(e.getKey(), deposits.get(0).getDepositor(),
+                        d.getDepositor());
+            }
+        }
+    }
+}
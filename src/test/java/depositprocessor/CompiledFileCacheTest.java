@@ -0,0 +1,211 @@
+package depositprocessor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests that compiled files are cached until they or their dependencies
+ * change.
+ */
+public class CompiledFileCacheTest {
+
+    /** A folder for the compiled files. */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /** The compiled file. */
+    private File file;
+
+    /** The file the compiled file depends on. */
+    private File dependency;
+
+    /** The number of compilations. */
+    private final AtomicInteger compilations = new AtomicInteger();
+
+    /**
+     * Create the files.
+     * @throws IOException if the files could not be written
+     */
+    @Before
+    public void setUp() throws IOException {
+        file = write("main.txt", "main");
+        dependency = write("dependency.txt", "dependency");
+    }
+
+    /**
+     * Compiles a file again only when it has been modified.
+     * @throws IOException if a file could not be read or written
+     */
+    @Test
+    public void recompilesModifiedFile() throws IOException {
+        CompiledFileCache<String, IOException> cache =
+                new CompiledFileCache<>((f, dependencies) -> read(f));
+        String first = cache.get(file);
+
+        assertSame(first, cache.get(file));
+        assertEquals(1, compilations.get());
+
+        touch(write("main.txt", "changed"));
+        assertEquals("changed", cache.get(file));
+        assertEquals(2, compilations.get());
+    }
+
+    /**
+     * Compiles a file again when a file it depends on has been modified.
+     * @throws IOException if a file could not be read or written
+     */
+    @Test
+    public void recompilesOnModifiedDependency() throws IOException {
+        CompiledFileCache<String, IOException> cache =
+                new CompiledFileCache<>((f, dependencies) -> {
+                    dependencies.accept(dependency);
+                    return read(f) + read(dependency);
+                });
+
+        assertEquals("maindependency", cache.get(file));
+        assertEquals("maindependency", cache.get(file));
+
+        touch(write("dependency.txt", "changed"));
+        assertEquals("mainchanged", cache.get(file));
+        assertEquals(2, compilations.get());
+    }
+
+    /**
+     * Compiles a file again when a file it depends on has been modified
+     * while it was compiled.
+     * @throws IOException if a file could not be read or written
+     */
+    @Test
+    public void recompilesOnDependencyModifiedDuringCompilation()
+            throws IOException {
+        CompiledFileCache<String, IOException> cache =
+                new CompiledFileCache<>((f, dependencies) -> {
+                    dependencies.accept(dependency);
+
+                    String text = read(f) + read(dependency);
+
+                    if (compilations.get() == 1) {
+                        touch(write("dependency.txt", "changed"));
+                    }
+
+                    return text;
+                });
+
+        assertEquals("maindependency", cache.get(file));
+        assertEquals("mainchanged", cache.get(file));
+        assertEquals("mainchanged", cache.get(file));
+        assertEquals(2, compilations.get());
+    }
+
+    /**
+     * Does not cache failures.
+     * @throws IOException if a file could not be read
+     */
+    @Test
+    public void rethrowsFailures() throws IOException {
+        CompiledFileCache<String, IOException> cache =
+                new CompiledFileCache<>((f, dependencies) -> {
+                    if (compilations.incrementAndGet() == 1) {
+                        throw new IOException("failure");
+                    }
+
+                    return "compiled";
+                });
+
+        try {
+            cache.get(file);
+            fail("The failure has not been rethrown");
+        } catch (IOException e) {
+            assertEquals("failure", e.getMessage());
+        }
+
+        assertEquals("compiled", cache.get(file));
+    }
+
+    /**
+     * Transforms with a stylesheet whose included stylesheet has changed.
+     * @throws IOException if a file could not be read or written
+     */
+    @Test
+    public void reloadsIncludedStylesheet() throws IOException {
+        File xml = write("deposits.xml", "<deposits/>");
+        File html = new File(folder.getRoot(), "deposits.html");
+        DepositProcessor processor = new DepositProcessor();
+
+        write("included.xsl", stylesheet("<xsl:template match=\"/\">"
+                + "<p>first</p></xsl:template>"));
+        processor.setStylesheet(write("main.xsl", stylesheet(
+                "<xsl:include href=\"included.xsl\"/>")).getPath());
+        processor.open(xml.getPath());
+
+        processor.generateHTML(html.getPath());
+        assertTrue(read(html).contains("first"));
+
+        touch(write("included.xsl", stylesheet("<xsl:template match=\"/\">"
+                + "<p>second</p></xsl:template>")));
+        processor.generateHTML(html.getPath());
+        assertTrue(read(html).contains("second"));
+    }
+
+    /**
+     * Create the text of a stylesheet.
+     * @param body the top-level elements
+     * @return the text
+     */
+    private static String stylesheet(String body) {
+        return "<xsl:stylesheet version=\"1.0\""
+                + " xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">"
+                + body + "</xsl:stylesheet>";
+    }
+
+    /**
+     * Write a file in the folder.
+     * @param name the file name
+     * @param text the text
+     * @return the file
+     * @throws IOException if the file could not be written
+     */
+    private File write(String name, String text) throws IOException {
+        File f = new File(folder.getRoot(), name);
+
+        Files.write(f.toPath(), text.getBytes(StandardCharsets.UTF_8));
+        return f;
+    }
+
+    /**
+     * Read a file, counting the compilations of the compiled file.
+     * @param f the file
+     * @return the text
+     * @throws IOException if the file could not be read
+     */
+    private String read(File f) throws IOException {
+        if (f.equals(file)) {
+            compilations.incrementAndGet();
+        }
+
+        return new String(Files.readAllBytes(f.toPath()),
+                StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Move the modification time of a file forward, as file systems may
+     * keep it in seconds.
+     * @param f the file
+     */
+    private static void touch(File f) {
+        assertTrue(f.setLastModified(f.lastModified() + 10000));
+    }
+}
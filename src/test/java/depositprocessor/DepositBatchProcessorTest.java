@@ -0,0 +1,165 @@
+package depositprocessor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import deposit.DepositsDB;
+import depositparser.DepositParserException;
+import depositstore.DepositAggregator;
+
+/**
+ * Tests that a batch reports failures per file and keeps the deposits of
+ * the other files.
+ */
+public class DepositBatchProcessorTest {
+
+    /** A folder for the files. */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /** The text of the sample file. */
+    private String sample;
+
+    /**
+     * Read the sample file.
+     * @throws IOException if the file could not be read
+     */
+    @Before
+    public void setUp() throws IOException {
+        sample = new String(Files.readAllBytes(
+                new File("xml/deposits.xml").toPath()),
+                StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Processes the XML files of a directory in the order of their names,
+     * skipping the files that could not be parsed.
+     * @throws IOException if the files could not be written
+     */
+    @Test
+    public void processesDirectory() throws IOException {
+        write("b.xml", sample);
+        write("a.xml", sample.replace("<account-id>", "<account-id>x"));
+        write("c.xml", sample.substring(0, sample.length() / 2));
+        write("d.txt", "not deposits");
+
+        DepositsDB store = new DepositsDB();
+        List<DepositBatchProcessor.FileResult> results =
+                new DepositBatchProcessor(2).process(folder.getRoot(), store);
+
+        assertEquals(Arrays.asList("a.xml", "b.xml", "c.xml"),
+                Arrays.asList(results.get(0).getFile().getName(),
+                        results.get(1).getFile().getName(),
+                        results.get(2).getFile().getName()));
+        assertEquals(3, results.size());
+        assertFalse(results.get(0).isSuccessful());
+        assertTrue(results.get(0).getError()
+                instanceof DepositParserException);
+        assertEquals(9, ((DepositParserException) results.get(0)
+                .getError()).getLineNumber());
+        assertEquals(6, results.get(1).getDepositCount());
+        assertFalse(results.get(2).isSuccessful());
+        assertEquals(6, store.getDeposits().size());
+    }
+
+    /**
+     * Fails files that do not match the schema.
+     * @throws IOException if the files could not be written
+     */
+    @Test
+    public void validatesFiles() throws IOException {
+        File valid = write("valid.xml", sample);
+        File invalid = write("invalid.xml", sample.replaceFirst(
+                "\\s*<fin:interest>[^<]*</fin:interest>", ""));
+        List<File> files = Arrays.asList(valid, invalid);
+        DepositBatchProcessor processor = new DepositBatchProcessor(2);
+
+        assertTrue(processor.process(files, new DepositsDB()).get(1)
+                .isSuccessful());
+
+        processor.setSchema("xml/xsd/deposits.xsd");
+
+        DepositsDB store = new DepositsDB();
+        List<DepositBatchProcessor.FileResult> results =
+                processor.process(files, store);
+
+        assertTrue(results.get(0).isSuccessful());
+        assertTrue(results.get(1).getError()
+                instanceof DepositParserException);
+        assertEquals(6, store.getDeposits().size());
+    }
+
+    /**
+     * Merges the totals of the files that could be parsed on a given
+     * executor, which is not shut down.
+     * @throws IOException if the files could not be written
+     */
+    @Test
+    public void aggregatesFiles() throws IOException {
+        List<File> files = Arrays.asList(write("a.xml", sample),
+                write("b.xml", "<deposits"), write("c.xml", sample));
+        DepositAggregator totals = new DepositAggregator();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            List<DepositBatchProcessor.FileResult> results =
+                    new DepositBatchProcessor(executor).aggregate(files,
+                            totals);
+
+            assertEquals(6, results.get(0).getDepositCount());
+            assertFalse(results.get(1).isSuccessful());
+            assertEquals(6, results.get(2).getDepositCount());
+            assertFalse(executor.isShutdown());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(12, totals.getTotal().getCount());
+        assertEquals(new BigDecimal("76000.00"),
+                totals.getTotal().getAmountSum());
+    }
+
+    /**
+     * Reports a directory that could not be listed.
+     */
+    @Test
+    public void reportsMissingDirectory() {
+        List<DepositBatchProcessor.FileResult> results =
+                new DepositBatchProcessor(1).process(
+                        new File(folder.getRoot(), "missing"),
+                        new DepositsDB());
+
+        assertEquals(1, results.size());
+        assertFalse(results.get(0).isSuccessful());
+    }
+
+    /**
+     * Write a file in the folder.
+     * @param name the file name
+     * @param text the text
+     * @return the file
+     * @throws IOException if the file could not be written
+     */
+    private File write(String name, String text) throws IOException {
+        File f = new File(folder.getRoot(), name);
+
+        Files.write(f.toPath(), text.getBytes(StandardCharsets.UTF_8));
+        return f;
+    }
+}
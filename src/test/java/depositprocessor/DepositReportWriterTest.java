@@ -0,0 +1,146 @@
+package depositprocessor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URISyntaxException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import deposit.Deposit;
+import deposit.ISO3166CountryCode;
+import deposit.Type;
+
+/**
+ * Tests the HTML and CSV reports.
+ */
+public class DepositReportWriterTest {
+
+    /** The stylesheet whose layout the HTML report reproduces. */
+    private static final String STYLESHEET = "xml/xsl/deposits.xsl";
+
+    /** A folder for reports. */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Writes the sample file as the stylesheet does.
+     * @throws IOException if a report could not be read
+     */
+    @Test
+    public void writesHtmlAsStylesheet() throws IOException {
+        assertHtmlAsStylesheet(new File("xml/deposits.xml"));
+    }
+
+    /**
+     * Rounds numbers as {@code format-number} of the stylesheet does.
+     * @throws IOException if a report could not be read
+     * @throws URISyntaxException never
+     */
+    @Test
+    public void formatsNumbersAsStylesheet()
+            throws IOException, URISyntaxException {
+        assertHtmlAsStylesheet(new File(getClass()
+                .getResource("numbers.xml").toURI()));
+    }
+
+    /**
+     * Transforms the XML file with the stylesheet even if deposits are
+     * loaded.
+     * @throws IOException if a report could not be read
+     */
+    @Test
+    public void generatesHtmlWithStylesheet() throws IOException {
+        DepositProcessor processor = processor(new File("xml/deposits.xml"));
+        File expected = folder.newFile();
+        File actual = folder.newFile();
+
+        processor.generateHTML(expected.getPath());
+        processor.readDeposits(DepositProcessor.SAX);
+        processor.sortDeposits(DepositProcessor.DEPOSITOR);
+        processor.generateHTML(actual.getPath());
+
+        assertTrue(read(expected).contains("<td class=\"col-id\">id00000"));
+        assertEquals(read(expected), read(actual));
+    }
+
+    /**
+     * Writes CSV fields quoted where needed and missing values empty.
+     * @throws IOException if the report could not be written
+     */
+    @Test
+    public void writesCsv() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Deposit d = new Deposit();
+
+        d.setId("id1");
+        d.setDepositor("Jones, \"Vince\"");
+        d.setAccountId(42);
+        d.setType(Type.CALL);
+        d.setName("B & B");
+        d.setCountry(ISO3166CountryCode.UA);
+        d.setInterest(new BigDecimal("1E+1"));
+        d.setTimeConstraint(12);
+
+        try (DepositReportWriter writer = new DepositReportWriter(
+                Channels.newChannel(bytes), DepositReportWriter.Format.CSV)) {
+            writer.accept(d);
+        }
+
+        assertEquals("id,Depositor,Account Id,Type,Bank,Country,"
+                + "Amount on Deposit,Interest,Time Constraint\r\n"
+                + "id1,\"Jones, \"\"Vince\"\"\",42,call,B & B,UA,,10,12\r\n",
+                new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Check that the HTML report of the deposits of a file is the same as
+     * the result of the stylesheet.
+     * @param xmlFile the XML file
+     * @throws IOException if a report could not be read
+     */
+    private void assertHtmlAsStylesheet(File xmlFile) throws IOException {
+        DepositProcessor processor = processor(xmlFile);
+        File expected = folder.newFile();
+        File actual = folder.newFile();
+
+        processor.generateHTML(expected.getPath());
+        processor.writeHTMLReport(actual.getPath());
+
+        assertTrue(read(expected).contains("<td class=\"col-id\">"));
+        assertEquals(read(expected), read(actual));
+    }
+
+    /**
+     * Create a processor of a file with the stylesheet.
+     * @param xmlFile the XML file
+     * @return the processor
+     */
+    private static DepositProcessor processor(File xmlFile) {
+        DepositProcessor processor = new DepositProcessor();
+
+        processor.setStylesheet(STYLESHEET);
+        processor.open(xmlFile.getPath());
+        return processor;
+    }
+
+    /**
+     * Read a report.
+     * @param file the report file
+     * @return the text of the report
+     * @throws IOException if the report could not be read
+     */
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()),
+                StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,231 @@
+package depositstore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import deposit.Deposit;
+import deposit.ISO3166CountryCode;
+import deposit.Type;
+import depositprocessor.DepositProcessor;
+
+/**
+ * Tests that the aggregator sums exactly, whether values fit its scales or
+ * not, and that merged aggregators have the totals of one aggregator.
+ */
+public class DepositAggregatorTest {
+
+    /**
+     * Sums scaled values and values with more fraction digits exactly.
+     */
+    @Test
+    public void sumsExactly() {
+        DepositAggregator aggregator = aggregate(
+                deposit(Type.CALL, "UA", "A", "0.10", "1"),
+                deposit(Type.CALL, "UA", "A", "1.005", "2.5"),
+                deposit(Type.TIME, "GB", "B", "1E+3", null),
+                deposit(null, null, null, null, "0.25"));
+        DepositAggregator.Totals total = aggregator.getTotal();
+
+        assertEquals(4, total.getCount());
+        assertEquals(new BigDecimal("1001.105"), total.getAmountSum());
+        assertEquals(new BigDecimal("3.75"), total.getInterestSum());
+        assertEquals(0, new BigDecimal("333.7016666666667")
+                .compareTo(total.getAverageAmount()));
+        assertEquals(0, new BigDecimal("1.25")
+                .compareTo(total.getAverageInterest()));
+    }
+
+    /**
+     * Keeps exact sums when scaled sums overflow.
+     */
+    @Test
+    public void sumsOverflowingValues() {
+        String max = "92233720368547758.07";
+        DepositAggregator aggregator = aggregate(
+                deposit(Type.CALL, "UA", "A", max, null),
+                deposit(Type.CALL, "UA", "A", max, null),
+                deposit(Type.CALL, "UA", "A", "-1", null));
+
+        assertEquals(new BigDecimal(max).multiply(BigDecimal.valueOf(2))
+                .subtract(BigDecimal.ONE),
+                aggregator.getTotal().getAmountSum());
+        assertNull(aggregator.getTotal().getAverageInterest());
+    }
+
+    /**
+     * Groups deposits by type, country and bank name.
+     */
+    @Test
+    public void groupsDeposits() {
+        DepositAggregator aggregator = aggregate(
+                deposit(Type.CALL, "UA", "A", "1", "1"),
+                deposit(Type.CALL, "GB", "B", "2", "1"),
+                deposit(Type.TIME, "UA", "A", "4", "1"),
+                deposit(null, null, null, "8", "1"));
+
+        assertEquals(new BigDecimal("3.00"),
+                aggregator.getByType().get(Type.CALL).getAmountSum());
+        assertEquals(Arrays.asList(Type.CALL, Type.TIME),
+                new ArrayList<>(aggregator.getByType().keySet()));
+        assertEquals(2, aggregator.getByCountry()
+                .get(ISO3166CountryCode.UA).getCount());
+        assertEquals(new BigDecimal("5.00"),
+                aggregator.getByName().get("A").getAmountSum());
+        assertEquals(2, aggregator.getByName().size());
+    }
+
+    /**
+     * Merges aggregators into the totals of one aggregator.
+     */
+    @Test
+    public void mergesAggregators() {
+        List<Deposit> deposits = randomDeposits();
+        DepositAggregator expected = aggregate(deposits.toArray(
+                new Deposit[0]));
+        DepositAggregator first = new DepositAggregator();
+        DepositAggregator second = new DepositAggregator();
+
+        deposits.subList(0, 500).forEach(first);
+        deposits.subList(500, deposits.size()).forEach(second);
+
+        assertTotals(expected, first.merge(second));
+        assertTotals(expected, deposits.parallelStream()
+                .collect(DepositAggregator.collector()));
+    }
+
+    /**
+     * Refuses to merge aggregators of different scales.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void refusesDifferentScales() {
+        new DepositAggregator().merge(new DepositAggregator(3, 2));
+    }
+
+    /**
+     * Aggregates the sample file without keeping its deposits.
+     */
+    @Test
+    public void aggregatesFile() {
+        DepositProcessor processor = new DepositProcessor();
+
+        processor.open("xml/deposits.xml");
+
+        DepositAggregator aggregator =
+                processor.aggregateDeposits(DepositProcessor.SAX);
+
+        assertEquals(6, aggregator.getTotal().getCount());
+        assertEquals(new BigDecimal("38000.00"),
+                aggregator.getTotal().getAmountSum());
+        assertEquals(2, aggregator.getByCountry()
+                .get(ISO3166CountryCode.UA).getCount());
+    }
+
+    /**
+     * Check that aggregators have the same totals.
+     * @param expected the expected aggregator
+     * @param actual the actual aggregator
+     */
+    private static void assertTotals(DepositAggregator expected,
+                                     DepositAggregator actual) {
+        assertTotals(expected.getTotal(), actual.getTotal());
+        assertEquals(expected.getByType().keySet(),
+                actual.getByType().keySet());
+        assertEquals(expected.getByName().keySet(),
+                actual.getByName().keySet());
+
+        for (Map.Entry<Type, DepositAggregator.Totals> e
+                : expected.getByType().entrySet()) {
+            assertTotals(e.getValue(), actual.getByType().get(e.getKey()));
+        }
+
+        for (Map.Entry<String, DepositAggregator.Totals> e
+                : expected.getByName().entrySet()) {
+            assertTotals(e.getValue(), actual.getByName().get(e.getKey()));
+        }
+    }
+
+    /**
+     * Check that totals are the same.
+     * @param expected the expected totals
+     * @param actual the actual totals
+     */
+    private static void assertTotals(DepositAggregator.Totals expected,
+                                     DepositAggregator.Totals actual) {
+        assertEquals(expected.getCount(), actual.getCount());
+        assertEquals(0, expected.getAmountSum().compareTo(
+                actual.getAmountSum()));
+        assertEquals(0, expected.getInterestSum().compareTo(
+                actual.getInterestSum()));
+    }
+
+    /**
+     * Aggregate deposits.
+     * @param deposits the deposits
+     * @return the aggregator
+     */
+    private static DepositAggregator aggregate(Deposit... deposits) {
+        DepositAggregator aggregator = new DepositAggregator();
+
+        for (Deposit d : deposits) {
+            aggregator.accept(d);
+        }
+
+        return aggregator;
+    }
+
+    /**
+     * Generate deposits with amounts of different scales, some of them too
+     * large to be scaled.
+     * @return the deposits
+     */
+    private static List<Deposit> randomDeposits() {
+        Random random = new Random(42);
+        Type[] types = Type.values();
+        List<Deposit> deposits = new ArrayList<>();
+
+        for (int i = 0; i < 2000; i++) {
+            String amount = (random.nextInt(100) == 0)
+                    ? "9223372036854775.807"
+                    : BigDecimal.valueOf(random.nextInt(1000000),
+                            random.nextInt(4)).toString();
+
+            deposits.add(deposit(types[random.nextInt(types.length)], "UA",
+                    "Bank" + random.nextInt(5), amount,
+                    String.valueOf(random.nextInt(20))));
+        }
+
+        return deposits;
+    }
+
+    /**
+     * Create a deposit.
+     * @param type the type or null
+     * @param country the country code or null
+     * @param name the bank name or null
+     * @param amount the amount or null
+     * @param interest the interest or null
+     * @return the deposit
+     */
+    private static Deposit deposit(Type type, String country, String name,
+                                   String amount, String interest) {
+        Deposit d = new Deposit();
+
+        d.setType(type);
+        d.setCountry((country == null) ? null
+                : ISO3166CountryCode.valueOf(country));
+        d.setName(name);
+        d.setAmountOnDeposit((amount == null) ? null
+                : new BigDecimal(amount));
+        d.setInterest((interest == null) ? null : new BigDecimal(interest));
+        return d;
+    }
+}
@@ -0,0 +1,158 @@
+package depositstore;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import deposit.Deposit;
+import deposit.DepositsDB;
+import deposit.Type;
+
+/**
+ * Tests orders of deposits and the top-k selection.
+ */
+public class DepositOrderTest {
+
+    /**
+     * Orders missing amounts last in ascending order.
+     */
+    @Test
+    public void ordersNullsLastAscending() {
+        assertEquals(Arrays.asList("b", "d", "a", "c"),
+                sorted(DepositOrder.by(DepositOrder.Field.AMOUNT)));
+    }
+
+    /**
+     * Orders missing amounts last in descending order too.
+     */
+    @Test
+    public void ordersNullsLastDescending() {
+        assertEquals(Arrays.asList("a", "d", "b", "c"),
+                sorted(DepositOrder.byDescending(DepositOrder.Field.AMOUNT)));
+    }
+
+    /**
+     * Orders deposits equal in the first field by the next ones.
+     */
+    @Test
+    public void ordersByNextFields() {
+        DepositOrder order = DepositOrder.by(DepositOrder.Field.TYPE)
+                .thenByDescending(DepositOrder.Field.TIME)
+                .thenBy(DepositOrder.Field.ID);
+
+        assertEquals(Arrays.asList("b", "d", "a", "c"), sorted(order));
+        assertEquals("TYPE, TIME desc, ID", order.toString());
+    }
+
+    /**
+     * Keeps the first deposits without missing amounts.
+     */
+    @Test
+    public void selectsTopWithoutNulls() {
+        DepositTopK top = DepositOrder.byDescending(
+                DepositOrder.Field.AMOUNT).top(2);
+
+        deposits().forEach(top);
+
+        assertEquals(Arrays.asList("a", "d"), ids(top.getResult()));
+        assertEquals(4, top.getCount());
+    }
+
+    /**
+     * Keeps deposits with missing amounts only when there are no others.
+     */
+    @Test
+    public void selectsNullsLast() {
+        DepositTopK top = DepositOrder.byDescending(
+                DepositOrder.Field.AMOUNT).top(10);
+
+        deposits().forEach(top);
+
+        assertEquals(Arrays.asList("a", "d", "b", "c"),
+                ids(top.getResult()));
+    }
+
+    /**
+     * Keeps the first deposits of every group.
+     */
+    @Test
+    public void selectsTopPerGroup() {
+        GroupedDepositTopK<Type> top = DepositOrder.byDescending(
+                DepositOrder.Field.AMOUNT).topPerGroup(1, Deposit::getType);
+
+        deposits().forEach(top);
+
+        Map<Type, List<Deposit>> result = top.getResult();
+
+        assertEquals(Arrays.asList(Type.TIME, Type.CALL),
+                new ArrayList<>(result.keySet()));
+        assertEquals(Arrays.asList("a"), ids(result.get(Type.TIME)));
+        assertEquals(Arrays.asList("d"), ids(result.get(Type.CALL)));
+    }
+
+    /**
+     * Sort the test deposits.
+     * @param order the order
+     * @return the ids of the sorted deposits
+     */
+    private static List<String> sorted(DepositOrder order) {
+        DepositsDB depositsDB = new DepositsDB();
+
+        depositsDB.getDeposits().addAll(deposits());
+        order.sort(depositsDB);
+        return ids(depositsDB.getDeposits());
+    }
+
+    /**
+     * Create the test deposits: amounts 7, 5, null and 6.
+     * @return the deposits
+     */
+    private static List<Deposit> deposits() {
+        return Arrays.asList(
+                deposit("a", Type.TIME, "7", 3),
+                deposit("b", Type.CALL, "5", 9),
+                deposit("c", Type.TIME, null, 1),
+                deposit("d", Type.CALL, "6", 2));
+    }
+
+    /**
+     * Create a deposit.
+     * @param id the id
+     * @param type the type
+     * @param amount the amount or null
+     * @param time the time constraint
+     * @return the deposit
+     */
+    private static Deposit deposit(String id, Type type, String amount,
+                                   long time) {
+        Deposit d = new Deposit();
+
+        d.setId(id);
+        d.setType(type);
+        d.setAmountOnDeposit((amount == null) ? null
+                : new BigDecimal(amount));
+        d.setTimeConstraint(time);
+        return d;
+    }
+
+    /**
+     * Get the ids of deposits.
+     * @param deposits the deposits
+     * @return the ids
+     */
+    private static List<String> ids(List<Deposit> deposits) {
+        List<String> ids = new ArrayList<>(deposits.size());
+
+        for (Deposit d : deposits) {
+            ids.add(d.getId());
+        }
+
+        return ids;
+    }
+}
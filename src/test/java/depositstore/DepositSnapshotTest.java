@@ -0,0 +1,112 @@
+package depositstore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import deposit.Deposit;
+import deposit.DepositsDB;
+import depositparser.DepositSAXParser;
+
+/**
+ * Tests that snapshots load the deposits they have been written from.
+ */
+public class DepositSnapshotTest {
+
+    /** A folder for snapshots. */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Loads the deposits of the sample file.
+     * @throws IOException if the snapshot could not be written or read
+     */
+    @Test
+    public void roundTripsSample() throws IOException {
+        assertRoundTrip(new File("xml/deposits.xml"));
+    }
+
+    /**
+     * Loads deposits without a bank name or an id.
+     * @throws IOException if the snapshot could not be written or read
+     * @throws URISyntaxException never
+     */
+    @Test
+    public void roundTripsMissingValues()
+            throws IOException, URISyntaxException {
+        assertRoundTrip(new File(getClass()
+                .getResource("/depositparser/missing.xml").toURI()));
+    }
+
+    /**
+     * Does not write a snapshot of a file that has changed while it was
+     * parsed.
+     * @throws IOException if the files could not be written
+     */
+    @Test
+    public void skipsChangedSource() throws IOException {
+        File source = folder.newFile("deposits.xml");
+        File snapshot = new File(folder.getRoot(), "deposits.snapshot");
+
+        Files.copy(new File("xml/deposits.xml").toPath(), source.toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+
+        long modified = source.lastModified();
+        long length = source.length();
+        DepositsDB depositsDB = new DepositSAXParser(source).parse();
+
+        Files.write(source.toPath(), new byte[] {'\n'},
+                StandardOpenOption.APPEND);
+
+        assertFalse(DepositSnapshot.write(depositsDB, snapshot, source,
+                modified, length));
+        assertFalse(snapshot.exists());
+    }
+
+    /**
+     * Check that a snapshot of the deposits of a file loads the same
+     * deposits and is fresh.
+     * @param source the XML file
+     * @throws IOException if the snapshot could not be written or read
+     */
+    private void assertRoundTrip(File source) throws IOException {
+        File snapshot = folder.newFile();
+        long modified = source.lastModified();
+        long length = source.length();
+        DepositsDB depositsDB = new DepositSAXParser(source).parse();
+
+        assertTrue(DepositSnapshot.write(depositsDB, snapshot, source,
+                modified, length));
+        assertTrue(DepositSnapshot.isFresh(snapshot, source));
+        assertEquals(strings(depositsDB),
+                strings(DepositSnapshot.load(snapshot)));
+    }
+
+    /**
+     * Get the strings of deposits.
+     * @param depositsDB the deposits
+     * @return the strings
+     */
+    private static List<String> strings(DepositsDB depositsDB) {
+        List<String> strings = new ArrayList<>();
+
+        for (Deposit d : depositsDB.getDeposits()) {
+            strings.add(d.toString());
+        }
+
+        return strings;
+    }
+}
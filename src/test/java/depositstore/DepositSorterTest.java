@@ -0,0 +1,138 @@
+package depositstore;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+import deposit.Deposit;
+import deposit.DepositsDB;
+import deposit.ISO3166CountryCode;
+import deposit.Type;
+
+/**
+ * Tests that the sorter orders deposits as a stable sort with the
+ * comparators of {@link DepositOrder} does.
+ */
+public class DepositSorterTest {
+
+    /** The number of deposits (sorted in parallel above 8192). */
+    private static final int COUNT = 10000;
+
+    /**
+     * Sorts a list of deposits.
+     */
+    @Test
+    public void sortsList() {
+        assertSorts(DepositsDB::new, 2);
+    }
+
+    /**
+     * Sorts an indexed store.
+     */
+    @Test
+    public void sortsIndexedStore() {
+        assertSorts(IndexedDepositsDB::new, 2);
+    }
+
+    /**
+     * Sorts a columnar store with scaled amounts.
+     */
+    @Test
+    public void sortsColumnarStore() {
+        assertSorts(ColumnarDepositsDB::new, 2);
+    }
+
+    /**
+     * Sorts a columnar store with amounts that do not fit its scale.
+     */
+    @Test
+    public void sortsColumnarStoreWithDecimals() {
+        assertSorts(ColumnarDepositsDB::new, 6);
+    }
+
+    /**
+     * Check that every key sorts deposits of a store as its comparator.
+     * @param store a supplier of empty stores
+     * @param maxScale the maximal scale of amounts
+     */
+    private static void assertSorts(Supplier<DepositsDB> store,
+                                    int maxScale) {
+        for (DepositSorter.Key key : DepositSorter.Key.values()) {
+            for (boolean parallel : new boolean[] {false, true}) {
+                DepositsDB depositsDB = store.get();
+
+                depositsDB.getDeposits().addAll(deposits(maxScale));
+
+                List<Deposit> expected =
+                        new ArrayList<>(depositsDB.getDeposits());
+
+                expected.sort(DepositOrder.by(
+                        DepositOrder.Field.valueOf(key.name())));
+
+                if (parallel) {
+                    DepositSorter.parallelSort(depositsDB, key);
+                } else {
+                    DepositSorter.sort(depositsDB, key);
+                }
+
+                assertEquals(key + (parallel ? " parallel" : ""),
+                        strings(expected),
+                        strings(depositsDB.getDeposits()));
+            }
+        }
+    }
+
+    /**
+     * Generate deposits with repeated keys (to check stability) and missing
+     * depositors and amounts.
+     * @param maxScale the maximal scale of amounts
+     * @return the deposits
+     */
+    private static List<Deposit> deposits(int maxScale) {
+        Random random = new Random(42);
+        Type[] types = Type.values();
+        ISO3166CountryCode[] countries = ISO3166CountryCode.values();
+        List<Deposit> deposits = new ArrayList<>(COUNT);
+
+        for (int i = 0; i < COUNT; i++) {
+            Deposit d = new Deposit();
+
+            d.setId("id" + i);
+            d.setAccountId(i);
+            d.setDepositor((random.nextInt(20) == 0) ? null
+                    : "Name" + random.nextInt(500));
+            d.setAmountOnDeposit((random.nextInt(20) == 0) ? null
+                    : BigDecimal.valueOf(random.nextInt(1000000),
+                            random.nextInt(maxScale + 1)));
+            d.setInterest(BigDecimal.valueOf(random.nextInt(20)));
+            d.setTimeConstraint(random.nextInt(60));
+            d.setType(types[random.nextInt(types.length)]);
+            d.setCountry(countries[random.nextInt(countries.length)]);
+            d.setName("Bank" + random.nextInt(10));
+            deposits.add(d);
+        }
+
+        return deposits;
+    }
+
+    /**
+     * Get the strings of deposits.
+     * @param deposits the deposits
+     * @return the strings
+     */
+    private static List<String> strings(List<Deposit> deposits) {
+        List<String> strings = new ArrayList<>(deposits.size());
+
+        for (Deposit d : deposits) {
+            strings.add(d.toString());
+        }
+
+        return strings;
+    }
+}